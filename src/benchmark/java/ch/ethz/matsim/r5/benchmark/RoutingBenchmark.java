@@ -0,0 +1,75 @@
+package ch.ethz.matsim.r5.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.population.PlanElement;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ch.ethz.matsim.r5.route.R5Leg;
+
+/**
+ * Benchmarks the hot path of the PT routing wrapper on the Sioux Falls network
+ *
+ * Every invocation picks the next request of a fixed random sample, so that
+ * the same sequence of requests is measured in every run. Throughput and
+ * latency percentiles are reported per operation; run with the GC profiler
+ * (see RunBenchmarks) to obtain allocation rates.
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 5)
+@Measurement(iterations = 10, time = 5)
+@Fork(1)
+public class RoutingBenchmark {
+	@State(Scope.Thread)
+	public static class Cursor {
+		private int index = 0;
+
+		int next() {
+			index = (index + 1) % SiouxFallsBenchmarkData.NUMBER_OF_SAMPLES;
+			return index;
+		}
+	}
+
+	@Benchmark
+	public List<R5Leg> route(SiouxFallsBenchmarkData data, Cursor cursor) {
+		int i = cursor.next();
+		return data.router.route(data.fromLocations.get(i), data.toLocations.get(i), data.departureTimes[i], null);
+	}
+
+	@Benchmark
+	public List<? extends PlanElement> calcRoute(SiouxFallsBenchmarkData data, Cursor cursor) {
+		int i = cursor.next();
+
+		try {
+			return data.routingModule.calcRoute(data.fromFacilities.get(i), data.toFacilities.get(i),
+					data.departureTimes[i], null);
+		} catch (RuntimeException e) {
+			// No route and no fallback router defined
+			return null;
+		}
+	}
+
+	@Benchmark
+	public double getDistance(SiouxFallsBenchmarkData data, Cursor cursor) {
+		int i = cursor.next();
+		return data.distanceEstimator.getDistance(data.fromStops.get(i), data.toStops.get(i), 0);
+	}
+
+	@Benchmark
+	public Id<Link> findLink(SiouxFallsBenchmarkData data, Cursor cursor) {
+		int i = cursor.next();
+		return data.linkFinder.findLink(data.stopIds.get(i));
+	}
+}
@@ -0,0 +1,30 @@
+package ch.ethz.matsim.r5.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the routing benchmarks with the GC profiler, which reports allocated
+ * bytes per operation next to throughput and latency percentiles.
+ *
+ * Build with "mvn -P benchmark package" and run "java -jar
+ * target/benchmarks.jar". If arguments are given, they are passed to the
+ * standard JMH command line instead (e.g. "-h" for help).
+ */
+public class RunBenchmarks {
+	static public void main(String[] args) throws Exception {
+		if (args.length > 0) {
+			org.openjdk.jmh.Main.main(args);
+			return;
+		}
+
+		Options options = new OptionsBuilder() //
+				.include(RoutingBenchmark.class.getSimpleName()) //
+				.addProfiler(GCProfiler.class) //
+				.build();
+
+		new Runner(options).run();
+	}
+}
@@ -0,0 +1,127 @@
+package ch.ethz.matsim.r5.benchmark;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.core.network.NetworkUtils;
+import org.matsim.core.utils.geometry.transformations.TransformationFactory;
+import org.matsim.facilities.Facility;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.conveyal.r5.api.util.Stop;
+import com.conveyal.r5.transit.TransportNetwork;
+import com.vividsolutions.jts.geom.Coordinate;
+
+import ch.ethz.matsim.r5.R5LegRouter;
+import ch.ethz.matsim.r5.R5TeleportationRoutingModule;
+import ch.ethz.matsim.r5.distance.CrowflyDistanceEstimator;
+import ch.ethz.matsim.r5.example.R5TeleportationExample.FakeFacility;
+import ch.ethz.matsim.r5.example.SiouxFallsExample;
+import ch.ethz.matsim.r5.route.LoopLinkFinder;
+import ch.ethz.matsim.r5.scoring.SoonestArrivalTimeScorer;
+import ch.ethz.matsim.r5.utils.R5Cleaner;
+import ch.ethz.matsim.r5.utils.spatial.CoordToLatLonTransformation;
+import ch.ethz.matsim.r5.utils.spatial.DefaultCoordToLatLon;
+import ch.ethz.matsim.r5.utils.spatial.DefaultLatLonToCoord;
+import ch.ethz.matsim.r5.utils.spatial.LatLon;
+import ch.ethz.matsim.r5.utils.spatial.LatLonToCoordTransformation;
+
+/**
+ * Sioux Falls network and a fixed sample of requests shared by all benchmarks
+ *
+ * The network is prepared as in SiouxFallsExample. The data directory can be
+ * set with -Dr5.benchmark.data=... and defaults to "sf-data".
+ */
+@State(Scope.Benchmark)
+public class SiouxFallsBenchmarkData {
+	final static public String CRS = "EPSG:26914";
+	final static public String DAY = "2015-09-22";
+	final static public String TIMEZONE = "-05:00";
+
+	final static public int NUMBER_OF_SAMPLES = 1024;
+	final static public long RANDOM_SEED = 0L;
+
+	public TransportNetwork transportNetwork;
+
+	public R5LegRouter router;
+	public R5TeleportationRoutingModule routingModule;
+	public CrowflyDistanceEstimator distanceEstimator;
+	public LoopLinkFinder linkFinder;
+
+	final public List<LatLon> fromLocations = new ArrayList<>(NUMBER_OF_SAMPLES);
+	final public List<LatLon> toLocations = new ArrayList<>(NUMBER_OF_SAMPLES);
+	final public List<Facility<?>> fromFacilities = new ArrayList<>(NUMBER_OF_SAMPLES);
+	final public List<Facility<?>> toFacilities = new ArrayList<>(NUMBER_OF_SAMPLES);
+	final public double[] departureTimes = new double[NUMBER_OF_SAMPLES];
+
+	final public List<Stop> fromStops = new ArrayList<>(NUMBER_OF_SAMPLES);
+	final public List<Stop> toStops = new ArrayList<>(NUMBER_OF_SAMPLES);
+	final public List<String> stopIds = new ArrayList<>(NUMBER_OF_SAMPLES);
+
+	@Setup(Level.Trial)
+	public void setup() throws Exception {
+		File dataDirectory = new File(System.getProperty("r5.benchmark.data", "sf-data"));
+		File networkPath = new File(dataDirectory, "network.dat");
+		SiouxFallsExample.prepareR5(dataDirectory, networkPath);
+
+		transportNetwork = TransportNetwork.read(networkPath);
+		new R5Cleaner(transportNetwork).run();
+
+		LatLonToCoordTransformation latLonToCoord = new DefaultLatLonToCoord(
+				TransformationFactory.getCoordinateTransformation(TransformationFactory.WGS84, CRS));
+		CoordToLatLonTransformation coordToLatLon = new DefaultCoordToLatLon(
+				TransformationFactory.getCoordinateTransformation(CRS, TransformationFactory.WGS84));
+
+		Network network = NetworkUtils.createNetwork();
+		linkFinder = new LoopLinkFinder(transportNetwork, latLonToCoord);
+		linkFinder.createStopLinks(network);
+
+		distanceEstimator = new CrowflyDistanceEstimator(latLonToCoord, 1.0);
+		router = new R5LegRouter(transportNetwork, new SoonestArrivalTimeScorer(), distanceEstimator, DAY, TIMEZONE);
+		routingModule = new R5TeleportationRoutingModule(router, coordToLatLon, latLonToCoord, null, linkFinder);
+
+		// Requests between randomly selected stops with known locations
+		List<Integer> stopIndices = new ArrayList<>();
+
+		for (int i = 0; i < transportNetwork.transitLayer.getStopCount(); i++) {
+			if (transportNetwork.transitLayer.getCoordinateForStopFixed(i) != null) {
+				stopIndices.add(i);
+			}
+		}
+
+		if (stopIndices.size() < 2) {
+			throw new IllegalStateException("Not enough stops with known locations for benchmarking");
+		}
+
+		Random random = new Random(RANDOM_SEED);
+
+		for (int k = 0; k < NUMBER_OF_SAMPLES; k++) {
+			int fromIndex = stopIndices.get(random.nextInt(stopIndices.size()));
+			int toIndex = stopIndices.get(random.nextInt(stopIndices.size()));
+
+			LatLon fromLocation = getStopLocation(fromIndex);
+			LatLon toLocation = getStopLocation(toIndex);
+
+			fromLocations.add(fromLocation);
+			toLocations.add(toLocation);
+			fromFacilities.add(new FakeFacility(latLonToCoord.transform(fromLocation)));
+			toFacilities.add(new FakeFacility(latLonToCoord.transform(toLocation)));
+			departureTimes[k] = 6.0 * 3600.0 + random.nextDouble() * 14.0 * 3600.0;
+
+			fromStops.add(new Stop(fromIndex, transportNetwork.transitLayer));
+			toStops.add(new Stop(toIndex, transportNetwork.transitLayer));
+			stopIds.add(transportNetwork.transitLayer.stopIdForIndex.get(fromIndex));
+		}
+	}
+
+	private LatLon getStopLocation(int stopIndex) {
+		Coordinate coordinate = transportNetwork.transitLayer.getCoordinateForStopFixed(stopIndex);
+		return new LatLon(coordinate.y, coordinate.x);
+	}
+}
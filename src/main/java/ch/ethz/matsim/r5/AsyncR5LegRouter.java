@@ -0,0 +1,188 @@
+package ch.ethz.matsim.r5;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import org.matsim.api.core.v01.population.Person;
+
+import ch.ethz.matsim.r5.matsim.R5Module;
+import ch.ethz.matsim.r5.route.R5Itinerary;
+import ch.ethz.matsim.r5.route.R5Leg;
+import ch.ethz.matsim.r5.utils.spatial.LatLon;
+
+/**
+ * Non-blocking access to an R5LegRouter
+ *
+ * Requests are routed on a dedicated pool of threads with a bounded queue.
+ * If the queue is full, submitting blocks until there is space, so callers
+ * cannot pile up an unbounded number of requests. The returned futures are
+ * completed on a separate callback executor, so that work attached to them
+ * does not occupy the routing threads. Optionally, the callback executor uses
+ * virtual threads if the JVM supports them (Java 21 or newer).
+ *
+ * All threads are daemon threads, so an unclosed router does not keep the JVM
+ * alive.
+ */
+public class AsyncR5LegRouter implements AutoCloseable {
+	final private R5LegRouter router;
+	final private ThreadPoolExecutor routingExecutor;
+	final private ExecutorService callbackExecutor;
+
+	/**
+	 * @param numberOfThreads
+	 *            Number of routing threads
+	 * @param queueSize
+	 *            Maximum number of waiting requests
+	 * @param useVirtualThreads
+	 *            Complete futures on virtual threads if available, otherwise on
+	 *            a cached pool of platform threads
+	 */
+	public AsyncR5LegRouter(R5LegRouter router, int numberOfThreads, int queueSize, boolean useVirtualThreads) {
+		this.router = router;
+
+		this.routingExecutor = new ThreadPoolExecutor(numberOfThreads, numberOfThreads, 0L, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<>(queueSize), createThreadFactory("r5-routing-"), (task, executor) -> {
+					if (executor.isShutdown()) {
+						throw new RejectedExecutionException("Router has been closed");
+					}
+
+					try {
+						executor.getQueue().put(task);
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+						throw new RejectedExecutionException(e);
+					}
+
+					// The router may have been closed while waiting for space, and the
+					// workers may have exited since. Then the task is taken back and
+					// rejected, unless a worker has already taken it from the queue.
+					if (executor.isShutdown() && executor.getQueue().remove(task)) {
+						throw new RejectedExecutionException("Router has been closed");
+					}
+				});
+
+		ExecutorService virtualExecutor = useVirtualThreads ? createVirtualThreadExecutor() : null;
+		this.callbackExecutor = virtualExecutor != null ? virtualExecutor
+				: Executors.newCachedThreadPool(createThreadFactory("r5-callback-"));
+	}
+
+	static private ThreadFactory createThreadFactory(String prefix) {
+		AtomicInteger counter = new AtomicInteger(0);
+
+		return runnable -> {
+			Thread thread = new Thread(runnable, prefix + counter.getAndIncrement());
+			thread.setDaemon(true);
+			return thread;
+		};
+	}
+
+	/**
+	 * Creates Executors.newVirtualThreadPerTaskExecutor() by reflection, since the
+	 * project is compiled for older versions of Java
+	 *
+	 * @return null if virtual threads are not available
+	 */
+	static private ExecutorService createVirtualThreadExecutor() {
+		try {
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (ReflectiveOperationException e) {
+			R5Module.logger.warn("Virtual threads are not available, using platform threads for R5 callbacks");
+			return null;
+		}
+	}
+
+	/**
+	 * Routes a request asynchronously, see R5LegRouter.route
+	 *
+	 * @return Future of the legs, which may be null if no route is found
+	 */
+	public CompletableFuture<List<R5Leg>> route(LatLon fromLocation, LatLon toLocation, double departureTime,
+			Person person) {
+		return CompletableFuture
+				.supplyAsync(() -> router.route(fromLocation, toLocation, departureTime, person), routingExecutor)
+				.thenApplyAsync(Function.identity(), callbackExecutor);
+	}
+
+	/**
+	 * Routes a request asynchronously, see R5LegRouter.routeItinerary
+	 *
+	 * @return Future of the itinerary, which may be null if no route is found
+	 */
+	public CompletableFuture<R5Itinerary> routeItinerary(LatLon fromLocation, LatLon toLocation,
+			double departureTime, Person person) {
+		return CompletableFuture
+				.supplyAsync(() -> router.routeItinerary(fromLocation, toLocation, departureTime, person),
+						routingExecutor)
+				.thenApplyAsync(Function.identity(), callbackExecutor);
+	}
+
+	public CompletableFuture<List<R5Leg>> route(RouteRequest request) {
+		return route(request.getFromLocation(), request.getToLocation(), request.getDepartureTime(),
+				request.getPerson());
+	}
+
+	/**
+	 * Routes all requests asynchronously
+	 *
+	 * @return Future of the leg chains in the order of the requests
+	 */
+	public CompletableFuture<List<List<R5Leg>>> routeAll(List<RouteRequest> requests) {
+		List<CompletableFuture<List<R5Leg>>> futures = new ArrayList<>(requests.size());
+
+		for (RouteRequest request : requests) {
+			futures.add(route(request));
+		}
+
+		return CompletableFuture.allOf(futures.toArray(new CompletableFuture[futures.size()])).thenApply(v -> {
+			List<List<R5Leg>> results = new ArrayList<>(futures.size());
+
+			for (CompletableFuture<List<R5Leg>> future : futures) {
+				results.add(future.join());
+			}
+
+			return results;
+		});
+	}
+
+	/**
+	 * Returns the executor on which futures are completed, e.g. to attach
+	 * further asynchronous stages
+	 */
+	public Executor getCallbackExecutor() {
+		return callbackExecutor;
+	}
+
+	public R5LegRouter getRouter() {
+		return router;
+	}
+
+	/**
+	 * Stops accepting requests and waits until the requests that have already
+	 * been submitted are routed. Their futures are still completed.
+	 */
+	@Override
+	public void close() {
+		routingExecutor.shutdown();
+
+		try {
+			// Routed requests hand their results to the callback executor, so it can
+			// only be shut down once all of them are done
+			routingExecutor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			callbackExecutor.shutdown();
+		}
+	}
+}
@@ -1,10 +1,12 @@
 package ch.ethz.matsim.r5;
 
-import java.time.ZonedDateTime;
-import java.time.temporal.ChronoField;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.EnumSet;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 
 import org.matsim.api.core.v01.population.Person;
 import org.matsim.core.utils.misc.Time;
@@ -19,19 +21,34 @@ import com.conveyal.r5.api.util.StreetSegment;
 import com.conveyal.r5.api.util.TransitModes;
 import com.conveyal.r5.api.util.TransitSegment;
 import com.conveyal.r5.point_to_point.builder.PointToPointQuery;
+import com.conveyal.r5.profile.McRaptorSuboptimalPathProfileRouter;
+import com.conveyal.r5.profile.PathWithTimes;
 import com.conveyal.r5.profile.ProfileRequest;
+import com.conveyal.r5.streets.StreetRouter;
 import com.conveyal.r5.transit.TransportNetwork;
 
+import ch.ethz.matsim.r5.cache.R5AccessCache;
+import ch.ethz.matsim.r5.cache.R5AccessCache.AccessStops;
+import ch.ethz.matsim.r5.cache.R5RequestCoalescer;
+import ch.ethz.matsim.r5.cache.R5ResponseCache;
+import ch.ethz.matsim.r5.cache.R5RouteCache;
+import ch.ethz.matsim.r5.cache.R5RouteKey;
+import ch.ethz.matsim.r5.cache.R5RouteKeyFactory;
+import ch.ethz.matsim.r5.cache.R5RouteStore;
 import ch.ethz.matsim.r5.distance.DistanceEstimator;
 import ch.ethz.matsim.r5.matsim.R5Module;
-import ch.ethz.matsim.r5.route.R5AccessLeg;
-import ch.ethz.matsim.r5.route.R5EgressLeg;
+import ch.ethz.matsim.r5.metrics.R5RoutingMetrics;
+import ch.ethz.matsim.r5.metrics.R5RoutingMetrics.Phase;
+import ch.ethz.matsim.r5.route.R5Itinerary;
 import ch.ethz.matsim.r5.route.R5Leg;
-import ch.ethz.matsim.r5.route.R5TransferLeg;
-import ch.ethz.matsim.r5.route.R5TransitLeg;
 import ch.ethz.matsim.r5.scoring.R5ItineraryScorer;
+import ch.ethz.matsim.r5.search.AdaptiveSearchBounds;
+import ch.ethz.matsim.r5.search.StopCoverageGrid;
+import ch.ethz.matsim.r5.utils.ServiceDay;
 import ch.ethz.matsim.r5.utils.spatial.LatLon;
 
+import gnu.trove.map.TIntIntMap;
+
 /**
  * R5 Transit Router for MATSim
  * 
@@ -45,8 +62,21 @@ public class R5LegRouter {
 	final private R5ItineraryScorer scorer;
 	final private DistanceEstimator distanceEstimator;
 
-	final private String day;
-	final private String timezone;
+	final private ServiceDay serviceDay;
+
+	final static private EnumSet<LegMode> NO_MODES = EnumSet.noneOf(LegMode.class);
+	final static private EnumSet<LegMode> WALK_MODE = EnumSet.of(LegMode.WALK);
+	final static private EnumSet<TransitModes> ALL_TRANSIT_MODES = EnumSet.allOf(TransitModes.class);
+
+	private R5RouteCache routeCache = null;
+	private R5AccessCache accessCache = null;
+	private R5ResponseCache responseCache = null;
+	private R5RequestCoalescer requestCoalescer = null;
+	private R5RouteStore routeStore = null;
+	private R5RouteKeyFactory batchKeyFactory = new R5RouteKeyFactory(0.0, 900.0);
+	private R5RoutingMetrics metrics = null;
+	private AdaptiveSearchBounds searchBounds = null;
+	private StopCoverageGrid stopCoverage = null;
 
 	/**
 	 * R5 Transit Router for MATSim
@@ -69,8 +99,100 @@ public class R5LegRouter {
 		this.distanceEstimator = distanceEstimator;
 		this.transportNetwork = transportNetwork;
 		this.scorer = scorer;
-		this.day = day;
-		this.timezone = timezone;
+		this.serviceDay = new ServiceDay(day, timezone, transportNetwork.getTimeZone());
+	}
+
+	/**
+	 * Sets a cache that is consulted before R5 is queried. By default no cache is
+	 * used.
+	 */
+	public void setRouteCache(R5RouteCache routeCache) {
+		this.routeCache = routeCache;
+	}
+
+	public R5RouteCache getRouteCache() {
+		return routeCache;
+	}
+
+	/**
+	 * Sets a persistent store that is consulted after the route cache and before
+	 * R5 is queried. New results are added to the store.
+	 */
+	public void setRouteStore(R5RouteStore routeStore) {
+		this.routeStore = routeStore;
+	}
+
+	public R5RouteStore getRouteStore() {
+		return routeStore;
+	}
+
+	/**
+	 * Sets a coalescer through which concurrent requests for the same relation
+	 * share one search. By default every thread searches on its own.
+	 */
+	public void setRequestCoalescer(R5RequestCoalescer requestCoalescer) {
+		this.requestCoalescer = requestCoalescer;
+	}
+
+	public R5RequestCoalescer getRequestCoalescer() {
+		return requestCoalescer;
+	}
+
+	/**
+	 * Sets a cache of range searches over departure windows. If set, R5 searches
+	 * the whole window of a request once and all requests for the same relation
+	 * in that window select their itinerary from the same response. By default
+	 * every request is searched individually.
+	 */
+	public void setResponseCache(R5ResponseCache responseCache) {
+		this.responseCache = responseCache;
+	}
+
+	public R5ResponseCache getResponseCache() {
+		return responseCache;
+	}
+
+	/**
+	 * Sets a cache of the stops around origins and destinations. If set, the
+	 * cached walk searches are passed to the transit search instead of letting
+	 * R5 search access and egress stops for every request. The cache must keep
+	 * its street searches.
+	 */
+	public void setAccessCache(R5AccessCache accessCache) {
+		this.accessCache = accessCache;
+	}
+
+	public R5AccessCache getAccessCache() {
+		return accessCache;
+	}
+
+	/**
+	 * Sets where the latencies of the search and reconstruction phases are
+	 * recorded. By default nothing is recorded.
+	 */
+	public void setMetrics(R5RoutingMetrics metrics) {
+		this.metrics = metrics;
+	}
+
+	/**
+	 * Sets bounds for the R5 search that depend on the request. If a bounded
+	 * search does not find an itinerary, the request is searched again with the
+	 * defaults of R5. By default the defaults of R5 are used.
+	 */
+	public void setSearchBounds(AdaptiveSearchBounds searchBounds) {
+		this.searchBounds = searchBounds;
+	}
+
+	/**
+	 * Sets a grid of the areas from which stops can be reached by walking. If
+	 * set, requests from or to uncovered areas are answered without querying R5.
+	 */
+	public void setStopCoverage(StopCoverageGrid stopCoverage) {
+		this.stopCoverage = stopCoverage;
+	}
+
+	private boolean isCovered(LatLon fromLocation, LatLon toLocation) {
+		return stopCoverage == null || (stopCoverage.isCovered(fromLocation) && stopCoverage.isCovered(toLocation));
 	}
 
 	/**
@@ -85,36 +207,36 @@ public class R5LegRouter {
 	 *            Start location of trip.
 	 * @param toLocation
 	 *            End location of trip
-	 * @param departureTime
+	 * @param earliestDepartureTime
 	 *            in seconds
+	 * @param latestDepartureTime
+	 *            in seconds, should be on the same day as earliestDepartureTime
+	 * @param isBounded
+	 *            Whether the search bounds are applied
 	 */
-	private ProfileRequest prepareProfileRequest(LatLon fromLocation, LatLon toLocation, double departureTime) {
+	private ProfileRequest prepareProfileRequest(LatLon fromLocation, LatLon toLocation, double earliestDepartureTime,
+			double latestDepartureTime, boolean isBounded) {
 		ProfileRequest profileRequest = new ProfileRequest();
-		
-		while (departureTime > 24.0 * 3600.0) {
-			departureTime -= 24 * 3600.0;
-		}
-		
-		ZonedDateTime departureDateTime = ZonedDateTime.parse(String.format("%sT%s%s", day, Time.writeTime(0.0), timezone));
-		departureDateTime = departureDateTime.plusSeconds((long) departureTime);
-		
-		// endTimestamp is +1 sec to avoid aborting
-		ZonedDateTime departureDateTimePlusOne = departureDateTime.plusSeconds(1);
 
-		String startTimestamp = departureDateTime.toString();
-		String endTimestamp = departureDateTimePlusOne.toString();
+		double departureOffset = ServiceDay.normalizeDepartureTime(earliestDepartureTime);
+		double departureWindow = latestDepartureTime - earliestDepartureTime;
+
+		serviceDay.setTime(profileRequest, departureOffset, departureWindow);
 
-		profileRequest.zoneId = transportNetwork.getTimeZone();
 		profileRequest.fromLat = fromLocation.getLatitude();
 		profileRequest.fromLon = fromLocation.getLongitude();
 		profileRequest.toLat = toLocation.getLatitude();
 		profileRequest.toLon = toLocation.getLongitude();
-		profileRequest.setTime(startTimestamp, endTimestamp);
 
-		profileRequest.directModes = EnumSet.noneOf(LegMode.class); // No direct walk
-		profileRequest.transitModes = EnumSet.allOf(TransitModes.class);
-		profileRequest.accessModes = EnumSet.of(LegMode.WALK);
-		profileRequest.egressModes = EnumSet.of(LegMode.WALK);
+		// The mode sets are shared between requests, R5 does not modify them
+		profileRequest.directModes = NO_MODES; // No direct walk
+		profileRequest.transitModes = ALL_TRANSIT_MODES;
+		profileRequest.accessModes = WALK_MODE;
+		profileRequest.egressModes = WALK_MODE;
+
+		if (isBounded) {
+			searchBounds.apply(profileRequest, fromLocation, toLocation, earliestDepartureTime);
+		}
 
 		return profileRequest;
 	}
@@ -153,16 +275,12 @@ public class R5LegRouter {
 		}
 	}
 
-	private LatLon getStopLocation(Stop stop) {
-		return new LatLon(stop.lat, stop.lon);
-	}
-
-	private String getStopId(Stop stop) {
-		return stop.stopId;
+	private int getStopIndex(Stop stop) {
+		return transportNetwork.transitLayer.indexForStopId.get(stop.stopId);
 	}
 
 	/**
-	 * Returns an R5 itinerary as a chain of legs
+	 * Returns an R5 itinerary as a compact itinerary
 	 * 
 	 * @param fromLocation
 	 *            Start location
@@ -174,25 +292,33 @@ public class R5LegRouter {
 	 *            from R5
 	 * @param itinerary
 	 *            fromR5
+	 * @param startTime
+	 *            of the itinerary, not before departureTime
+	 * @param endTime
+	 *            of the itinerary, not before startTime
 	 * @return
 	 */
-	private List<R5Leg> route(LatLon fromLocation, LatLon toLocation, double departureTime, ProfileOption option,
-			Itinerary itinerary, Person person) {
-		List<R5Leg> plan = new LinkedList<>();
+	private R5Itinerary createItinerary(LatLon fromLocation, LatLon toLocation, double departureTime,
+			ProfileOption option, Itinerary itinerary, double startTime, double endTime, Person person) {
 		verify(option);
 
-		double currentTime = itinerary.startTime.get(ChronoField.SECOND_OF_DAY);
-		while (currentTime < departureTime)
-			currentTime += 3600.0 * 24.0;
+		R5Itinerary.Builder builder = new R5Itinerary.Builder(transportNetwork.transitLayer,
+				fromLocation.getLatitude(), fromLocation.getLongitude(), toLocation.getLatitude(),
+				toLocation.getLongitude(), 2 * option.transit.size() + 1);
+
+		double currentTime = startTime;
+		double lastDepartureTime = departureTime;
+		double lastTravelTime = 0.0;
 
 		// Add access walk
 		if (option.access.size() == 1) {
 			StreetSegment segment = option.access.get(0);
 			Stop accessStop = option.transit.get(0).from;
 
-			R5AccessLeg accessLeg = new R5AccessLeg(departureTime, segment.duration, ((double) segment.distance) / 1e3,
-					fromLocation, getStopLocation(accessStop), getStopId(accessStop));
-			plan.add(accessLeg);
+			builder.addAccessLeg(departureTime, segment.duration, ((double) segment.distance) / 1e3,
+					getStopIndex(accessStop));
+			lastDepartureTime = departureTime;
+			lastTravelTime = segment.duration;
 
 			currentTime += segment.duration;
 
@@ -205,8 +331,6 @@ public class R5LegRouter {
 			// a larger gap between arriving at the stop and entering the vehicle.
 		}
 
-		R5TransferLeg previousTransferLeg = null;
-
 		// Add transit segments
 		for (int i = 0; i < option.transit.size(); i++) {
 			int patternIndex = itinerary.connection.transit.get(i).pattern;
@@ -215,34 +339,33 @@ public class R5LegRouter {
 			TransitSegment segment = option.transit.get(i);
 			SegmentPattern pattern = option.transit.get(i).segmentPatterns.get(patternIndex);
 
-			double segmentDepartureTime = pattern.fromDepartureTime.get(timeIndex).get(ChronoField.SECOND_OF_DAY);
-			while (segmentDepartureTime < currentTime)
-				segmentDepartureTime += 3600.0 * 24.0;
-			double segmentArrivalTime = pattern.toArrivalTime.get(timeIndex).get(ChronoField.SECOND_OF_DAY);
-			while (segmentArrivalTime < segmentDepartureTime)
-				segmentArrivalTime += 3600.0 * 24.0;
+			double segmentDepartureTime = ServiceDay.rollOver(
+					ServiceDay.getSecondOfDay(pattern.fromDepartureTime.get(timeIndex)), currentTime);
+			double segmentArrivalTime = ServiceDay.rollOver(
+					ServiceDay.getSecondOfDay(pattern.toArrivalTime.get(timeIndex)), segmentDepartureTime);
 			double segmentTravelTime = segmentArrivalTime - segmentDepartureTime;
 
-			R5TransitLeg transitLeg = new R5TransitLeg(segmentDepartureTime, segmentTravelTime,
-					distanceEstimator.getDistance(segment.from, segment.to, pattern.routeIndex),
-					getStopLocation(segment.from), getStopLocation(segment.to), getStopId(segment.from),
-					getStopId(segment.to), patternIndex, timeIndex);
-			plan.add(transitLeg);
+			int fromStopIndex = getStopIndex(segment.from);
+			int toStopIndex = getStopIndex(segment.to);
 
-			currentTime = segmentDepartureTime + segmentTravelTime;
+			builder.addTransitLeg(segmentDepartureTime, segmentTravelTime,
+					distanceEstimator.getDistance(segment.from, segment.to, fromStopIndex, toStopIndex, pattern),
+					fromStopIndex, toStopIndex, patternIndex, timeIndex);
+			lastDepartureTime = segmentDepartureTime;
+			lastTravelTime = segmentTravelTime;
 
-			if (previousTransferLeg != null) {
-				previousTransferLeg.setArrival(getStopLocation(segment.from), getStopId(segment.from));
-				previousTransferLeg = null;
-			}
+			currentTime = segmentDepartureTime + segmentTravelTime;
 
 			if (segment.middle != null) {
-				R5TransferLeg transferLeg = new R5TransferLeg(currentTime, segment.middle.duration,
-						((double) segment.middle.distance) / 1e3, getStopLocation(segment.to), getStopId(segment.to));
-				plan.add(transferLeg);
+				int nextStopIndex = i + 1 < option.transit.size() ? getStopIndex(option.transit.get(i + 1).from)
+						: R5Itinerary.NO_STOP;
+
+				builder.addTransferLeg(currentTime, segment.middle.duration,
+						((double) segment.middle.distance) / 1e3, toStopIndex, nextStopIndex);
+				lastDepartureTime = currentTime;
+				lastTravelTime = segment.middle.duration;
 
 				currentTime += segment.middle.duration;
-				previousTransferLeg = transferLeg;
 			}
 		}
 
@@ -251,43 +374,37 @@ public class R5LegRouter {
 			StreetSegment segment = option.egress.get(0);
 			Stop egressStop = option.transit.get(option.transit.size() - 1).to;
 
-			R5EgressLeg egressLeg = new R5EgressLeg(currentTime, segment.duration, ((double) segment.distance) / 1e3,
-					getStopLocation(egressStop), toLocation, getStopId(egressStop));
-			plan.add(egressLeg);
+			builder.addEgressLeg(currentTime, segment.duration, ((double) segment.distance) / 1e3,
+					getStopIndex(egressStop));
+			lastDepartureTime = currentTime;
+			lastTravelTime = segment.duration;
 
 			currentTime += segment.duration;
 		}
 
 		// VALIDATION
 
-		double expectedStartTime = itinerary.startTime.get(ChronoField.SECOND_OF_DAY);
-		while (expectedStartTime < departureTime)
-			expectedStartTime += 3600.0 * 24.0;
-		double expectedEndTime = itinerary.endTime.get(ChronoField.SECOND_OF_DAY);
-		while (expectedEndTime < expectedStartTime || expectedEndTime < departureTime)
-			expectedEndTime += 3600.0 * 24.0;
-		
-		double reconstructedEndTime = plan.get(plan.size() - 1).getDepartureTime()
-				+ plan.get(plan.size() - 1).getTravelTime();
+		double expectedEndTime = endTime;
+		double reconstructedEndTime = lastDepartureTime + lastTravelTime;
 
 		if (reconstructedEndTime != expectedEndTime) {
 			R5Module.logger.error(String.format("Person: %s, Expected: %s, Found: %s", person == null ? "null" : person.getId().toString(), Time.writeTime(expectedEndTime), Time.writeTime(reconstructedEndTime)));
 			throw new IllegalStateException("End time has not been reconstructed properly");
 		}
 
-		double previousArrivalTime = departureTime;
+		R5Itinerary result = builder.build();
 
-		for (R5Leg leg : plan) {
-			if (leg.getDepartureTime() < previousArrivalTime) {
+		for (int i = 0; i < result.size(); i++) {
+			if (result.getDepartureTime(i) < departureTime) {
 				throw new IllegalStateException("Departure is before last arrival");
 			}
 
-			if (leg.getTravelTime() < 0.0) {
+			if (result.getTravelTime(i) < 0.0) {
 				throw new IllegalStateException("Negative travel time");
 			}
 		}
 
-		return plan;
+		return result;
 	}
 
 	/**
@@ -305,37 +422,422 @@ public class R5LegRouter {
 	 * @return May return null if no route is found
 	 */
 	public List<R5Leg> route(LatLon fromLocation, LatLon toLocation, double departureTime, Person person) {
+		R5Itinerary itinerary = routeItinerary(fromLocation, toLocation, departureTime, person);
+		return itinerary == null ? null : itinerary.toLegs();
+	}
+
+	/**
+	 * Calculates a compact itinerary for a given PT OD relation
+	 * 
+	 * Same as route, but without creating leg objects. Stops are given as indices
+	 * of the transit layer.
+	 * 
+	 * @return May return null if no route is found
+	 */
+	public R5Itinerary routeItinerary(LatLon fromLocation, LatLon toLocation, double departureTime, Person person) {
+		if (!isCovered(fromLocation, toLocation)) {
+			return null; // No stop within walking distance
+		}
+
+		if (routeCache == null) {
+			return loadOrCalculateRoute(fromLocation, toLocation, departureTime, person);
+		}
+
+		R5RouteKey key = routeCache.createKey(fromLocation, toLocation, departureTime);
+		R5RouteCache.Entry entry = routeCache.get(key);
+
+		if (entry != null) {
+			return entry.getItinerary(departureTime);
+		}
+
+		R5Itinerary itinerary = loadOrCalculateRoute(fromLocation, toLocation, departureTime, person);
+		routeCache.put(key, departureTime, itinerary);
+
+		return itinerary;
+	}
+
+	private R5Itinerary loadOrCalculateRoute(LatLon fromLocation, LatLon toLocation, double departureTime,
+			Person person) {
+		if (routeStore == null) {
+			return coalesceRoute(fromLocation, toLocation, departureTime, person);
+		}
+
+		R5RouteKey key = routeStore.createKey(fromLocation, toLocation, departureTime);
+		R5RouteCache.Entry entry = routeStore.get(key);
+
+		if (entry != null) {
+			return entry.getItinerary(departureTime);
+		}
+
+		R5Itinerary itinerary = coalesceRoute(fromLocation, toLocation, departureTime, person);
+		routeStore.put(key, departureTime, itinerary);
+
+		return itinerary;
+	}
+
+	private R5Itinerary coalesceRoute(LatLon fromLocation, LatLon toLocation, double departureTime,
+			Person person) {
+		if (requestCoalescer == null) {
+			return calculateRoute(fromLocation, toLocation, departureTime, person);
+		}
+
+		return requestCoalescer.route(requestCoalescer.createKey(fromLocation, toLocation, departureTime),
+				departureTime, () -> calculateRoute(fromLocation, toLocation, departureTime, person));
+	}
+
+	private R5Itinerary calculateRoute(LatLon fromLocation, LatLon toLocation, double departureTime,
+			Person person) {
+		if (responseCache != null && responseCache.getWindowEnd(departureTime) >= departureTime) {
+			R5RouteKey key = responseCache.createKey(fromLocation, toLocation, departureTime);
+			R5ResponseCache.Entry entry = responseCache.get(key);
+			ProfileResponse windowResponse;
+
+			if (entry == null) {
+				// The response is shared by the whole cell, so it is searched from the cell
+				// centers rather than from the first requested locations
+				windowResponse = search(responseCache.getCellCenter(fromLocation),
+						responseCache.getCellCenter(toLocation), responseCache.getWindowStart(departureTime),
+						responseCache.getWindowEnd(departureTime));
+				responseCache.put(key, windowResponse);
+			} else {
+				windowResponse = entry.getResponse();
+			}
+
+			if (windowResponse == null) {
+				return null; // No route found for the whole window
+			}
+
+			R5Itinerary itinerary = select(windowResponse, fromLocation, toLocation, departureTime, true, person);
+
+			if (itinerary != null) {
+				return itinerary;
+			}
+
+			// All itineraries of the window depart too early, search individually
+		}
+
+		ProfileResponse response = search(fromLocation, toLocation, departureTime, departureTime);
+
+		if (response != null) {
+			return select(response, fromLocation, toLocation, departureTime, false, person);
+		}
+
+		return null; // No route found
+	}
+
+	/**
+	 * Runs an R5 search for all departures in the given time range
+	 * 
+	 * @return May return null if R5 does not find any itinerary
+	 */
+	private ProfileResponse search(LatLon fromLocation, LatLon toLocation, double earliestDepartureTime,
+			double latestDepartureTime) {
+		if (!isCovered(fromLocation, toLocation)) {
+			return null; // No stop within walking distance
+		}
+
+		if (searchBounds != null) {
+			ProfileResponse response = search(fromLocation, toLocation, earliestDepartureTime, latestDepartureTime,
+					true);
+
+			if (response != null) {
+				return response;
+			}
+
+			// Nothing found within the bounds, widen the search to the defaults
+		}
+
+		return search(fromLocation, toLocation, earliestDepartureTime, latestDepartureTime, false);
+	}
+
+	private ProfileResponse search(LatLon fromLocation, LatLon toLocation, double earliestDepartureTime,
+			double latestDepartureTime, boolean isBounded) {
+		long startTime = metrics == null ? 0 : System.nanoTime();
+
 		try {
-			PointToPointQuery query = new PointToPointQuery(transportNetwork);
-			ProfileRequest profileRequest = prepareProfileRequest(fromLocation, toLocation, departureTime);
-			ProfileResponse response = query.getPlan(profileRequest);
-
-			// Find quickest connection (soonest arrival time)
-			ProfileOption selectedOption = null;
-			Itinerary selectedItinerary = null;
-			double selectedScore = Double.NEGATIVE_INFINITY;
-
-			for (ProfileOption option : response.getOptions()) {
-				for (Itinerary itinerary : option.itinerary) {
-					double score = scorer.scoreItinerary(itinerary, departureTime);
-
-					if (score > selectedScore) {
-						selectedScore = score;
-						selectedOption = option;
-						selectedItinerary = itinerary;
-					}
+			ProfileRequest profileRequest = prepareProfileRequest(fromLocation, toLocation, earliestDepartureTime,
+					latestDepartureTime, isBounded);
+
+			if (accessCache != null) {
+				AccessStops accessStops = accessCache.getAccessStops(fromLocation);
+				AccessStops egressStops = accessCache.getAccessStops(toLocation);
+
+				if (accessStops.getStreetRouter() != null && egressStops.getStreetRouter() != null) {
+					return searchWithAccessStops(profileRequest, accessStops, egressStops);
 				}
-			}
 
-			if (selectedOption != null) {
-				return route(fromLocation, toLocation, departureTime, selectedOption, selectedItinerary, person);
+				// The cell center is not close to a street, let R5 search from the exact locations
 			}
+
+			PointToPointQuery query = new PointToPointQuery(transportNetwork);
+			return query.getPlan(profileRequest);
 		} catch (IllegalStateException e) {
 			if (!e.getMessage().contains("No valid itineraries found for path")) {
 				throw e;
 			}
+		} finally {
+			if (metrics != null) {
+				metrics.record(Phase.SEARCH, System.nanoTime() - startTime);
+			}
 		}
 
-		return null; // No route found
+		return null;
+	}
+
+	/**
+	 * Runs the transit search of R5 from cached access and egress stops
+	 *
+	 * Same as PointToPointQuery.getPlan for walk access and egress without
+	 * direct modes, except that the walk searches are taken from the access
+	 * cache.
+	 *
+	 * @return May return null if R5 does not find any itinerary
+	 */
+	private ProfileResponse searchWithAccessStops(ProfileRequest profileRequest, AccessStops accessStops,
+			AccessStops egressStops) {
+		int timeLimit = profileRequest.maxWalkTime * 60;
+
+		Map<LegMode, TIntIntMap> accessTimes = Collections.singletonMap(LegMode.WALK,
+				accessStops.getReachedStops(timeLimit));
+		Map<LegMode, TIntIntMap> egressTimes = Collections.singletonMap(LegMode.WALK,
+				egressStops.getReachedStops(timeLimit));
+
+		if (accessTimes.get(LegMode.WALK).isEmpty() || egressTimes.get(LegMode.WALK).isEmpty()) {
+			return null; // No stop within walking distance
+		}
+
+		Map<LegMode, StreetRouter> accessRouters = Collections.singletonMap(LegMode.WALK,
+				accessStops.getStreetRouter());
+		Map<LegMode, StreetRouter> egressRouters = Collections.singletonMap(LegMode.WALK,
+				egressStops.getStreetRouter());
+
+		McRaptorSuboptimalPathProfileRouter transitRouter = new McRaptorSuboptimalPathProfileRouter(transportNetwork,
+				profileRequest, accessTimes, egressTimes);
+		ProfileResponse response = new ProfileResponse();
+
+		for (PathWithTimes path : transitRouter.getPaths()) {
+			response.addTransitPath(accessRouters, egressRouters, path, transportNetwork,
+					profileRequest.getFromTimeDateZD());
+		}
+
+		if (response.getOptions().isEmpty()) {
+			return null;
+		}
+
+		response.generateStreetTransfers(transportNetwork, profileRequest);
+		return response;
+	}
+
+	/**
+	 * Selects the best scoring itinerary of an R5 response and converts it into a
+	 * compact itinerary
+	 * 
+	 * @param onlyLaterDepartures
+	 *            If set, only itineraries that start at or after the departure
+	 *            time are considered, which is necessary if the response covers a
+	 *            range of departure times
+	 * @return May return null if no itinerary has been selected
+	 */
+	private R5Itinerary select(ProfileResponse response, LatLon fromLocation, LatLon toLocation,
+			double departureTime, boolean onlyLaterDepartures, Person person) {
+		long reconstructionStartTime = metrics == null ? 0 : System.nanoTime();
+		double departureOffset = ServiceDay.normalizeDepartureTime(departureTime);
+
+		// Find quickest connection (soonest arrival time)
+		ProfileOption selectedOption = null;
+		Itinerary selectedItinerary = null;
+		double selectedScore = Double.NEGATIVE_INFINITY;
+		double selectedStartTime = Double.NaN;
+		double selectedEndTime = Double.NaN;
+
+		for (ProfileOption option : response.getOptions()) {
+			for (Itinerary itinerary : option.itinerary) {
+				double startSecondOfDay = ServiceDay.getSecondOfDay(itinerary.startTime);
+
+				if (onlyLaterDepartures && startSecondOfDay < departureOffset) {
+					continue;
+				}
+
+				double startTime = ServiceDay.rollOver(startSecondOfDay, departureTime);
+				double endTime = ServiceDay.rollOver(ServiceDay.getSecondOfDay(itinerary.endTime), startTime);
+
+				double score = scorer.scoreItinerary(itinerary, startTime, endTime, departureTime);
+
+				if (score > selectedScore) {
+					selectedScore = score;
+					selectedOption = option;
+					selectedItinerary = itinerary;
+					selectedStartTime = startTime;
+					selectedEndTime = endTime;
+				}
+			}
+		}
+
+		if (selectedOption != null) {
+			R5Itinerary result = createItinerary(fromLocation, toLocation, departureTime, selectedOption,
+					selectedItinerary, selectedStartTime, selectedEndTime, person);
+
+			if (metrics != null) {
+				metrics.record(Phase.RECONSTRUCTION, System.nanoTime() - reconstructionStartTime);
+			}
+
+			return result;
+		}
+
+		return null;
+	}
+
+	/**
+	 * Sets how requests are grouped in routeAll
+	 * 
+	 * @param spatialResolution
+	 *            Approximate cell size in meters in which origins and
+	 *            destinations are considered to be equal. If not positive, only
+	 *            identical locations are grouped.
+	 * @param departureWindow
+	 *            Length of the departure time windows in seconds which are
+	 *            answered by one search
+	 */
+	public void setBatchParameters(double spatialResolution, double departureWindow) {
+		this.batchKeyFactory = new R5RouteKeyFactory(spatialResolution, departureWindow);
+	}
+
+	/**
+	 * Calculates chains of legs for many PT OD relations at once
+	 * 
+	 * Requests whose origins and destinations fall into the same cells and whose
+	 * departure times fall into the same window (see setBatchParameters) are
+	 * answered from a single R5 search between the cell centers over the whole
+	 * window. For each request the best scoring itinerary that departs after its
+	 * departure time is selected. If such an itinerary does not exist, the
+	 * request is routed individually in the same way as by routeItinerary, i.e.
+	 * through the route store and the request coalescer. All requests are
+	 * answered from the route cache and the route store first if possible.
+	 * Itineraries of a shared search between cell centers are not put into them,
+	 * since their walk legs do not start at the exact locations.
+	 * 
+	 * @return Leg chains in the order of the requests, entries may be null if no
+	 *         route is found
+	 */
+	public List<List<R5Leg>> routeAll(List<RouteRequest> requests) {
+		List<List<R5Leg>> results = new ArrayList<>(requests.size());
+
+		for (R5Itinerary itinerary : routeAllItineraries(requests)) {
+			results.add(itinerary == null ? null : itinerary.toLegs());
+		}
+
+		return results;
+	}
+
+	/**
+	 * Calculates compact itineraries for many PT OD relations at once, see
+	 * routeAll
+	 * 
+	 * @return Itineraries in the order of the requests, entries may be null if no
+	 *         route is found
+	 */
+	public List<R5Itinerary> routeAllItineraries(List<RouteRequest> requests) {
+		List<R5Itinerary> results = new ArrayList<>(Collections.nCopies(requests.size(), (R5Itinerary) null));
+		Map<R5RouteKey, List<Integer>> groups = new LinkedHashMap<>();
+
+		for (int i = 0; i < requests.size(); i++) {
+			RouteRequest request = requests.get(i);
+
+			if (metrics != null) {
+				metrics.addRequest();
+			}
+
+			if (routeCache != null) {
+				R5RouteCache.Entry entry = routeCache.get(routeCache.createKey(request.getFromLocation(),
+						request.getToLocation(), request.getDepartureTime()));
+
+				if (entry != null) {
+					results.set(i, entry.getItinerary(request.getDepartureTime()));
+					continue;
+				}
+			}
+
+			if (routeStore != null) {
+				R5RouteCache.Entry entry = routeStore.get(routeStore.createKey(request.getFromLocation(),
+						request.getToLocation(), request.getDepartureTime()));
+
+				if (entry != null) {
+					R5Itinerary itinerary = entry.getItinerary(request.getDepartureTime());
+
+					if (routeCache != null) {
+						routeCache.put(routeCache.createKey(request.getFromLocation(), request.getToLocation(),
+								request.getDepartureTime()), request.getDepartureTime(), itinerary);
+					}
+
+					results.set(i, itinerary);
+					continue;
+				}
+			}
+
+			R5RouteKey groupKey = batchKeyFactory.createKey(request.getFromLocation(), request.getToLocation(),
+					request.getDepartureTime());
+			groups.computeIfAbsent(groupKey, k -> new LinkedList<>()).add(i);
+		}
+
+		for (List<Integer> group : groups.values()) {
+			double earliestDepartureTime = Double.POSITIVE_INFINITY;
+			double latestDepartureTime = Double.NEGATIVE_INFINITY;
+
+			for (int index : group) {
+				earliestDepartureTime = Math.min(earliestDepartureTime, requests.get(index).getDepartureTime());
+				latestDepartureTime = Math.max(latestDepartureTime, requests.get(index).getDepartureTime());
+			}
+
+			boolean isShared = group.size() > 1 && ServiceDay.normalizeDepartureTime(latestDepartureTime)
+					- ServiceDay.normalizeDepartureTime(earliestDepartureTime) == latestDepartureTime
+							- earliestDepartureTime;
+
+			ProfileResponse response = null;
+
+			if (isShared) {
+				// Search from the cells, so that the result does not depend on which request comes first
+				RouteRequest representative = requests.get(group.get(0));
+				response = search(batchKeyFactory.getCellCenter(representative.getFromLocation()),
+						batchKeyFactory.getCellCenter(representative.getToLocation()), earliestDepartureTime,
+						latestDepartureTime);
+			}
+
+			for (int index : group) {
+				RouteRequest request = requests.get(index);
+				R5Itinerary itinerary = null;
+
+				if (response != null) {
+					itinerary = select(response, request.getFromLocation(), request.getToLocation(),
+							request.getDepartureTime(), true, request.getPerson());
+				}
+
+				boolean isStored = true;
+
+				if (itinerary == null) {
+					// A single request, no suitable departure in the shared search or no route from the cell
+					// centers: route individually through the route store and the coalescer
+					itinerary = loadOrCalculateRoute(request.getFromLocation(), request.getToLocation(),
+							request.getDepartureTime(), request.getPerson());
+				} else if (batchKeyFactory.isSpatiallyExact()) {
+					if (routeStore != null) {
+						routeStore.put(routeStore.createKey(request.getFromLocation(), request.getToLocation(),
+								request.getDepartureTime()), request.getDepartureTime(), itinerary);
+					}
+				} else {
+					// The walk legs of the shared search are measured from the cell centers, so the itinerary
+					// must not be stored under the exact locations of the request
+					isStored = false;
+				}
+
+				if (routeCache != null && isStored) {
+					routeCache.put(routeCache.createKey(request.getFromLocation(), request.getToLocation(),
+							request.getDepartureTime()), request.getDepartureTime(), itinerary);
+				}
+
+				results.set(index, itinerary);
+			}
+		}
+
+		return results;
 	}
 }
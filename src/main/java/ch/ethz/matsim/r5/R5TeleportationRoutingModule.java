@@ -1,18 +1,11 @@
 package ch.ethz.matsim.r5;
 
-import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
-import org.matsim.api.core.v01.Id;
-import org.matsim.api.core.v01.network.Link;
-import org.matsim.api.core.v01.population.Activity;
 import org.matsim.api.core.v01.population.Leg;
 import org.matsim.api.core.v01.population.Person;
 import org.matsim.api.core.v01.population.PlanElement;
-import org.matsim.api.core.v01.population.Route;
-import org.matsim.core.population.PopulationUtils;
-import org.matsim.core.population.routes.GenericRouteFactory;
 import org.matsim.core.router.RoutingModule;
 import org.matsim.core.router.StageActivityTypes;
 import org.matsim.core.router.StageActivityTypesImpl;
@@ -21,12 +14,11 @@ import org.matsim.core.utils.misc.Time;
 import org.matsim.facilities.Facility;
 
 import ch.ethz.matsim.r5.matsim.R5Module;
+import ch.ethz.matsim.r5.metrics.R5RoutingMetrics;
+import ch.ethz.matsim.r5.metrics.R5RoutingMetrics.Phase;
 import ch.ethz.matsim.r5.route.LinkFinder;
-import ch.ethz.matsim.r5.route.R5AccessLeg;
-import ch.ethz.matsim.r5.route.R5EgressLeg;
-import ch.ethz.matsim.r5.route.R5Leg;
-import ch.ethz.matsim.r5.route.R5TransferLeg;
-import ch.ethz.matsim.r5.route.R5TransitLeg;
+import ch.ethz.matsim.r5.route.R5Itinerary;
+import ch.ethz.matsim.r5.route.R5TripConverter;
 import ch.ethz.matsim.r5.utils.spatial.CoordToLatLonTransformation;
 import ch.ethz.matsim.r5.utils.spatial.LatLon;
 import ch.ethz.matsim.r5.utils.spatial.LatLonToCoordTransformation;
@@ -36,45 +28,39 @@ public class R5TeleportationRoutingModule implements RoutingModule {
 	final private RoutingModule walkRouter;
 
 	final private CoordToLatLonTransformation coordToLatLon;
-	final private LatLonToCoordTransformation latLonToCoord;
 	
-	final private LinkFinder linkFinder;
+	final private R5TripConverter converter;
+	final private R5RoutingMetrics metrics;
+
+	private boolean useCompactRoutes = false;
 
 	public R5TeleportationRoutingModule(R5LegRouter router, CoordToLatLonTransformation coordToLatLon,
 			LatLonToCoordTransformation latLonToCoord, RoutingModule walkRouter, LinkFinder linkFinder) {
+		this(router, coordToLatLon, latLonToCoord, walkRouter, linkFinder, null);
+	}
+
+	/**
+	 * @param metrics
+	 *            Records conversion latencies, fallbacks and exceptions, may be
+	 *            null
+	 */
+	public R5TeleportationRoutingModule(R5LegRouter router, CoordToLatLonTransformation coordToLatLon,
+			LatLonToCoordTransformation latLonToCoord, RoutingModule walkRouter, LinkFinder linkFinder,
+			R5RoutingMetrics metrics) {
 		this.router = router;
 		this.coordToLatLon = coordToLatLon;
-		this.latLonToCoord = latLonToCoord;
 		this.walkRouter = walkRouter;
-		this.linkFinder = linkFinder;
+		this.converter = new R5TripConverter(linkFinder, latLonToCoord);
+		this.metrics = metrics;
 	}
-	
-	private Id<Link> getStartLinkId(R5Leg leg, Facility<?> fromFacility) {
-		if (leg instanceof R5AccessLeg) {
-			return fromFacility.getLinkId();
-		} else if (leg instanceof R5TransitLeg) {
-			return linkFinder.findLink(((R5TransitLeg) leg).getDepartureStopId());
-		} else if (leg instanceof R5TransferLeg) {
-			return linkFinder.findLink(((R5TransferLeg) leg).getDepartureStopId());
-		} else if (leg instanceof R5EgressLeg) {
-			return linkFinder.findLink(((R5EgressLeg) leg).getDepartureStopId());
-		}
 
-		throw new IllegalStateException();
-	}
-	
-	private Id<Link> getEndLinkId(R5Leg leg, Facility<?> toFacility) {
-		if (leg instanceof R5EgressLeg) {
-			return toFacility.getLinkId();
-		} else if (leg instanceof R5TransitLeg) {
-			return linkFinder.findLink(((R5TransitLeg) leg).getArrivalStopId());
-		} else if (leg instanceof R5TransferLeg) {
-			return linkFinder.findLink(((R5TransferLeg) leg).getArrivalStopId());
-		} else if (leg instanceof R5AccessLeg) {
-			return linkFinder.findLink(((R5AccessLeg) leg).getArrivalStopId());
-		}
-
-		throw new IllegalStateException();
+	/**
+	 * If set, every PT trip is returned as a single "pt" leg with an R5PtRoute
+	 * instead of one leg per stage with "pt interaction" activities in between.
+	 * By default the detailed form is returned.
+	 */
+	public void setUseCompactRoutes(boolean useCompactRoutes) {
+		this.useCompactRoutes = useCompactRoutes;
 	}
 	
 	private static int indexOutOfBoundsCount = 0;
@@ -85,11 +71,19 @@ public class R5TeleportationRoutingModule implements RoutingModule {
 		LatLon fromLocation = coordToLatLon.transform(fromFacility.getCoord());
 		LatLon toLocation = coordToLatLon.transform(toFacility.getCoord());
 
-		List<R5Leg> legs = null;
+		R5Itinerary itinerary = null;
+
+		if (metrics != null) {
+			metrics.addRequest();
+		}
 		
 		try {
-			legs = router.route(fromLocation, toLocation, departureTime, person);
+			itinerary = router.routeItinerary(fromLocation, toLocation, departureTime, person);
 		} catch (Exception e) {
+			if (metrics != null) {
+				metrics.addException();
+			}
+
 			if (e instanceof ArrayIndexOutOfBoundsException) {
 				if (indexOutOfBoundsCount++ < 100) {
 					// TODO: Why does this error occur? It is not critical, since we just pretend that there is no 
@@ -105,57 +99,28 @@ public class R5TeleportationRoutingModule implements RoutingModule {
 			}
 		}
 		
-		if (legs != null) {
-			List<PlanElement> matsimPlan = new ArrayList<>(legs.size());
-	
-			Activity previousActivity = null;
-	
-			// TODO: Here we need proper link IDs ...
-			// Ideally we need to attach all stops to links
-			
-			for (int i = 0; i < legs.size(); i++) {
-				R5Leg leg = legs.get(i);
-	
-				boolean isWalk = leg instanceof R5AccessLeg || leg instanceof R5EgressLeg || leg instanceof R5TransferLeg;
-				Leg matsimLeg = PopulationUtils.createLeg(isWalk ? "transit_walk" : "pt");
-				matsimLeg.setDepartureTime(leg.getDepartureTime());
-				matsimLeg.setTravelTime(leg.getArrivalTime() - leg.getDepartureTime());
-				
-				Id<Link> startLinkId = getStartLinkId(leg, fromFacility);
-				Id<Link> endLinkId = getEndLinkId(leg, toFacility);
-	
-				GenericRouteFactory factory = new GenericRouteFactory();
-				Route matsimRoute = factory.createRoute(startLinkId, endLinkId);
-				matsimRoute.setDistance(leg.getDistance());
-				matsimRoute.setTravelTime(leg.getArrivalTime() - leg.getDepartureTime());
-	
-				matsimLeg.setRoute(matsimRoute);
-				matsimPlan.add(matsimLeg);
-	
-				if (previousActivity != null) {
-					previousActivity.setLinkId(startLinkId);
-					previousActivity.setEndTime(leg.getDepartureTime());
-				}
-	
-				if (i < legs.size() - 1) {
-					Activity activity = PopulationUtils.createActivityFromCoord("pt interaction",
-							latLonToCoord.transform(leg.getArrivalLocation()));
-					activity.setStartTime(leg.getArrivalTime());
-					matsimPlan.add(activity);
-					previousActivity = activity;
-				}
+		if (itinerary != null) {
+			long conversionStartTime = metrics == null ? 0 : System.nanoTime();
+			List<? extends PlanElement> matsimPlan;
+
+			if (useCompactRoutes) {
+				matsimPlan = Collections.singletonList(
+						converter.createCompactLeg(itinerary, fromFacility.getLinkId(), toFacility.getLinkId()));
+			} else {
+				matsimPlan = converter.createPlanElements(itinerary, fromFacility.getLinkId(),
+						toFacility.getLinkId());
 			}
-			
-			for (PlanElement element : matsimPlan) {
-				if (element instanceof Activity) {
-					Activity activity = (Activity) element;
-					activity.setMaximumDuration(Math.max(0, activity.getEndTime() - activity.getStartTime()));
-					activity.setEndTime(Time.UNDEFINED_TIME);
-				}
+
+			if (metrics != null) {
+				metrics.record(Phase.CONVERSION, System.nanoTime() - conversionStartTime);
 			}
 	
 			return matsimPlan;
 		} else if (walkRouter != null) {
+			if (metrics != null) {
+				metrics.addFallback();
+			}
+
 			List<? extends PlanElement> alternative = walkRouter.calcRoute(fromFacility, toFacility, departureTime, person);
 			((Leg)alternative.get(0)).setMode("transit_walk");
 			return alternative;
@@ -0,0 +1,48 @@
+package ch.ethz.matsim.r5;
+
+import org.matsim.api.core.v01.population.Person;
+
+import ch.ethz.matsim.r5.utils.spatial.LatLon;
+
+/**
+ * A single PT OD relation for batch routing with R5LegRouter.routeAll
+ */
+public class RouteRequest {
+	final private LatLon fromLocation;
+	final private LatLon toLocation;
+	final private double departureTime;
+	final private Person person;
+
+	/**
+	 * @param fromLocation
+	 *            Start location
+	 * @param toLocation
+	 *            End location
+	 * @param departureTime
+	 *            in seconds of day
+	 * @param person
+	 *            May be null
+	 */
+	public RouteRequest(LatLon fromLocation, LatLon toLocation, double departureTime, Person person) {
+		this.fromLocation = fromLocation;
+		this.toLocation = toLocation;
+		this.departureTime = departureTime;
+		this.person = person;
+	}
+
+	public LatLon getFromLocation() {
+		return fromLocation;
+	}
+
+	public LatLon getToLocation() {
+		return toLocation;
+	}
+
+	public double getDepartureTime() {
+		return departureTime;
+	}
+
+	public Person getPerson() {
+		return person;
+	}
+}
@@ -0,0 +1,33 @@
+package ch.ethz.matsim.r5.batch;
+
+import ch.ethz.matsim.r5.utils.spatial.LatLon;
+
+public class BatchRequest {
+	final private String id;
+	final private LatLon fromLocation;
+	final private LatLon toLocation;
+	final private double departureTime;
+
+	public BatchRequest(String id, LatLon fromLocation, LatLon toLocation, double departureTime) {
+		this.id = id;
+		this.fromLocation = fromLocation;
+		this.toLocation = toLocation;
+		this.departureTime = departureTime;
+	}
+
+	public String getId() {
+		return id;
+	}
+
+	public LatLon getFromLocation() {
+		return fromLocation;
+	}
+
+	public LatLon getToLocation() {
+		return toLocation;
+	}
+
+	public double getDepartureTime() {
+		return departureTime;
+	}
+}
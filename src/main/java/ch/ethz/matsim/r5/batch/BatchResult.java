@@ -0,0 +1,52 @@
+package ch.ethz.matsim.r5.batch;
+
+public class BatchResult {
+	final private String id;
+	final private boolean found;
+	final private double departureTime;
+	final private double arrivalTime;
+	final private int numberOfTransitLegs;
+
+	/**
+	 * Creates a result for a request without a PT route
+	 */
+	public BatchResult(String id, double departureTime) {
+		this.id = id;
+		this.found = false;
+		this.departureTime = departureTime;
+		this.arrivalTime = Double.NaN;
+		this.numberOfTransitLegs = 0;
+	}
+
+	public BatchResult(String id, double departureTime, double arrivalTime, int numberOfTransitLegs) {
+		this.id = id;
+		this.found = true;
+		this.departureTime = departureTime;
+		this.arrivalTime = arrivalTime;
+		this.numberOfTransitLegs = numberOfTransitLegs;
+	}
+
+	public String getId() {
+		return id;
+	}
+
+	public boolean isFound() {
+		return found;
+	}
+
+	public double getDepartureTime() {
+		return departureTime;
+	}
+
+	public double getArrivalTime() {
+		return arrivalTime;
+	}
+
+	public double getTravelTime() {
+		return arrivalTime - departureTime;
+	}
+
+	public int getNumberOfTransitLegs() {
+		return numberOfTransitLegs;
+	}
+}
@@ -0,0 +1,9 @@
+package ch.ethz.matsim.r5.batch;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Collection;
+
+public interface BatchResultWriter extends Closeable {
+	void write(Collection<BatchResult> results) throws IOException;
+}
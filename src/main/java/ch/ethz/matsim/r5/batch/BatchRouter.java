@@ -0,0 +1,254 @@
+package ch.ethz.matsim.r5.batch;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.log4j.Logger;
+
+import ch.ethz.matsim.r5.R5LegRouter;
+import ch.ethz.matsim.r5.route.R5Itinerary;
+import ch.ethz.matsim.r5.route.R5Itinerary.LegType;
+
+/**
+ * Routes a stream of requests with constant memory
+ *
+ * Requests are passed through a bounded queue to a fixed number of worker
+ * threads, so reading blocks as soon as the workers fall behind. Results are
+ * passed through a second bounded queue to a single writer thread, which
+ * writes them in batches. Results are written in the order in which they are
+ * finished, not in the order of the input.
+ */
+public class BatchRouter {
+	final static private Logger logger = Logger.getLogger(BatchRouter.class);
+
+	final static private BatchRequest END_OF_REQUESTS = new BatchRequest(null, null, null, Double.NaN);
+	final static private BatchResult END_OF_RESULTS = new BatchResult(null, Double.NaN);
+
+	final private R5LegRouter router;
+	final private int numberOfThreads;
+	final private int queueSize;
+	final private int batchSize;
+	final private long progressInterval;
+
+	final private AtomicLong numberOfFailedRequests = new AtomicLong(0);
+
+	/**
+	 * @param numberOfThreads
+	 *            Number of routing threads
+	 * @param queueSize
+	 *            Capacity of the request and result queues
+	 * @param batchSize
+	 *            Maximum number of results that are written at once
+	 * @param progressInterval
+	 *            Interval in milliseconds in which progress is reported
+	 */
+	public BatchRouter(R5LegRouter router, int numberOfThreads, int queueSize, int batchSize, long progressInterval) {
+		this.router = router;
+		this.numberOfThreads = numberOfThreads;
+		this.queueSize = queueSize;
+		this.batchSize = batchSize;
+		this.progressInterval = progressInterval;
+	}
+
+	/**
+	 * Routes all requests and returns the number of written results
+	 */
+	public long run(Iterator<BatchRequest> requests, BatchResultWriter writer) throws InterruptedException {
+		BlockingQueue<BatchRequest> requestQueue = new ArrayBlockingQueue<>(queueSize);
+		BlockingQueue<BatchResult> resultQueue = new ArrayBlockingQueue<>(queueSize);
+
+		WriterTask writerTask = new WriterTask(resultQueue, writer);
+		AtomicReference<Throwable> workerError = new AtomicReference<>();
+		List<Thread> workers = new ArrayList<>(numberOfThreads);
+
+		for (int i = 0; i < numberOfThreads; i++) {
+			Thread worker = new Thread(() -> work(requestQueue, resultQueue, writerTask, workerError),
+					"r5-batch-" + i);
+			worker.setDaemon(true);
+			worker.start();
+			workers.add(worker);
+		}
+
+		Thread writerThread = new Thread(writerTask, "r5-batch-writer");
+		writerThread.setDaemon(true);
+		writerThread.start();
+
+		try {
+			while (requests.hasNext() && writerTask.error == null && workerError.get() == null) {
+				requestQueue.put(requests.next());
+			}
+		} finally {
+			// Also shut down the threads if reading the requests fails
+			for (int i = 0; i < numberOfThreads; i++) {
+				requestQueue.put(END_OF_REQUESTS);
+			}
+
+			for (Thread worker : workers) {
+				worker.join();
+			}
+
+			writerThread.join();
+		}
+
+		if (workerError.get() != null) {
+			throw new RuntimeException("Error while routing requests", workerError.get());
+		}
+
+		if (writerTask.error != null) {
+			throw new RuntimeException("Error while writing results", writerTask.error);
+		}
+
+		logger.info(String.format("Routed %d requests, %d failed", writerTask.numberOfResults,
+				numberOfFailedRequests.get()));
+
+		return writerTask.numberOfResults;
+	}
+
+	private void work(BlockingQueue<BatchRequest> requestQueue, BlockingQueue<BatchResult> resultQueue,
+			WriterTask writerTask, AtomicReference<Throwable> workerError) {
+		try {
+			while (true) {
+				BatchRequest request = requestQueue.take();
+
+				if (request == END_OF_REQUESTS) {
+					return;
+				}
+
+				if (writerTask.error != null || workerError.get() != null) {
+					// Once the writer or a worker has failed, remaining requests are only
+					// consumed
+					continue;
+				}
+
+				BatchResult result;
+
+				try {
+					result = route(request);
+				} catch (Throwable e) {
+					// Failing requests are handled in route, so this is an Error
+					workerError.compareAndSet(null, e);
+					continue;
+				}
+
+				resultQueue.put(result);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			// The writer waits for the end marker of every worker
+			putEndOfResults(resultQueue);
+		}
+	}
+
+	static private void putEndOfResults(BlockingQueue<BatchResult> resultQueue) {
+		boolean interrupted = false;
+
+		while (true) {
+			try {
+				resultQueue.put(END_OF_RESULTS);
+				break;
+			} catch (InterruptedException e) {
+				// The writer keeps consuming, so there will be space eventually
+				interrupted = true;
+			}
+		}
+
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private BatchResult route(BatchRequest request) {
+		R5Itinerary itinerary;
+
+		try {
+			itinerary = router.routeItinerary(request.getFromLocation(), request.getToLocation(),
+					request.getDepartureTime(), null);
+		} catch (RuntimeException e) {
+			numberOfFailedRequests.incrementAndGet();
+			logger.error("Error while routing request " + request.getId(), e);
+			itinerary = null;
+		}
+
+		if (itinerary == null) {
+			return new BatchResult(request.getId(), request.getDepartureTime());
+		}
+
+		int numberOfTransitLegs = 0;
+
+		for (int i = 0; i < itinerary.size(); i++) {
+			if (itinerary.getType(i) == LegType.TRANSIT) {
+				numberOfTransitLegs++;
+			}
+		}
+
+		return new BatchResult(request.getId(), request.getDepartureTime(),
+				itinerary.getArrivalTime(itinerary.size() - 1), numberOfTransitLegs);
+	}
+
+	private class WriterTask implements Runnable {
+		final private BlockingQueue<BatchResult> resultQueue;
+		final private BatchResultWriter writer;
+
+		volatile private Throwable error = null;
+		volatile private long numberOfResults = 0;
+
+		WriterTask(BlockingQueue<BatchResult> resultQueue, BatchResultWriter writer) {
+			this.resultQueue = resultQueue;
+			this.writer = writer;
+		}
+
+		@Override
+		public void run() {
+			List<BatchResult> batch = new ArrayList<>(batchSize);
+			int finishedWorkers = 0;
+
+			long startTime = System.currentTimeMillis();
+			long lastReportTime = startTime;
+
+			try {
+				while (finishedWorkers < numberOfThreads) {
+					batch.add(resultQueue.take());
+					resultQueue.drainTo(batch, batchSize - 1);
+
+					Iterator<BatchResult> iterator = batch.iterator();
+
+					while (iterator.hasNext()) {
+						if (iterator.next() == END_OF_RESULTS) {
+							iterator.remove();
+							finishedWorkers++;
+						}
+					}
+
+					if (error == null) {
+						try {
+							writer.write(batch);
+							numberOfResults += batch.size();
+						} catch (Throwable e) {
+							// Keep consuming results so that the workers can finish, but do
+							// not count them as written
+							error = e;
+						}
+					}
+
+					batch.clear();
+
+					long now = System.currentTimeMillis();
+
+					if (now - lastReportTime >= progressInterval) {
+						double rate = 1000.0 * numberOfResults / Math.max(1, now - startTime);
+						logger.info(String.format("Routed %d requests (%.1f requests/s)", numberOfResults, rate));
+						lastReportTime = now;
+					}
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+}
@@ -0,0 +1,45 @@
+package ch.ethz.matsim.r5.batch;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collection;
+
+/**
+ * Writes a compact binary file
+ *
+ * Header: magic (int), version (int). Then one record per request: id (UTF),
+ * found (byte), departure time (float, s), arrival time (float, s, NaN if not
+ * found), transit legs (byte).
+ */
+public class BinaryBatchResultWriter implements BatchResultWriter {
+	final static public int MAGIC = 0x52354252; // "R5BR"
+	final static public int VERSION = 1;
+
+	final static private int BUFFER_SIZE = 1 << 20;
+
+	final private DataOutputStream outputStream;
+
+	public BinaryBatchResultWriter(OutputStream outputStream) throws IOException {
+		this.outputStream = new DataOutputStream(new BufferedOutputStream(outputStream, BUFFER_SIZE));
+		this.outputStream.writeInt(MAGIC);
+		this.outputStream.writeInt(VERSION);
+	}
+
+	@Override
+	public void write(Collection<BatchResult> results) throws IOException {
+		for (BatchResult result : results) {
+			outputStream.writeUTF(result.getId());
+			outputStream.writeByte(result.isFound() ? 1 : 0);
+			outputStream.writeFloat((float) result.getDepartureTime());
+			outputStream.writeFloat((float) result.getArrivalTime());
+			outputStream.writeByte(Math.min(result.getNumberOfTransitLegs(), Byte.MAX_VALUE));
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		outputStream.close();
+	}
+}
@@ -0,0 +1,49 @@
+package ch.ethz.matsim.r5.batch;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.util.Collection;
+
+/**
+ * Writes one line per request: id;found;departure_time;arrival_time;travel_time;transit_legs
+ *
+ * Times are given in seconds and are empty if no route has been found.
+ */
+public class CsvBatchResultWriter implements BatchResultWriter {
+	final static private int BUFFER_SIZE = 1 << 20;
+
+	final private BufferedWriter writer;
+	final private StringBuilder builder = new StringBuilder();
+
+	public CsvBatchResultWriter(OutputStream outputStream) throws IOException {
+		this.writer = new BufferedWriter(new OutputStreamWriter(outputStream), BUFFER_SIZE);
+		writer.write("id;found;departure_time;arrival_time;travel_time;transit_legs\n");
+	}
+
+	@Override
+	public void write(Collection<BatchResult> results) throws IOException {
+		for (BatchResult result : results) {
+			builder.setLength(0);
+			builder.append(result.getId()).append(';');
+			builder.append(result.isFound() ? 1 : 0).append(';');
+			builder.append(result.getDepartureTime()).append(';');
+
+			if (result.isFound()) {
+				builder.append(result.getArrivalTime()).append(';');
+				builder.append(result.getTravelTime()).append(';');
+			} else {
+				builder.append(';').append(';');
+			}
+
+			builder.append(result.getNumberOfTransitLegs()).append('\n');
+			writer.append(builder);
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		writer.close();
+	}
+}
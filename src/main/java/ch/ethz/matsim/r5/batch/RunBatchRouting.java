@@ -0,0 +1,177 @@
+package ch.ethz.matsim.r5.batch;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import org.matsim.api.core.v01.Coord;
+import org.matsim.core.utils.geometry.transformations.TransformationFactory;
+
+import com.conveyal.r5.transit.TransportNetwork;
+
+import ch.ethz.matsim.r5.R5LegRouter;
+import ch.ethz.matsim.r5.distance.CrowflyDistanceEstimator;
+import ch.ethz.matsim.r5.distance.DistanceEstimator;
+import ch.ethz.matsim.r5.scoring.R5ItineraryScorer;
+import ch.ethz.matsim.r5.scoring.SoonestArrivalTimeScorer;
+import ch.ethz.matsim.r5.utils.R5Cleaner;
+import ch.ethz.matsim.r5.utils.spatial.CoordToLatLonTransformation;
+import ch.ethz.matsim.r5.utils.spatial.DefaultCoordToLatLon;
+import ch.ethz.matsim.r5.utils.spatial.DefaultLatLonToCoord;
+import ch.ethz.matsim.r5.utils.spatial.LatLonToCoordTransformation;
+
+/**
+ * Routes a file of OD pairs with R5
+ *
+ * The input is a CSV file without header in which each line contains an id,
+ * the origin coordinates (x, y), the destination coordinates (x, y) in the
+ * given coordinate system and, in a configurable column, the departure time in
+ * minutes.
+ *
+ * Usage: RunBatchRouting --network network.dat --input od_pairs.csv --output
+ * times.csv [--crs EPSG:2056] [--day 2017-09-25] [--timezone +02:00]
+ * [--threads N] [--queue-size 10000] [--batch-size 1000] [--format csv|binary]
+ * [--delimiter ;] [--departure-column 9] [--progress-interval 10]
+ */
+public class RunBatchRouting {
+	static public void main(String[] args) throws Exception {
+		Map<String, String> options = parseOptions(args);
+
+		String networkPath = getRequiredOption(options, "network");
+		String inputPath = getRequiredOption(options, "input");
+		String outputPath = getRequiredOption(options, "output");
+
+		String crs = options.getOrDefault("crs", TransformationFactory.CH1903_LV03_Plus);
+		String day = options.getOrDefault("day", "2017-09-25");
+		String timezone = options.getOrDefault("timezone", "+02:00");
+		String format = options.getOrDefault("format", "csv");
+		String delimiter = options.getOrDefault("delimiter", ";");
+
+		int numberOfThreads = Integer.parseInt(
+				options.getOrDefault("threads", String.valueOf(Runtime.getRuntime().availableProcessors())));
+		int queueSize = Integer.parseInt(options.getOrDefault("queue-size", "10000"));
+		int batchSize = Integer.parseInt(options.getOrDefault("batch-size", "1000"));
+		int departureColumn = Integer.parseInt(options.getOrDefault("departure-column", "9"));
+		long progressInterval = 1000 * Long.parseLong(options.getOrDefault("progress-interval", "10"));
+
+		TransportNetwork transportNetwork = TransportNetwork.read(new File(networkPath));
+		new R5Cleaner(transportNetwork).run();
+
+		LatLonToCoordTransformation latLonToCoord = new DefaultLatLonToCoord(
+				TransformationFactory.getCoordinateTransformation(TransformationFactory.WGS84, crs));
+		CoordToLatLonTransformation coordToLatLon = new DefaultCoordToLatLon(
+				TransformationFactory.getCoordinateTransformation(crs, TransformationFactory.WGS84));
+
+		R5ItineraryScorer scorer = new SoonestArrivalTimeScorer();
+		DistanceEstimator distanceEstimator = new CrowflyDistanceEstimator(latLonToCoord, 1.0);
+		R5LegRouter router = new R5LegRouter(transportNetwork, scorer, distanceEstimator, day, timezone);
+
+		BatchResultWriter writer;
+
+		switch (format) {
+		case "csv":
+			writer = new CsvBatchResultWriter(new FileOutputStream(outputPath));
+			break;
+		case "binary":
+			writer = new BinaryBatchResultWriter(new FileOutputStream(outputPath));
+			break;
+		default:
+			throw new IllegalArgumentException("Unknown output format: " + format);
+		}
+
+		try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(inputPath)),
+				1 << 20)) {
+			Iterator<BatchRequest> requests = new CsvRequestIterator(reader, delimiter, departureColumn,
+					coordToLatLon);
+			new BatchRouter(router, numberOfThreads, queueSize, batchSize, progressInterval).run(requests, writer);
+		} finally {
+			writer.close();
+		}
+	}
+
+	static private Map<String, String> parseOptions(String[] args) {
+		Map<String, String> options = new HashMap<>();
+
+		for (int i = 0; i < args.length; i += 2) {
+			if (!args[i].startsWith("--") || i + 1 >= args.length) {
+				throw new IllegalArgumentException("Expected arguments of the form --name value, found: " + args[i]);
+			}
+
+			options.put(args[i].substring(2), args[i + 1]);
+		}
+
+		return options;
+	}
+
+	static private String getRequiredOption(Map<String, String> options, String name) {
+		if (!options.containsKey(name)) {
+			throw new IllegalArgumentException("Missing required argument: --" + name);
+		}
+
+		return options.get(name);
+	}
+
+	static private class CsvRequestIterator implements Iterator<BatchRequest> {
+		final private BufferedReader reader;
+		final private String delimiter;
+		final private int departureColumn;
+		final private CoordToLatLonTransformation coordToLatLon;
+
+		private String nextLine;
+		private long lineNumber = 0;
+
+		CsvRequestIterator(BufferedReader reader, String delimiter, int departureColumn,
+				CoordToLatLonTransformation coordToLatLon) {
+			this.reader = reader;
+			this.delimiter = delimiter;
+			this.departureColumn = departureColumn;
+			this.coordToLatLon = coordToLatLon;
+			advance();
+		}
+
+		private void advance() {
+			try {
+				nextLine = reader.readLine();
+				lineNumber++;
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+
+		@Override
+		public boolean hasNext() {
+			return nextLine != null;
+		}
+
+		@Override
+		public BatchRequest next() {
+			if (nextLine == null) {
+				throw new NoSuchElementException();
+			}
+
+			String[] parts = nextLine.split(delimiter);
+
+			try {
+				Coord startCoord = new Coord(Double.parseDouble(parts[1]), Double.parseDouble(parts[2]));
+				Coord endCoord = new Coord(Double.parseDouble(parts[3]), Double.parseDouble(parts[4]));
+				double departureTime = Double.parseDouble(parts[departureColumn]) * 60.0;
+
+				BatchRequest request = new BatchRequest(parts[0], coordToLatLon.transform(startCoord),
+						coordToLatLon.transform(endCoord), departureTime);
+				advance();
+
+				return request;
+			} catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+				throw new IllegalStateException("Invalid request in line " + lineNumber + ": " + nextLine, e);
+			}
+		}
+	}
+}
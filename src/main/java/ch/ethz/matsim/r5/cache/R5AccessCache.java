@@ -0,0 +1,196 @@
+package ch.ethz.matsim.r5.cache;
+
+import com.conveyal.r5.profile.ProfileRequest;
+import com.conveyal.r5.profile.StreetMode;
+import com.conveyal.r5.streets.StreetRouter;
+import com.conveyal.r5.transit.TransportNetwork;
+
+import ch.ethz.matsim.r5.utils.spatial.LatLon;
+import ch.ethz.matsim.r5.utils.spatial.SpatialQuantizer;
+
+import gnu.trove.iterator.TIntIntIterator;
+import gnu.trove.map.TIntIntMap;
+import gnu.trove.map.hash.TIntIntHashMap;
+
+/**
+ * Caches the stops that can be reached by walking from a location
+ *
+ * Walk searches on the street layer are run once per grid cell and the
+ * reached stops are stored together with their walk times. Since walking is
+ * not restricted by the direction of streets, the same stops serve for access
+ * and egress. The search is run from the center of the cell, so the walk
+ * times of a cell do not depend on which location has been requested first.
+ *
+ * The R5LegRouter passes the stop sets to the transit search of R5 instead of
+ * running its own walk searches. It needs the street searches to reconstruct
+ * the access and egress legs, so they are kept in the cache if requested,
+ * which takes considerably more memory per cell. The R5SkimCalculator only
+ * uses the stop sets.
+ */
+public class R5AccessCache {
+	final private TransportNetwork transportNetwork;
+	final private SpatialQuantizer quantizer;
+	final private StripedLruCache<R5CellKey, AccessStops> cache;
+	final private boolean keepStreetRouters;
+
+	final private int timeLimit;
+
+	/**
+	 * @param capacity
+	 *            Maximum number of cached cells
+	 * @param spatialResolution
+	 *            Approximate cell size in meters, exact locations if not positive
+	 * @param keepStreetRouters
+	 *            Whether the street searches are kept to reconstruct the walk
+	 *            legs
+	 */
+	public R5AccessCache(TransportNetwork transportNetwork, int capacity, double spatialResolution,
+			boolean keepStreetRouters) {
+		this.transportNetwork = transportNetwork;
+		this.quantizer = new SpatialQuantizer(spatialResolution);
+		this.cache = new StripedLruCache<>(capacity);
+		this.keepStreetRouters = keepStreetRouters;
+
+		// The router uses the default walk speed and walk time of R5
+		this.timeLimit = new ProfileRequest().maxWalkTime * 60;
+	}
+
+	/**
+	 * Creates a cache that only keeps the stop sets
+	 */
+	public R5AccessCache(TransportNetwork transportNetwork, int capacity, double spatialResolution) {
+		this(transportNetwork, capacity, spatialResolution, false);
+	}
+
+	public R5CellKey createKey(LatLon location) {
+		return new R5CellKey(quantizer.getLatitudeCell(location), quantizer.getLongitudeCell(location));
+	}
+
+	/**
+	 * Returns the stops that can be reached from the cell of the location
+	 */
+	public AccessStops getAccessStops(LatLon location) {
+		R5CellKey key = createKey(location);
+		AccessStops stops = cache.get(key);
+
+		if (stops == null) {
+			// Concurrent misses for the same cell compute the same result, since
+			// the search always starts at the cell center
+			stops = computeAccessStops(quantizer.getCellCenter(location));
+			cache.put(key, stops);
+		}
+
+		return stops;
+	}
+
+	private AccessStops computeAccessStops(LatLon location) {
+		StreetRouter router = new StreetRouter(transportNetwork.streetLayer);
+		router.profileRequest = new ProfileRequest();
+		router.streetMode = StreetMode.WALK;
+		router.timeLimitSeconds = timeLimit;
+		router.transitStopSearch = true;
+
+		if (!router.setOrigin(location.getLatitude(), location.getLongitude())) {
+			// Location is not close to any street
+			return new AccessStops(new int[0], new int[0], null);
+		}
+
+		router.route();
+
+		TIntIntMap reachedStops = router.getReachedStops();
+		int[] stopIndices = new int[reachedStops.size()];
+		int[] walkTimes = new int[reachedStops.size()];
+
+		TIntIntIterator iterator = reachedStops.iterator();
+
+		for (int i = 0; iterator.hasNext(); i++) {
+			iterator.advance();
+			stopIndices[i] = iterator.key();
+			walkTimes[i] = iterator.value();
+		}
+
+		return new AccessStops(stopIndices, walkTimes, keepStreetRouters ? router : null);
+	}
+
+	public int size() {
+		return cache.size();
+	}
+
+	public long getHits() {
+		return cache.getHits();
+	}
+
+	public long getMisses() {
+		return cache.getMisses();
+	}
+
+	public void resetStatistics() {
+		cache.resetStatistics();
+	}
+
+	@Override
+	public String toString() {
+		long hits = getHits();
+		long misses = getMisses();
+		double hitRate = hits + misses > 0 ? (double) hits / (hits + misses) : 0.0;
+
+		return String.format("Size: %d, Hits: %d, Misses: %d, Evictions: %d, Hit rate: %.2f%%", size(), hits, misses,
+				cache.getEvictions(), 100.0 * hitRate);
+	}
+
+	/**
+	 * Stops with their walk times in seconds
+	 */
+	static public class AccessStops {
+		final private int[] stopIndices;
+		final private int[] walkTimes;
+		final private StreetRouter streetRouter;
+
+		AccessStops(int[] stopIndices, int[] walkTimes, StreetRouter streetRouter) {
+			this.stopIndices = stopIndices;
+			this.walkTimes = walkTimes;
+			this.streetRouter = streetRouter;
+		}
+
+		/**
+		 * Returns the finished street search from the cell center, or null if the
+		 * searches are not kept or the cell is not close to any street. The
+		 * search must not be modified.
+		 */
+		public StreetRouter getStreetRouter() {
+			return streetRouter;
+		}
+
+		/**
+		 * Returns the walk times of the stops that can be reached within the time
+		 * limit, keyed by stop index
+		 */
+		public TIntIntMap getReachedStops(int timeLimit) {
+			TIntIntMap reachedStops = new TIntIntHashMap(stopIndices.length);
+
+			for (int i = 0; i < stopIndices.length; i++) {
+				if (walkTimes[i] <= timeLimit) {
+					reachedStops.put(stopIndices[i], walkTimes[i]);
+				}
+			}
+
+			return reachedStops;
+		}
+
+		public int size() {
+			return stopIndices.length;
+		}
+
+		public boolean isEmpty() {
+			return stopIndices.length == 0;
+		}
+
+		public int getStopIndex(int index) {
+			return stopIndices[index];
+		}
+
+		public int getWalkTime(int index) {
+			return walkTimes[index];
+		}
+	}
+}
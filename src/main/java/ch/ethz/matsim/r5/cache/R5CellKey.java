@@ -0,0 +1,43 @@
+package ch.ethz.matsim.r5.cache;
+
+/**
+ * Identifies a cell of a spatial grid, see SpatialQuantizer
+ */
+public class R5CellKey {
+	final private long latitudeCell;
+	final private long longitudeCell;
+
+	public R5CellKey(long latitudeCell, long longitudeCell) {
+		this.latitudeCell = latitudeCell;
+		this.longitudeCell = longitudeCell;
+	}
+
+	public long getLatitudeCell() {
+		return latitudeCell;
+	}
+
+	public long getLongitudeCell() {
+		return longitudeCell;
+	}
+
+	@Override
+	public int hashCode() {
+		long hash = 31 * latitudeCell + longitudeCell;
+		return (int) (hash ^ (hash >>> 32));
+	}
+
+	@Override
+	public boolean equals(Object other) {
+		if (other instanceof R5CellKey) {
+			R5CellKey otherKey = (R5CellKey) other;
+			return otherKey.latitudeCell == latitudeCell && otherKey.longitudeCell == longitudeCell;
+		}
+
+		return false;
+	}
+
+	@Override
+	public String toString() {
+		return "[" + latitudeCell + " ; " + longitudeCell + "]";
+	}
+}
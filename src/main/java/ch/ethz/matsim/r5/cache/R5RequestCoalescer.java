@@ -0,0 +1,135 @@
+package ch.ethz.matsim.r5.cache;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import ch.ethz.matsim.r5.route.R5Itinerary;
+import ch.ethz.matsim.r5.utils.spatial.LatLon;
+
+/**
+ * Lets concurrent identical requests share one computation
+ *
+ * The first thread that requests a key computes the route, while all threads
+ * that request the same key in the meantime wait for its result and receive
+ * it shifted to their own departure times. Requests are
+ * quantized in the same way as for the R5RouteCache. The keys in flight are
+ * distributed over independently locked segments.
+ */
+public class R5RequestCoalescer {
+	final private R5RouteKeyFactory keyFactory;
+	final private Map<R5RouteKey, InFlight>[] segments;
+
+	final private LongAdder numberOfCoalescedRequests = new LongAdder();
+
+	/**
+	 * @param spatialResolution
+	 *            Approximate cell size in meters for origins and destinations
+	 * @param temporalResolution
+	 *            Size of the departure time buckets in seconds
+	 */
+	@SuppressWarnings("unchecked")
+	public R5RequestCoalescer(double spatialResolution, double temporalResolution) {
+		this.keyFactory = new R5RouteKeyFactory(spatialResolution, temporalResolution);
+		this.segments = new Map[4 * Runtime.getRuntime().availableProcessors()];
+
+		for (int i = 0; i < segments.length; i++) {
+			segments[i] = new HashMap<>();
+		}
+	}
+
+	public R5RouteKey createKey(LatLon fromLocation, LatLon toLocation, double departureTime) {
+		return keyFactory.createKey(fromLocation, toLocation, departureTime);
+	}
+
+	private Map<R5RouteKey, InFlight> getSegment(R5RouteKey key) {
+		int hash = key.hashCode();
+		hash ^= (hash >>> 16);
+		return segments[(hash & 0x7fffffff) % segments.length];
+	}
+
+	/**
+	 * Returns the result of the computation for the key, which is either run by
+	 * the calling thread or by a thread that requested the same key before
+	 *
+	 * @return May return null if no route is found
+	 */
+	public R5Itinerary route(R5RouteKey key, double departureTime, Supplier<R5Itinerary> computation) {
+		Map<R5RouteKey, InFlight> segment = getSegment(key);
+		InFlight inFlight;
+		boolean isLeader = false;
+
+		synchronized (segment) {
+			inFlight = segment.get(key);
+
+			if (inFlight == null) {
+				inFlight = new InFlight(departureTime);
+				segment.put(key, inFlight);
+				isLeader = true;
+			}
+		}
+
+		if (isLeader) {
+			try {
+				R5Itinerary itinerary = computation.get();
+				inFlight.future.complete(itinerary);
+				return itinerary;
+			} catch (Throwable e) {
+				// Errors from R5 must reach the waiters as well, otherwise they wait forever
+				inFlight.future.completeExceptionally(e);
+				throw e;
+			} finally {
+				synchronized (segment) {
+					segment.remove(key);
+				}
+			}
+		}
+
+		numberOfCoalescedRequests.increment();
+		R5Itinerary itinerary;
+
+		try {
+			itinerary = inFlight.future.join();
+		} catch (CompletionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+
+			if (e.getCause() instanceof Error) {
+				throw (Error) e.getCause();
+			}
+
+			throw e;
+		}
+
+		return itinerary == null ? null : itinerary.shift(departureTime - inFlight.departureTime);
+	}
+
+	/**
+	 * Returns the number of requests that have waited for another computation
+	 */
+	public long getNumberOfCoalescedRequests() {
+		return numberOfCoalescedRequests.sum();
+	}
+
+	public void resetStatistics() {
+		numberOfCoalescedRequests.reset();
+	}
+
+	@Override
+	public String toString() {
+		return String.format("Coalesced requests: %d", getNumberOfCoalescedRequests());
+	}
+
+	static private class InFlight {
+		final private CompletableFuture<R5Itinerary> future = new CompletableFuture<>();
+		final private double departureTime;
+
+		InFlight(double departureTime) {
+			this.departureTime = departureTime;
+		}
+	}
+}
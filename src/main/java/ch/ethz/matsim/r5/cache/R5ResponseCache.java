@@ -0,0 +1,127 @@
+package ch.ethz.matsim.r5.cache;
+
+import com.conveyal.r5.api.ProfileResponse;
+
+import ch.ethz.matsim.r5.utils.ServiceDay;
+import ch.ethz.matsim.r5.utils.spatial.LatLon;
+
+/**
+ * Caches R5 responses of range searches over fixed departure windows
+ *
+ * The departure times of the day are divided into windows of equal length. A
+ * response covers all departures of one window for an origin and destination
+ * cell, so requests with nearby departure times can select their itinerary
+ * from the same response. Responses without any itinerary are cached as well.
+ * The range search runs between the cell centers, so the response does not
+ * depend on which request of the cells has missed first.
+ */
+public class R5ResponseCache {
+	final private R5RouteKeyFactory keyFactory;
+	final private StripedLruCache<R5RouteKey, Entry> cache;
+	final private double departureWindow;
+
+	/**
+	 * @param capacity
+	 *            Maximum number of cached responses
+	 * @param spatialResolution
+	 *            Approximate cell size in meters for origins and destinations,
+	 *            exact locations if not positive
+	 * @param departureWindow
+	 *            Length of the departure windows in seconds
+	 */
+	public R5ResponseCache(int capacity, double spatialResolution, double departureWindow) {
+		if (departureWindow <= 0.0) {
+			throw new IllegalArgumentException("Departure window must be positive");
+		}
+
+		this.keyFactory = new R5RouteKeyFactory(spatialResolution, departureWindow);
+		this.cache = new StripedLruCache<>(capacity);
+		this.departureWindow = departureWindow;
+	}
+
+	public R5RouteKey createKey(LatLon fromLocation, LatLon toLocation, double departureTime) {
+		return keyFactory.createKey(fromLocation, toLocation, departureTime);
+	}
+
+	/**
+	 * Returns the location from which the range search of a cell is run
+	 */
+	public LatLon getCellCenter(LatLon location) {
+		return keyFactory.getCellCenter(location);
+	}
+
+	/**
+	 * Returns the start of the window that contains the departure time
+	 */
+	public double getWindowStart(double departureTime) {
+		return keyFactory.getDepartureBucket(departureTime) * departureWindow;
+	}
+
+	/**
+	 * Returns the last departure time of the window that contains the departure
+	 * time. Windows do not extend beyond the end of the day.
+	 */
+	public double getWindowEnd(double departureTime) {
+		double windowStart = getWindowStart(departureTime);
+		double windowEnd = windowStart + departureWindow - 1.0;
+		double dayEnd = Math.floor(windowStart / ServiceDay.SECONDS_PER_DAY + 1.0) * ServiceDay.SECONDS_PER_DAY - 1.0;
+
+		return Math.min(windowEnd, dayEnd);
+	}
+
+	/**
+	 * Returns the cache entry or null if the window has not been searched yet
+	 */
+	public Entry get(R5RouteKey key) {
+		return cache.get(key);
+	}
+
+	/**
+	 * @param response
+	 *            may be null if R5 has not found any itinerary
+	 */
+	public void put(R5RouteKey key, ProfileResponse response) {
+		cache.put(key, new Entry(response));
+	}
+
+	public int size() {
+		return cache.size();
+	}
+
+	public long getHits() {
+		return cache.getHits();
+	}
+
+	public long getMisses() {
+		return cache.getMisses();
+	}
+
+	public void resetStatistics() {
+		cache.resetStatistics();
+	}
+
+	@Override
+	public String toString() {
+		long hits = getHits();
+		long misses = getMisses();
+		double hitRate = hits + misses > 0 ? (double) hits / (hits + misses) : 0.0;
+
+		return String.format("Size: %d, Hits: %d, Misses: %d, Evictions: %d, Hit rate: %.2f%%", size(), hits, misses,
+				cache.getEvictions(), 100.0 * hitRate);
+	}
+
+	static public class Entry {
+		final private ProfileResponse response;
+
+		Entry(ProfileResponse response) {
+			this.response = response;
+		}
+
+		/**
+		 * Returns the response or null if R5 has not found any itinerary
+		 */
+		public ProfileResponse getResponse() {
+			return response;
+		}
+	}
+}
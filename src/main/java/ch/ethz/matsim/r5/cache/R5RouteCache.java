@@ -0,0 +1,107 @@
+package ch.ethz.matsim.r5.cache;
+
+import ch.ethz.matsim.r5.route.R5Itinerary;
+import ch.ethz.matsim.r5.utils.spatial.LatLon;
+
+/**
+ * Caches the itineraries selected by the R5LegRouter
+ *
+ * Requests are quantized in space and departure time (see R5RouteKeyFactory).
+ * On a hit, the cached itinerary is returned shifted by the difference between
+ * the requested and the cached departure time. Requests for which no route has
+ * been found are cached as well.
+ */
+public class R5RouteCache {
+	final private R5RouteKeyFactory keyFactory;
+	final private StripedLruCache<R5RouteKey, Entry> cache;
+
+	/**
+	 * @param capacity
+	 *            Maximum number of cached requests
+	 * @param spatialResolution
+	 *            Approximate cell size in meters for origins and destinations
+	 * @param temporalResolution
+	 *            Size of the departure time buckets in seconds
+	 */
+	public R5RouteCache(int capacity, double spatialResolution, double temporalResolution) {
+		this.keyFactory = new R5RouteKeyFactory(spatialResolution, temporalResolution);
+		this.cache = new StripedLruCache<>(capacity);
+	}
+
+	public R5RouteKey createKey(LatLon fromLocation, LatLon toLocation, double departureTime) {
+		return keyFactory.createKey(fromLocation, toLocation, departureTime);
+	}
+
+	/**
+	 * Returns the cache entry for a request or null if the request is not cached
+	 */
+	public Entry get(R5RouteKey key) {
+		return cache.get(key);
+	}
+
+	/**
+	 * Adds a routing result to the cache
+	 *
+	 * @param itinerary
+	 *            The selected itinerary or null if no route has been found
+	 */
+	public void put(R5RouteKey key, double departureTime, R5Itinerary itinerary) {
+		cache.put(key, new Entry(departureTime, itinerary));
+	}
+
+	public int size() {
+		return cache.size();
+	}
+
+	public long getHits() {
+		return cache.getHits();
+	}
+
+	public long getMisses() {
+		return cache.getMisses();
+	}
+
+	public long getEvictions() {
+		return cache.getEvictions();
+	}
+
+	public void resetStatistics() {
+		cache.resetStatistics();
+	}
+
+	@Override
+	public String toString() {
+		long hits = getHits();
+		long misses = getMisses();
+		double hitRate = hits + misses > 0 ? (double) hits / (hits + misses) : 0.0;
+
+		return String.format("Size: %d, Hits: %d, Misses: %d, Evictions: %d, Hit rate: %.2f%%", size(), hits, misses,
+				getEvictions(), 100.0 * hitRate);
+	}
+
+	static public class Entry {
+		final private double departureTime;
+		final private R5Itinerary itinerary;
+
+		Entry(double departureTime, R5Itinerary itinerary) {
+			this.departureTime = departureTime;
+			this.itinerary = itinerary;
+		}
+
+		public double getDepartureTime() {
+			return departureTime;
+		}
+
+		/**
+		 * Returns the cached itinerary, re-timed to the given departure time, or
+		 * null if no route has been found for the cached request.
+		 */
+		public R5Itinerary getItinerary(double departureTime) {
+			if (itinerary == null) {
+				return null;
+			}
+
+			return itinerary.shift(departureTime - this.departureTime);
+		}
+	}
+}
@@ -0,0 +1,53 @@
+package ch.ethz.matsim.r5.cache;
+
+import org.matsim.core.controler.events.IterationEndsEvent;
+import org.matsim.core.controler.listener.IterationEndsListener;
+
+import ch.ethz.matsim.r5.matsim.R5Module;
+
+/**
+ * Reports the statistics of the route, access and response caches after every iteration
+ */
+public class R5RouteCacheListener implements IterationEndsListener {
+	final private R5RouteCache cache;
+	final private R5AccessCache accessCache;
+	final private R5ResponseCache responseCache;
+
+	/**
+	 * @param cache
+	 *            may be null
+	 * @param accessCache
+	 *            may be null
+	 * @param responseCache
+	 *            may be null
+	 */
+	public R5RouteCacheListener(R5RouteCache cache, R5AccessCache accessCache, R5ResponseCache responseCache) {
+		this.cache = cache;
+		this.accessCache = accessCache;
+		this.responseCache = responseCache;
+	}
+
+	public R5RouteCacheListener(R5RouteCache cache) {
+		this(cache, null, null);
+	}
+
+	@Override
+	public void notifyIterationEnds(IterationEndsEvent event) {
+		if (cache != null) {
+			R5Module.logger.info(String.format("R5 route cache (iteration %d): %s", event.getIteration(), cache));
+			cache.resetStatistics();
+		}
+
+		if (accessCache != null) {
+			R5Module.logger
+					.info(String.format("R5 access cache (iteration %d): %s", event.getIteration(), accessCache));
+			accessCache.resetStatistics();
+		}
+
+		if (responseCache != null) {
+			R5Module.logger
+					.info(String.format("R5 response cache (iteration %d): %s", event.getIteration(), responseCache));
+			responseCache.resetStatistics();
+		}
+	}
+}
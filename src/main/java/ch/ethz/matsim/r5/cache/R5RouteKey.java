@@ -0,0 +1,75 @@
+package ch.ethz.matsim.r5.cache;
+
+/**
+ * Identifies a quantized PT request by origin cell, destination cell and
+ * departure time bucket.
+ */
+public class R5RouteKey {
+	final private long fromLatitudeCell;
+	final private long fromLongitudeCell;
+	final private long toLatitudeCell;
+	final private long toLongitudeCell;
+	final private long departureBucket;
+
+	final private int hashCode;
+
+	public R5RouteKey(long fromLatitudeCell, long fromLongitudeCell, long toLatitudeCell, long toLongitudeCell,
+			long departureBucket) {
+		this.fromLatitudeCell = fromLatitudeCell;
+		this.fromLongitudeCell = fromLongitudeCell;
+		this.toLatitudeCell = toLatitudeCell;
+		this.toLongitudeCell = toLongitudeCell;
+		this.departureBucket = departureBucket;
+
+		long hash = fromLatitudeCell;
+		hash = 31 * hash + fromLongitudeCell;
+		hash = 31 * hash + toLatitudeCell;
+		hash = 31 * hash + toLongitudeCell;
+		hash = 31 * hash + departureBucket;
+		this.hashCode = (int) (hash ^ (hash >>> 32));
+	}
+
+	public long getFromLatitudeCell() {
+		return fromLatitudeCell;
+	}
+
+	public long getFromLongitudeCell() {
+		return fromLongitudeCell;
+	}
+
+	public long getToLatitudeCell() {
+		return toLatitudeCell;
+	}
+
+	public long getToLongitudeCell() {
+		return toLongitudeCell;
+	}
+
+	public long getDepartureBucket() {
+		return departureBucket;
+	}
+
+	@Override
+	public int hashCode() {
+		return hashCode;
+	}
+
+	@Override
+	public boolean equals(Object other) {
+		if (other instanceof R5RouteKey) {
+			R5RouteKey otherKey = (R5RouteKey) other;
+
+			return otherKey.fromLatitudeCell == fromLatitudeCell && otherKey.fromLongitudeCell == fromLongitudeCell
+					&& otherKey.toLatitudeCell == toLatitudeCell && otherKey.toLongitudeCell == toLongitudeCell
+					&& otherKey.departureBucket == departureBucket;
+		}
+
+		return false;
+	}
+
+	@Override
+	public String toString() {
+		return "[" + fromLatitudeCell + " ; " + fromLongitudeCell + "] -> [" + toLatitudeCell + " ; "
+				+ toLongitudeCell + "] @ " + departureBucket;
+	}
+}
@@ -0,0 +1,53 @@
+package ch.ethz.matsim.r5.cache;
+
+import ch.ethz.matsim.r5.utils.spatial.LatLon;
+import ch.ethz.matsim.r5.utils.spatial.SpatialQuantizer;
+
+/**
+ * Creates quantized request keys
+ */
+public class R5RouteKeyFactory {
+	final private SpatialQuantizer quantizer;
+	final private double temporalResolution;
+
+	/**
+	 * @param spatialResolution
+	 *            Approximate cell size in meters, exact locations if not positive
+	 * @param temporalResolution
+	 *            Size of a departure time bucket in seconds, exact times if not
+	 *            positive
+	 */
+	public R5RouteKeyFactory(double spatialResolution, double temporalResolution) {
+		this.quantizer = new SpatialQuantizer(spatialResolution);
+		this.temporalResolution = temporalResolution;
+	}
+
+	public long getDepartureBucket(double departureTime) {
+		if (temporalResolution <= 0.0) {
+			return Double.doubleToLongBits(departureTime);
+		}
+
+		return (long) Math.floor(departureTime / temporalResolution);
+	}
+
+	/**
+	 * Returns whether locations are compared exactly, i.e. cell centers are the
+	 * locations themselves
+	 */
+	public boolean isSpatiallyExact() {
+		return quantizer.isExact();
+	}
+
+	/**
+	 * Returns the center of the cell into which a location is quantized
+	 */
+	public LatLon getCellCenter(LatLon location) {
+		return quantizer.getCellCenter(location);
+	}
+
+	public R5RouteKey createKey(LatLon fromLocation, LatLon toLocation, double departureTime) {
+		return new R5RouteKey(quantizer.getLatitudeCell(fromLocation), quantizer.getLongitudeCell(fromLocation),
+				quantizer.getLatitudeCell(toLocation), quantizer.getLongitudeCell(toLocation),
+				getDepartureBucket(departureTime));
+	}
+}
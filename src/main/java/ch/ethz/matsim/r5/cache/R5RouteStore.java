@@ -0,0 +1,440 @@
+package ch.ethz.matsim.r5.cache;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+
+import com.conveyal.r5.transit.TransitLayer;
+
+import ch.ethz.matsim.r5.matsim.R5Module;
+import ch.ethz.matsim.r5.route.R5Itinerary;
+import ch.ethz.matsim.r5.route.R5Itinerary.LegType;
+import ch.ethz.matsim.r5.utils.spatial.LatLon;
+
+import gnu.trove.map.TLongLongMap;
+import gnu.trove.map.hash.TLongLongHashMap;
+
+/**
+ * Persistent store of routing results
+ *
+ * Results are appended to a file whose header contains a fingerprint of the
+ * network and of all settings that influence the routes. When the store is
+ * opened, the records are indexed if the fingerprint matches, otherwise the
+ * file is started anew. Hence, the results of previous runs are reused
+ * automatically as long as network and settings do not change. A truncated
+ * last record, e.g. after a crash, is discarded.
+ *
+ * Only a primitive index from a hash of the key to the file offset of the
+ * record is kept in memory, records are read from the file on demand. Frequent
+ * requests should be served by an R5RouteCache in front of the store. Once the
+ * store holds the maximum number of records, no more records are appended.
+ *
+ * Itineraries are stored in their compact form with stop indices, which are
+ * only valid for the network the fingerprint has been created for.
+ *
+ * Requests are quantized in the same way as for the R5RouteCache.
+ */
+public class R5RouteStore implements AutoCloseable {
+	final static private int MAGIC = 0x52355253; // "R5RS"
+	final static private int VERSION = 2;
+
+	final static private int RECORD_HEADER_SIZE = 5 * 8 + 8 + 2;
+	final static private int ITINERARY_HEADER_SIZE = 4 * 8;
+	final static private int LEG_SIZE = 1 + 3 * 8 + 4 * 4;
+
+	final static private long NO_OFFSET = -1;
+
+	final static private LegType[] LEG_TYPES = LegType.values();
+
+	final private TransitLayer transitLayer;
+	final private R5RouteKeyFactory keyFactory;
+	final private int maximumSize;
+
+	final private TLongLongMap index = new TLongLongHashMap(1024, 0.5f, NO_OFFSET, NO_OFFSET);
+	final private ReadWriteLock indexLock = new ReentrantReadWriteLock();
+
+	final private DataOutputStream outputStream;
+	final private RandomAccessFile inputFile;
+	final private FileChannel inputChannel;
+
+	private long writtenLength;
+	volatile private long flushedLength;
+
+	private long numberOfLoadedEntries = 0;
+	private boolean isFull = false;
+
+	/**
+	 * @param transitLayer
+	 *            The stop indices of the stored itineraries refer to
+	 * @param fingerprint
+	 *            Identifies network and settings, see createFingerprint
+	 * @param spatialResolution
+	 *            Approximate cell size in meters for origins and destinations
+	 * @param temporalResolution
+	 *            Size of the departure time buckets in seconds
+	 * @param maximumSize
+	 *            Maximum number of records in the file
+	 */
+	public R5RouteStore(File file, TransitLayer transitLayer, long fingerprint, double spatialResolution,
+			double temporalResolution, int maximumSize) throws IOException {
+		this.transitLayer = transitLayer;
+		this.keyFactory = new R5RouteKeyFactory(spatialResolution, temporalResolution);
+		this.maximumSize = maximumSize;
+
+		boolean isValid = file.exists() && load(file, fingerprint);
+		this.outputStream = new DataOutputStream(
+				new BufferedOutputStream(new FileOutputStream(file, isValid), 1 << 16));
+
+		if (!isValid) {
+			outputStream.writeInt(MAGIC);
+			outputStream.writeInt(VERSION);
+			outputStream.writeLong(fingerprint);
+			outputStream.flush();
+		}
+
+		this.writtenLength = file.length();
+		this.flushedLength = writtenLength;
+
+		this.inputFile = new RandomAccessFile(file, "r");
+		this.inputChannel = inputFile.getChannel();
+	}
+
+	/**
+	 * Combines the hash of the network with a description of the settings
+	 */
+	static public long createFingerprint(long networkHash, String settings) {
+		CRC32 crc = new CRC32();
+		crc.update(settings.getBytes(StandardCharsets.UTF_8));
+		return 31 * networkHash + crc.getValue();
+	}
+
+	static private long hash(long fromLatitudeCell, long fromLongitudeCell, long toLatitudeCell,
+			long toLongitudeCell, long departureBucket) {
+		long hash = fromLatitudeCell;
+		hash = hash * 0x9e3779b97f4a7c15L + fromLongitudeCell;
+		hash = hash * 0x9e3779b97f4a7c15L + toLatitudeCell;
+		hash = hash * 0x9e3779b97f4a7c15L + toLongitudeCell;
+		hash = hash * 0x9e3779b97f4a7c15L + departureBucket;
+
+		hash ^= hash >>> 33;
+		hash *= 0xff51afd7ed558ccdL;
+		hash ^= hash >>> 33;
+
+		// NO_OFFSET is used as the empty value, not as a key, so all hashes are valid
+		return hash;
+	}
+
+	static private long hash(R5RouteKey key) {
+		return hash(key.getFromLatitudeCell(), key.getFromLongitudeCell(), key.getToLatitudeCell(),
+				key.getToLongitudeCell(), key.getDepartureBucket());
+	}
+
+	static private int getItinerarySize(int numberOfLegs) {
+		return numberOfLegs < 0 ? 0 : ITINERARY_HEADER_SIZE + numberOfLegs * LEG_SIZE;
+	}
+
+	/**
+	 * Indexes all complete records
+	 *
+	 * @return false if the file does not belong to the fingerprint
+	 */
+	private boolean load(File file, long fingerprint) throws IOException {
+		long validLength;
+
+		try (CountingInputStream countingStream = new CountingInputStream(
+				new BufferedInputStream(new FileInputStream(file), 1 << 16))) {
+			DataInputStream inputStream = new DataInputStream(countingStream);
+
+			try {
+				if (inputStream.readInt() != MAGIC || inputStream.readInt() != VERSION
+						|| inputStream.readLong() != fingerprint) {
+					R5Module.logger.info("R5 route store does not match the network or settings, starting a new one");
+					return false;
+				}
+			} catch (EOFException e) {
+				return false;
+			}
+
+			validLength = countingStream.count;
+
+			try {
+				while (true) {
+					long offset = countingStream.count;
+					long hash = hash(inputStream.readLong(), inputStream.readLong(), inputStream.readLong(),
+							inputStream.readLong(), inputStream.readLong());
+					inputStream.readDouble();
+
+					int itinerarySize = getItinerarySize(inputStream.readShort());
+
+					if (inputStream.skipBytes(itinerarySize) < itinerarySize) {
+						break; // Truncated record
+					}
+
+					validLength = countingStream.count;
+
+					if (index.size() < maximumSize && index.putIfAbsent(hash, offset) == NO_OFFSET) {
+						numberOfLoadedEntries++;
+					}
+				}
+			} catch (EOFException e) {
+				// End of file or truncated record
+			}
+		}
+
+		if (validLength < file.length()) {
+			R5Module.logger.warn("Discarding truncated record at the end of the R5 route store");
+
+			try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+				randomAccessFile.setLength(validLength);
+			}
+		}
+
+		R5Module.logger.info(String.format("Indexed %d routes of the R5 route store", numberOfLoadedEntries));
+		return true;
+	}
+
+	public R5RouteKey createKey(LatLon fromLocation, LatLon toLocation, double departureTime) {
+		return keyFactory.createKey(fromLocation, toLocation, departureTime);
+	}
+
+	private long getOffset(long hash) {
+		indexLock.readLock().lock();
+
+		try {
+			return index.get(hash);
+		} finally {
+			indexLock.readLock().unlock();
+		}
+	}
+
+	private void readFully(ByteBuffer buffer, long position) throws IOException {
+		while (buffer.hasRemaining()) {
+			if (inputChannel.read(buffer, position + buffer.position()) < 0) {
+				throw new EOFException();
+			}
+		}
+
+		buffer.flip();
+	}
+
+	/**
+	 * Returns the stored result or null if the request has not been stored
+	 */
+	public R5RouteCache.Entry get(R5RouteKey key) {
+		long offset = getOffset(hash(key));
+
+		if (offset == NO_OFFSET) {
+			return null;
+		}
+
+		try {
+			if (offset >= flushedLength) {
+				flush(); // Record is still in the write buffer
+			}
+
+			ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+			readFully(header, offset);
+
+			if (header.getLong() != key.getFromLatitudeCell() || header.getLong() != key.getFromLongitudeCell()
+					|| header.getLong() != key.getToLatitudeCell() || header.getLong() != key.getToLongitudeCell()
+					|| header.getLong() != key.getDepartureBucket()) {
+				return null; // Another key with the same hash
+			}
+
+			double departureTime = header.getDouble();
+			int numberOfLegs = header.getShort();
+
+			ByteBuffer body = ByteBuffer.allocate(getItinerarySize(numberOfLegs));
+			readFully(body, offset + RECORD_HEADER_SIZE);
+
+			return new R5RouteCache.Entry(departureTime, readItinerary(body, numberOfLegs));
+		} catch (IOException e) {
+			throw new UncheckedIOException("Error while reading from the R5 route store", e);
+		}
+	}
+
+	/**
+	 * Stores a routing result if the key is not stored yet and the store is not
+	 * full
+	 *
+	 * @param itinerary
+	 *            The selected itinerary or null if no route has been found
+	 */
+	public void put(R5RouteKey key, double departureTime, R5Itinerary itinerary) {
+		long hash = hash(key);
+
+		try {
+			synchronized (outputStream) {
+				if (getOffset(hash) != NO_OFFSET) {
+					return;
+				}
+
+				if (index.size() >= maximumSize) {
+					if (!isFull) {
+						R5Module.logger.warn(String.format(
+								"R5 route store has reached its maximum size of %d routes, no more routes are stored",
+								maximumSize));
+						isFull = true;
+					}
+
+					return;
+				}
+
+				long offset = writtenLength;
+
+				outputStream.writeLong(key.getFromLatitudeCell());
+				outputStream.writeLong(key.getFromLongitudeCell());
+				outputStream.writeLong(key.getToLatitudeCell());
+				outputStream.writeLong(key.getToLongitudeCell());
+				outputStream.writeLong(key.getDepartureBucket());
+				outputStream.writeDouble(departureTime);
+				writeItinerary(outputStream, itinerary);
+
+				writtenLength += RECORD_HEADER_SIZE + getItinerarySize(itinerary == null ? -1 : itinerary.size());
+
+				indexLock.writeLock().lock();
+
+				try {
+					index.put(hash, offset);
+				} finally {
+					indexLock.writeLock().unlock();
+				}
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException("Error while writing to the R5 route store", e);
+		}
+	}
+
+	static private void writeItinerary(DataOutputStream outputStream, R5Itinerary itinerary) throws IOException {
+		if (itinerary == null) {
+			outputStream.writeShort(-1);
+			return;
+		}
+
+		outputStream.writeShort(itinerary.size());
+		outputStream.writeDouble(itinerary.getFromLatitude());
+		outputStream.writeDouble(itinerary.getFromLongitude());
+		outputStream.writeDouble(itinerary.getToLatitude());
+		outputStream.writeDouble(itinerary.getToLongitude());
+
+		for (int i = 0; i < itinerary.size(); i++) {
+			outputStream.writeByte(itinerary.getType(i).ordinal());
+			outputStream.writeDouble(itinerary.getDepartureTime(i));
+			outputStream.writeDouble(itinerary.getTravelTime(i));
+			outputStream.writeDouble(itinerary.getDistance(i));
+			outputStream.writeInt(itinerary.getDepartureStop(i));
+			outputStream.writeInt(itinerary.getArrivalStop(i));
+			outputStream.writeInt(itinerary.getPatternId(i));
+			outputStream.writeInt(itinerary.getTimeId(i));
+		}
+	}
+
+	private R5Itinerary readItinerary(ByteBuffer buffer, int numberOfLegs) {
+		if (numberOfLegs < 0) {
+			return null;
+		}
+
+		R5Itinerary.Builder builder = new R5Itinerary.Builder(transitLayer, buffer.getDouble(), buffer.getDouble(),
+				buffer.getDouble(), buffer.getDouble(), numberOfLegs);
+
+		for (int i = 0; i < numberOfLegs; i++) {
+			int type = buffer.get();
+
+			if (type < 0 || type >= LEG_TYPES.length) {
+				throw new IllegalStateException("Unknown leg type in R5 route store: " + type);
+			}
+
+			builder.addLeg(LEG_TYPES[type], buffer.getDouble(), buffer.getDouble(), buffer.getDouble(),
+					buffer.getInt(), buffer.getInt(), buffer.getInt(), buffer.getInt());
+		}
+
+		return builder.build();
+	}
+
+	public int size() {
+		indexLock.readLock().lock();
+
+		try {
+			return index.size();
+		} finally {
+			indexLock.readLock().unlock();
+		}
+	}
+
+	public long getNumberOfLoadedEntries() {
+		return numberOfLoadedEntries;
+	}
+
+	/**
+	 * Writes all buffered results to disk
+	 */
+	public void flush() throws IOException {
+		synchronized (outputStream) {
+			outputStream.flush();
+			flushedLength = writtenLength;
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		synchronized (outputStream) {
+			outputStream.close();
+			flushedLength = writtenLength;
+		}
+
+		inputFile.close();
+	}
+
+	static private class CountingInputStream extends FilterInputStream {
+		private long count = 0;
+
+		CountingInputStream(InputStream inputStream) {
+			super(inputStream);
+		}
+
+		@Override
+		public int read() throws IOException {
+			int value = super.read();
+
+			if (value >= 0) {
+				count++;
+			}
+
+			return value;
+		}
+
+		@Override
+		public int read(byte[] buffer, int offset, int length) throws IOException {
+			int numberOfBytes = super.read(buffer, offset, length);
+
+			if (numberOfBytes > 0) {
+				count += numberOfBytes;
+			}
+
+			return numberOfBytes;
+		}
+
+		@Override
+		public long skip(long length) throws IOException {
+			long numberOfBytes = super.skip(length);
+			count += numberOfBytes;
+			return numberOfBytes;
+		}
+	}
+}
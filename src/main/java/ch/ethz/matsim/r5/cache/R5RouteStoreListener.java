@@ -0,0 +1,44 @@
+package ch.ethz.matsim.r5.cache;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+import org.matsim.core.controler.events.IterationEndsEvent;
+import org.matsim.core.controler.events.ShutdownEvent;
+import org.matsim.core.controler.listener.IterationEndsListener;
+import org.matsim.core.controler.listener.ShutdownListener;
+
+import ch.ethz.matsim.r5.matsim.R5Module;
+
+/**
+ * Writes the route store to disk after every iteration and closes it at the
+ * end of the simulation
+ */
+public class R5RouteStoreListener implements IterationEndsListener, ShutdownListener {
+	final private R5RouteStore store;
+
+	public R5RouteStoreListener(R5RouteStore store) {
+		this.store = store;
+	}
+
+	@Override
+	public void notifyIterationEnds(IterationEndsEvent event) {
+		try {
+			store.flush();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+
+		R5Module.logger.info(String.format("R5 route store (iteration %d): %d routes, %d loaded from previous runs",
+				event.getIteration(), store.size(), store.getNumberOfLoadedEntries()));
+	}
+
+	@Override
+	public void notifyShutdown(ShutdownEvent event) {
+		try {
+			store.close();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+}
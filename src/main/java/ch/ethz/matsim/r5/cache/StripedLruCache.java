@@ -0,0 +1,143 @@
+package ch.ethz.matsim.r5.cache;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded, thread-safe LRU map
+ *
+ * The entries are distributed over a number of independently locked segments,
+ * each of which evicts its least recently used entry once it exceeds its share
+ * of the total capacity. Hence, eviction is only approximately LRU with respect
+ * to the whole cache, but threads requesting different keys rarely block each
+ * other.
+ */
+public class StripedLruCache<K, V> {
+	final private Segment<K, V>[] segments;
+
+	final private LongAdder hits = new LongAdder();
+	final private LongAdder misses = new LongAdder();
+	final private LongAdder evictions = new LongAdder();
+
+	/**
+	 * @param capacity
+	 *            Maximum number of entries in the cache
+	 * @param numberOfSegments
+	 *            Number of independently locked segments
+	 */
+	@SuppressWarnings("unchecked")
+	public StripedLruCache(int capacity, int numberOfSegments) {
+		if (capacity < 1) {
+			throw new IllegalArgumentException("Capacity must be positive");
+		}
+
+		numberOfSegments = Math.max(1, Math.min(numberOfSegments, capacity));
+		int segmentCapacity = (int) Math.ceil((double) capacity / numberOfSegments);
+
+		this.segments = new Segment[numberOfSegments];
+
+		for (int i = 0; i < numberOfSegments; i++) {
+			segments[i] = new Segment<>(segmentCapacity, evictions);
+		}
+	}
+
+	public StripedLruCache(int capacity) {
+		this(capacity, 4 * Runtime.getRuntime().availableProcessors());
+	}
+
+	private Segment<K, V> getSegment(Object key) {
+		int hash = key.hashCode();
+		hash ^= (hash >>> 16);
+		return segments[(hash & 0x7fffffff) % segments.length];
+	}
+
+	/**
+	 * Returns the cached value or null if the key is not present
+	 */
+	public V get(K key) {
+		Segment<K, V> segment = getSegment(key);
+		V value;
+
+		synchronized (segment) {
+			value = segment.get(key);
+		}
+
+		if (value == null) {
+			misses.increment();
+		} else {
+			hits.increment();
+		}
+
+		return value;
+	}
+
+	public void put(K key, V value) {
+		Segment<K, V> segment = getSegment(key);
+
+		synchronized (segment) {
+			segment.put(key, value);
+		}
+	}
+
+	public void clear() {
+		for (Segment<K, V> segment : segments) {
+			synchronized (segment) {
+				segment.clear();
+			}
+		}
+	}
+
+	public int size() {
+		int size = 0;
+
+		for (Segment<K, V> segment : segments) {
+			synchronized (segment) {
+				size += segment.size();
+			}
+		}
+
+		return size;
+	}
+
+	public long getHits() {
+		return hits.sum();
+	}
+
+	public long getMisses() {
+		return misses.sum();
+	}
+
+	public long getEvictions() {
+		return evictions.sum();
+	}
+
+	public void resetStatistics() {
+		hits.reset();
+		misses.reset();
+		evictions.reset();
+	}
+
+	static private class Segment<K, V> extends LinkedHashMap<K, V> {
+		private static final long serialVersionUID = -3464097413427357311L;
+
+		final private int capacity;
+		final private LongAdder evictions;
+
+		Segment(int capacity, LongAdder evictions) {
+			super(16, 0.75f, true);
+			this.capacity = capacity;
+			this.evictions = evictions;
+		}
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+			if (size() > capacity) {
+				evictions.increment();
+				return true;
+			}
+
+			return false;
+		}
+	}
+}
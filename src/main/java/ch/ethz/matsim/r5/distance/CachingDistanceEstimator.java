@@ -0,0 +1,158 @@
+package ch.ethz.matsim.r5.distance;
+
+import java.util.stream.IntStream;
+
+import com.conveyal.r5.api.util.SegmentPattern;
+import com.conveyal.r5.api.util.Stop;
+import com.conveyal.r5.transit.TransitLayer;
+import com.conveyal.r5.transit.TripPattern;
+
+import gnu.trove.map.TLongDoubleMap;
+import gnu.trove.map.hash.TLongDoubleHashMap;
+
+/**
+ * Caches the distances of another DistanceEstimator per stop relation
+ *
+ * Distances are keyed by the stop indices of the transit layer and the route
+ * index. Optionally, the distances between all consecutive stops of all
+ * patterns can be computed up front. They are stored in a primitive map that
+ * is not modified afterwards and is read without locking. Other relations are
+ * stored in lock-striped primitive maps when they are first requested.
+ * Distances of patterns without a route are not cached.
+ */
+public class CachingDistanceEstimator implements DistanceEstimator {
+	final static private int STOP_BITS = 21;
+	final static private int ROUTE_BITS = 64 - 2 * STOP_BITS;
+
+	final private DistanceEstimator delegate;
+	final private TransitLayer transitLayer;
+
+	final private TLongDoubleHashMap[] segments;
+	volatile private TLongDoubleMap prefilledDistances = createMap(0);
+
+	public CachingDistanceEstimator(DistanceEstimator delegate, TransitLayer transitLayer) {
+		if (transitLayer.getStopCount() >= 1 << STOP_BITS || transitLayer.routes.size() >= 1 << ROUTE_BITS) {
+			throw new IllegalStateException("Transit layer is too large for the distance cache");
+		}
+
+		this.delegate = delegate;
+		this.transitLayer = transitLayer;
+
+		this.segments = new TLongDoubleHashMap[4 * Runtime.getRuntime().availableProcessors()];
+
+		for (int i = 0; i < segments.length; i++) {
+			segments[i] = createMap(1024);
+		}
+	}
+
+	static private TLongDoubleHashMap createMap(int initialCapacity) {
+		return new TLongDoubleHashMap(Math.max(16, initialCapacity), 0.5f, -1L, Double.NaN);
+	}
+
+	/**
+	 * Computes the distances between all consecutive stops of all patterns in
+	 * parallel
+	 */
+	public void prefill() {
+		int numberOfPatterns = transitLayer.tripPatterns.size();
+		long[][] keys = new long[numberOfPatterns][];
+		double[][] distances = new double[numberOfPatterns][];
+
+		IntStream.range(0, numberOfPatterns).parallel().forEach(patternIndex -> {
+			TripPattern pattern = transitLayer.tripPatterns.get(patternIndex);
+			int numberOfSegments = pattern.routeIndex < 0 ? 0 : pattern.stops.length - 1;
+
+			keys[patternIndex] = new long[numberOfSegments];
+			distances[patternIndex] = new double[numberOfSegments];
+
+			for (int i = 0; i < numberOfSegments; i++) {
+				int fromStopIndex = pattern.stops[i];
+				int toStopIndex = pattern.stops[i + 1];
+
+				keys[patternIndex][i] = createKey(fromStopIndex, toStopIndex, pattern.routeIndex);
+				distances[patternIndex][i] = delegate.getDistance(new Stop(fromStopIndex, transitLayer),
+						new Stop(toStopIndex, transitLayer), pattern.routeIndex);
+			}
+		});
+
+		int numberOfDistances = 0;
+
+		for (long[] patternKeys : keys) {
+			numberOfDistances += patternKeys.length;
+		}
+
+		TLongDoubleHashMap map = createMap(2 * numberOfDistances);
+
+		for (int patternIndex = 0; patternIndex < numberOfPatterns; patternIndex++) {
+			for (int i = 0; i < keys[patternIndex].length; i++) {
+				map.put(keys[patternIndex][i], distances[patternIndex][i]);
+			}
+		}
+
+		prefilledDistances = map;
+	}
+
+	static private long createKey(int fromStopIndex, int toStopIndex, int routeIndex) {
+		return ((long) fromStopIndex << (STOP_BITS + ROUTE_BITS)) | ((long) toStopIndex << ROUTE_BITS) | routeIndex;
+	}
+
+	private TLongDoubleHashMap getSegment(long key) {
+		int hash = (int) (key ^ (key >>> 32));
+		hash ^= (hash >>> 16);
+		return segments[(hash & 0x7fffffff) % segments.length];
+	}
+
+	private double lookup(long key) {
+		TLongDoubleHashMap segment = getSegment(key);
+
+		synchronized (segment) {
+			return segment.get(key);
+		}
+	}
+
+	private void store(long key, double distance) {
+		TLongDoubleHashMap segment = getSegment(key);
+
+		synchronized (segment) {
+			segment.put(key, distance);
+		}
+	}
+
+	private double getDistance(Stop fromStop, Stop toStop, int fromStopIndex, int toStopIndex, int routeIndex) {
+		if (routeIndex < 0) {
+			return delegate.getDistance(fromStop, toStop, routeIndex);
+		}
+
+		long key = createKey(fromStopIndex, toStopIndex, routeIndex);
+		double distance = prefilledDistances.get(key);
+
+		if (!Double.isNaN(distance)) {
+			return distance;
+		}
+
+		distance = lookup(key);
+
+		if (Double.isNaN(distance)) {
+			distance = delegate.getDistance(fromStop, toStop, routeIndex);
+			store(key, distance);
+		}
+
+		return distance;
+	}
+
+	@Override
+	public double getDistance(Stop fromStop, Stop toStop, int routeIndex) {
+		if (routeIndex < 0) {
+			return delegate.getDistance(fromStop, toStop, routeIndex);
+		}
+
+		return getDistance(fromStop, toStop, transitLayer.indexForStopId.get(fromStop.stopId),
+				transitLayer.indexForStopId.get(toStop.stopId), routeIndex);
+	}
+
+	@Override
+	public double getDistance(Stop fromStop, Stop toStop, int fromStopIndex, int toStopIndex,
+			SegmentPattern pattern) {
+		return getDistance(fromStop, toStop, fromStopIndex, toStopIndex, pattern.routeIndex);
+	}
+}
@@ -1,7 +1,25 @@
 package ch.ethz.matsim.r5.distance;
 
+import com.conveyal.r5.api.util.SegmentPattern;
 import com.conveyal.r5.api.util.Stop;
 
 public interface DistanceEstimator {
 	double getDistance(Stop fromStop, Stop toStop, int routeIndex);
+
+	/**
+	 * Estimates the distance of a transit leg for which the exact pattern and
+	 * the positions of the stops along the pattern are known
+	 */
+	default double getDistance(Stop fromStop, Stop toStop, SegmentPattern pattern) {
+		return getDistance(fromStop, toStop, pattern.routeIndex);
+	}
+
+	/**
+	 * Same as above, for stops that have already been resolved to indices of
+	 * the transit layer
+	 */
+	default double getDistance(Stop fromStop, Stop toStop, int fromStopIndex, int toStopIndex,
+			SegmentPattern pattern) {
+		return getDistance(fromStop, toStop, pattern);
+	}
 }
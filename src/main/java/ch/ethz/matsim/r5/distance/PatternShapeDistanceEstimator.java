@@ -0,0 +1,192 @@
+package ch.ethz.matsim.r5.distance;
+
+import java.util.stream.IntStream;
+
+import org.matsim.api.core.v01.Coord;
+import org.matsim.core.utils.geometry.CoordUtils;
+
+import com.conveyal.r5.api.util.SegmentPattern;
+import com.conveyal.r5.api.util.Stop;
+import com.conveyal.r5.transit.TransitLayer;
+import com.conveyal.r5.transit.TripPattern;
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.LineString;
+
+import ch.ethz.matsim.r5.utils.spatial.LatLon;
+import ch.ethz.matsim.r5.utils.spatial.LatLonToCoordTransformation;
+
+import gnu.trove.list.TIntList;
+import gnu.trove.list.array.TIntArrayList;
+
+/**
+ * Estimates transit distances along the trip patterns
+ *
+ * For every pattern the cumulative distance from the first stop to each stop
+ * is computed once at startup. If the pattern has a shape, the distance is
+ * measured along the shape, otherwise along the straight lines between
+ * consecutive stops. The distance of a leg is then the difference of two
+ * entries.
+ */
+public class PatternShapeDistanceEstimator implements DistanceEstimator {
+	final private TransitLayer transitLayer;
+	final private LatLonToCoordTransformation latLonToCoord;
+	final private DistanceEstimator fallbackEstimator;
+
+	final private double[][] cumulativeDistances;
+	final private TIntList[] patternsForRoute;
+
+	/**
+	 * @param fallbackEstimator
+	 *            Used for relations that cannot be found on any pattern of the
+	 *            given route
+	 */
+	public PatternShapeDistanceEstimator(TransitLayer transitLayer, LatLonToCoordTransformation latLonToCoord,
+			DistanceEstimator fallbackEstimator) {
+		this.transitLayer = transitLayer;
+		this.latLonToCoord = latLonToCoord;
+		this.fallbackEstimator = fallbackEstimator;
+
+		int numberOfPatterns = transitLayer.tripPatterns.size();
+		this.cumulativeDistances = new double[numberOfPatterns][];
+
+		IntStream.range(0, numberOfPatterns).parallel().forEach(patternIndex -> {
+			cumulativeDistances[patternIndex] = computeCumulativeDistances(transitLayer.tripPatterns.get(patternIndex));
+		});
+
+		this.patternsForRoute = new TIntList[transitLayer.routes.size()];
+
+		for (int patternIndex = 0; patternIndex < numberOfPatterns; patternIndex++) {
+			int routeIndex = transitLayer.tripPatterns.get(patternIndex).routeIndex;
+
+			if (routeIndex >= 0 && routeIndex < patternsForRoute.length) {
+				if (patternsForRoute[routeIndex] == null) {
+					patternsForRoute[routeIndex] = new TIntArrayList();
+				}
+
+				patternsForRoute[routeIndex].add(patternIndex);
+			}
+		}
+	}
+
+	private double[] computeCumulativeDistances(TripPattern pattern) {
+		if (pattern.shape != null && pattern.stopShapeSegment != null && pattern.stopShapeFraction != null) {
+			return computeShapeDistances(pattern);
+		} else {
+			return computeStopDistances(pattern);
+		}
+	}
+
+	private Coord transform(double latitude, double longitude) {
+		return latLonToCoord.transform(new LatLon(latitude, longitude));
+	}
+
+	private double[] computeShapeDistances(TripPattern pattern) {
+		LineString shape = pattern.shape;
+
+		double[] shapeDistances = new double[shape.getNumPoints()];
+		Coord previousCoord = null;
+
+		for (int k = 0; k < shape.getNumPoints(); k++) {
+			Coordinate coordinate = shape.getCoordinateN(k);
+			Coord coord = transform(coordinate.y, coordinate.x);
+
+			if (k > 0) {
+				shapeDistances[k] = shapeDistances[k - 1] + CoordUtils.calcEuclideanDistance(previousCoord, coord);
+			}
+
+			previousCoord = coord;
+		}
+
+		double[] distances = new double[pattern.stops.length];
+
+		for (int i = 0; i < pattern.stops.length; i++) {
+			int segment = Math.min(Math.max(pattern.stopShapeSegment[i], 0), shapeDistances.length - 1);
+			double fraction = pattern.stopShapeFraction[i];
+
+			double segmentLength = segment + 1 < shapeDistances.length
+					? shapeDistances[segment + 1] - shapeDistances[segment]
+					: 0.0;
+			distances[i] = shapeDistances[segment] + fraction * segmentLength;
+
+			if (i > 0) {
+				// Stops must not be located backwards along the shape
+				distances[i] = Math.max(distances[i], distances[i - 1]);
+			}
+		}
+
+		return distances;
+	}
+
+	private double[] computeStopDistances(TripPattern pattern) {
+		double[] distances = new double[pattern.stops.length];
+		Coord previousCoord = null;
+
+		for (int i = 0; i < pattern.stops.length; i++) {
+			Coordinate coordinate = transitLayer.getCoordinateForStopFixed(pattern.stops[i]);
+			Coord coord = coordinate == null ? null : transform(coordinate.y, coordinate.x);
+
+			if (i > 0) {
+				// Stops without a known location do not contribute to the distance
+				distances[i] = distances[i - 1];
+
+				if (coord != null && previousCoord != null) {
+					distances[i] += CoordUtils.calcEuclideanDistance(previousCoord, coord);
+				}
+			}
+
+			if (coord != null) {
+				previousCoord = coord;
+			}
+		}
+
+		return distances;
+	}
+
+	@Override
+	public double getDistance(Stop fromStop, Stop toStop, SegmentPattern pattern) {
+		if (pattern.patternIdx >= 0 && pattern.patternIdx < cumulativeDistances.length) {
+			double[] distances = cumulativeDistances[pattern.patternIdx];
+
+			if (pattern.fromIndex >= 0 && pattern.toIndex < distances.length && pattern.fromIndex <= pattern.toIndex) {
+				return distances[pattern.toIndex] - distances[pattern.fromIndex];
+			}
+		}
+
+		return getDistance(fromStop, toStop, pattern.routeIndex);
+	}
+
+	@Override
+	public double getDistance(Stop fromStop, Stop toStop, int routeIndex) {
+		if (routeIndex >= 0 && routeIndex < patternsForRoute.length && patternsForRoute[routeIndex] != null) {
+			int fromStopIndex = transitLayer.indexForStopId.get(fromStop.stopId);
+			int toStopIndex = transitLayer.indexForStopId.get(toStop.stopId);
+
+			TIntList patternIndices = patternsForRoute[routeIndex];
+
+			for (int k = 0; k < patternIndices.size(); k++) {
+				int patternIndex = patternIndices.get(k);
+				int[] stops = transitLayer.tripPatterns.get(patternIndex).stops;
+
+				for (int i = 0; i < stops.length; i++) {
+					if (stops[i] == fromStopIndex) {
+						for (int j = i + 1; j < stops.length; j++) {
+							if (stops[j] == toStopIndex) {
+								return cumulativeDistances[patternIndex][j] - cumulativeDistances[patternIndex][i];
+							}
+						}
+					}
+				}
+			}
+		}
+
+		return fallbackEstimator.getDistance(fromStop, toStop, routeIndex);
+	}
+
+	/**
+	 * Returns the cumulative distances from the first stop of a pattern to each
+	 * of its stops
+	 */
+	public double[] getCumulativeDistances(int patternIndex) {
+		return cumulativeDistances[patternIndex];
+	}
+}
@@ -20,6 +20,9 @@ import com.conveyal.r5.transit.TransportNetwork;
 
 import ch.ethz.matsim.r5.matsim.R5ConfigGroup;
 import ch.ethz.matsim.r5.matsim.R5Module;
+import ch.ethz.matsim.r5.matsim.R5StartupPipeline;
+import ch.ethz.matsim.r5.route.R5PtRoute;
+import ch.ethz.matsim.r5.route.R5PtRouteFactory;
 import ch.ethz.matsim.sioux_falls.SiouxFallsUtils;
 
 public class SiouxFallsExample {
@@ -43,19 +46,27 @@ public class SiouxFallsExample {
 		config.transit().setUseTransit(false);
 		config.global().setNumberOfThreads(8);
 		
-		Scenario scenario = ScenarioUtils.loadScenario(config);
+		// Load the R5 network while the scenario is loaded
+		R5StartupPipeline pipeline = new R5StartupPipeline(config).start();
+
+		Scenario scenario = ScenarioUtils.createScenario(config);
+		scenario.getPopulation().getFactory().getRouteFactories().setRouteFactory(R5PtRoute.class,
+				new R5PtRouteFactory()); // Read compact R5 PT routes
+		ScenarioUtils.loadScenario(scenario);
+		pipeline.setNetwork(scenario.getNetwork());
+
 		Controler controler = new Controler(scenario);
 
-		controler.addOverridingModule(new R5Module()); // Add R5 module
+		controler.addOverridingModule(new R5Module(pipeline)); // Add R5 module
 
 		controler.run();
 	}
 	
-	static private void prepareR5(File dataDirectory, File networkPath) throws IOException {
+	static public void prepareR5(File dataDirectory, File networkPath) throws IOException {
 		if (!networkPath.exists()) {
 			dataDirectory.mkdir();
 
-			FileUtils.forceMkdir(new File("sf-data"));
+			FileUtils.forceMkdir(dataDirectory);
 
 			System.out.println("Downloading GTFS ...");
 			FileUtils.copyURLToFile(new URL("https://transitfeeds.com/p/sioux-area-metro/361/latest/download"),
@@ -9,6 +9,9 @@ import org.matsim.core.utils.geometry.transformations.TransformationFactory;
 
 import ch.ethz.matsim.r5.matsim.R5ConfigGroup;
 import ch.ethz.matsim.r5.matsim.R5Module;
+import ch.ethz.matsim.r5.matsim.R5StartupPipeline;
+import ch.ethz.matsim.r5.route.R5PtRoute;
+import ch.ethz.matsim.r5.route.R5PtRouteFactory;
 
 public class Switzerland001Example {
 	static public void main(String[] args) {
@@ -23,10 +26,18 @@ public class Switzerland001Example {
 		config.global().setNumberOfThreads(8);
 		config.qsim().setNumberOfThreads(8);
 		
-		Scenario scenario = ScenarioUtils.loadScenario(config);
+		// Load the R5 network while the scenario is loaded
+		R5StartupPipeline pipeline = new R5StartupPipeline(config).start();
+
+		Scenario scenario = ScenarioUtils.createScenario(config);
+		scenario.getPopulation().getFactory().getRouteFactories().setRouteFactory(R5PtRoute.class,
+				new R5PtRouteFactory()); // Read compact R5 PT routes
+		ScenarioUtils.loadScenario(scenario);
+		pipeline.setNetwork(scenario.getNetwork());
+
 		Controler controler = new Controler(scenario);
 		
-		controler.addOverridingModule(new R5Module());
+		controler.addOverridingModule(new R5Module(pipeline));
 		
 		controler.run();
 	}
@@ -1,5 +1,7 @@
 package ch.ethz.matsim.r5.matsim;
 
+import java.util.Map;
+
 import org.matsim.core.config.ReflectiveConfigGroup;
 
 public class R5ConfigGroup extends ReflectiveConfigGroup {
@@ -7,14 +9,119 @@ public class R5ConfigGroup extends ReflectiveConfigGroup {
 
 	final static public String COORDINATE_SYSTEM = "coordinateSystem";
 	final static public String NETWORK_INPUT_PATH = "networkInputPath";
+	final static public String NETWORK_SNAPSHOT_PATH = "networkSnapshotPath";
 	final static public String REQUEST_DAY = "requestDay";
 	final static public String REQUEST_TIMEZONE = "requestTimezone";
 
+	final static public String SLICE_SERVICE_DAY = "sliceServiceDay";
+
+	final static public String STUDY_AREA = "studyArea";
+	final static public String STUDY_AREA_BUFFER = "studyAreaBuffer";
+
+	final static public String WARMUP_QUERIES = "warmupQueries";
+
+	final static public String LINK_FINDER = "linkFinder";
+	final static public String LOOP_LINK_FINDER = "LoopLink";
+	final static public String NEAREST_LINK_FINDER = "NearestLink";
+	final static public String LINK_FINDER_MODES = "linkFinderModes";
+
+	final static public String TRANSIT_DISTANCE_ESTIMATOR = "transitDistanceEstimator";
+	final static public String CROWFLY_DISTANCE_ESTIMATOR = "Crowfly";
+	final static public String PATTERN_SHAPE_DISTANCE_ESTIMATOR = "PatternShape";
+
+	final static public String USE_DISTANCE_CACHE = "useDistanceCache";
+	final static public String PREFILL_DISTANCE_CACHE = "prefillDistanceCache";
+
+	final static public String SEARCH_BOUNDS = "searchBounds";
+	final static public String DEFAULT_SEARCH_BOUNDS = "Default";
+	final static public String ADAPTIVE_SEARCH_BOUNDS = "Adaptive";
+	final static public String ADAPTIVE_BASE_DURATION = "adaptiveBaseDuration";
+	final static public String ADAPTIVE_MINIMUM_SPEED = "adaptiveMinimumSpeed";
+	final static public String ADAPTIVE_OFF_PEAK_DURATION = "adaptiveOffPeakDuration";
+	final static public String ADAPTIVE_MAXIMUM_WALK_TIME = "adaptiveMaximumWalkTime";
+	final static public String ADAPTIVE_MAXIMUM_RIDES = "adaptiveMaximumRides";
+	final static public String ADAPTIVE_MAXIMUM_OPTIONS = "adaptiveMaximumOptions";
+
+	final static public String STOP_COVERAGE_RESOLUTION = "stopCoverageResolution";
+
+	final static public String ROUTE_STORE_PATH = "routeStorePath";
+	final static public String ROUTE_STORE_MAXIMUM_SIZE = "routeStoreMaximumSize";
+
+	final static public String COALESCE_REQUESTS = "coalesceRequests";
+
+	final static public String DEPARTURE_WINDOW = "departureWindow";
+	final static public String DEPARTURE_WINDOW_CACHE_SIZE = "departureWindowCacheSize";
+	final static public String DEPARTURE_WINDOW_SPATIAL_RESOLUTION = "departureWindowSpatialResolution";
+
+	final static public String ACCESS_CACHE_SIZE = "accessCacheSize";
+	final static public String ACCESS_CACHE_SPATIAL_RESOLUTION = "accessCacheSpatialResolution";
+
+	final static public String ASYNC_ROUTING_THREADS = "asyncRoutingThreads";
+	final static public String ASYNC_ROUTING_QUEUE_SIZE = "asyncRoutingQueueSize";
+	final static public String ASYNC_ROUTING_VIRTUAL_THREADS = "asyncRoutingVirtualThreads";
+
+	final static public String WRITE_ROUTING_METRICS = "writeRoutingMetrics";
+
+	final static public String USE_COMPACT_PT_ROUTES = "useCompactPtRoutes";
+
+	final static public String ROUTE_CACHE_SIZE = "routeCacheSize";
+	final static public String ROUTE_CACHE_SPATIAL_RESOLUTION = "routeCacheSpatialResolution";
+	final static public String ROUTE_CACHE_TEMPORAL_RESOLUTION = "routeCacheTemporalResolution";
+
 	private String coordinateSystem = null;
 	private String networkInputPath = null;
+	private String networkSnapshotPath = null;
 	private String requestDay = "2017-09-25";
 	private String requestTimezone = "+02:00";
 
+	private boolean sliceServiceDay = false;
+
+	private String studyArea = null;
+	private double studyAreaBuffer = 0.0;
+
+	private int warmupQueries = 0;
+
+	private String linkFinder = LOOP_LINK_FINDER;
+	private String linkFinderModes = "car";
+
+	private String transitDistanceEstimator = CROWFLY_DISTANCE_ESTIMATOR;
+	private boolean useDistanceCache = false;
+	private boolean prefillDistanceCache = true;
+
+	private String searchBounds = DEFAULT_SEARCH_BOUNDS;
+	private double adaptiveBaseDuration = 30.0;
+	private double adaptiveMinimumSpeed = 15.0;
+	private double adaptiveOffPeakDuration = 30.0;
+	private int adaptiveMaximumWalkTime = 20;
+	private int adaptiveMaximumRides = 8;
+	private int adaptiveMaximumOptions = 5;
+
+	private double stopCoverageResolution = 0.0;
+
+	private String routeStorePath = null;
+	private int routeStoreMaximumSize = 5000000;
+
+	private boolean coalesceRequests = false;
+
+	private double departureWindow = 0.0;
+	private int departureWindowCacheSize = 10000;
+	private double departureWindowSpatialResolution = 0.0;
+
+	private int accessCacheSize = 0;
+	private double accessCacheSpatialResolution = 100.0;
+
+	private int asyncRoutingThreads = 0;
+	private int asyncRoutingQueueSize = 10000;
+	private boolean asyncRoutingVirtualThreads = false;
+
+	private boolean writeRoutingMetrics = false;
+
+	private boolean useCompactPtRoutes = false;
+
+	private int routeCacheSize = 0;
+	private double routeCacheSpatialResolution = 100.0;
+	private double routeCacheTemporalResolution = 300.0;
+
 	public R5ConfigGroup() {
 		super(GROUP_NAME);
 	}
@@ -29,6 +136,16 @@ public class R5ConfigGroup extends ReflectiveConfigGroup {
 		this.networkInputPath = networkInputPath;
 	}
 
+	@StringGetter(NETWORK_SNAPSHOT_PATH)
+	public String getNetworkSnapshotPath() {
+		return networkSnapshotPath;
+	}
+
+	@StringSetter(NETWORK_SNAPSHOT_PATH)
+	public void setNetworkSnapshotPath(String networkSnapshotPath) {
+		this.networkSnapshotPath = networkSnapshotPath;
+	}
+
 	@StringGetter(REQUEST_DAY)
 	public String getRequestDay() {
 		return requestDay;
@@ -59,4 +176,407 @@ public class R5ConfigGroup extends ReflectiveConfigGroup {
 		this.coordinateSystem = coordinateSystem;
 	}
 
+	@Override
+	public Map<String, String> getComments() {
+		Map<String, String> comments = super.getComments();
+		comments.put(NETWORK_SNAPSHOT_PATH,
+				"Path of a snapshot of the prepared R5 network. It is written on the first run and reused as long as the network input and preparation settings do not change. No snapshot is used if not set.");
+		comments.put(LINK_FINDER, "Links on which PT stages start and end: " + LOOP_LINK_FINDER
+				+ " (one artificial loop link per stop is added to the network) or " + NEAREST_LINK_FINDER
+				+ " (nearest existing link).");
+		comments.put(LINK_FINDER_MODES,
+				"Comma-separated modes of which at least one must be allowed on the links found by "
+						+ NEAREST_LINK_FINDER + ".");
+		comments.put(TRANSIT_DISTANCE_ESTIMATOR, "Estimation of transit leg distances: " + CROWFLY_DISTANCE_ESTIMATOR
+				+ " (crowfly distance times the pt beeline distance factor) or " + PATTERN_SHAPE_DISTANCE_ESTIMATOR
+				+ " (distance along the pattern shapes or stops, precomputed at startup).");
+		comments.put(USE_DISTANCE_CACHE,
+				"Caches the estimated distances of transit legs per stop relation and route (only for "
+						+ CROWFLY_DISTANCE_ESTIMATOR + ").");
+		comments.put(PREFILL_DISTANCE_CACHE,
+				"Computes the distances between all consecutive stops of all patterns at startup if the distance cache is used.");
+		comments.put(ROUTE_STORE_PATH,
+				"Path of a file in which routing results are stored across iterations and runs. Stored results are discarded automatically if the network or the routing settings change. Uses the resolutions of the route cache. No results are stored if not set.");
+		comments.put(ROUTE_STORE_MAXIMUM_SIZE,
+				"Maximum number of routes in the route store file. Only an index of about 32 bytes per route is kept in memory.");
+		comments.put(COALESCE_REQUESTS,
+				"Lets concurrent requests with the same origin cell, destination cell and departure bucket share one R5 search. Uses the resolutions of the route cache.");
+		comments.put(DEPARTURE_WINDOW,
+				"Length (in seconds) of the departure windows that are searched at once, e.g. 1800. All requests for the same relation in a window select their itinerary from one R5 range search. Every request is searched individually if 0.");
+		comments.put(DEPARTURE_WINDOW_CACHE_SIZE, "Maximum number of cached range searches.");
+		comments.put(DEPARTURE_WINDOW_SPATIAL_RESOLUTION,
+				"Approximate size (in meters) of the grid cells in which origins and destinations share a range search. The search runs between the cell centers. Exact locations if 0.");
+		comments.put(ACCESS_CACHE_SIZE,
+				"Maximum number of grid cells for which the walk search to the nearby stops is cached and passed to the transit search of R5. The cache is disabled if 0.");
+		comments.put(ACCESS_CACHE_SPATIAL_RESOLUTION,
+				"Approximate size (in meters) of the grid cells of the access cache. Walk times to the stops are measured from the cell center, so walk legs are off by up to half a cell. Exact locations if 0.");
+		comments.put(ASYNC_ROUTING_THREADS,
+				"Number of threads of the asynchronous PT router. Uses the number of available processors if 0.");
+		comments.put(ASYNC_ROUTING_QUEUE_SIZE,
+				"Maximum number of waiting requests of the asynchronous PT router. Submitting blocks if the queue is full.");
+		comments.put(ASYNC_ROUTING_VIRTUAL_THREADS,
+				"Completes the futures of the asynchronous PT router on virtual threads (requires Java 21).");
+		comments.put(WRITE_ROUTING_METRICS,
+				"Records latencies of the PT routing phases and writes them to r5_routing_metrics.csv after every iteration. Disabled by default, since timing every request adds overhead to routing.");
+		comments.put(SEARCH_BOUNDS, "Bounds of the R5 search: " + DEFAULT_SEARCH_BOUNDS + " (defaults of R5) or "
+				+ ADAPTIVE_SEARCH_BOUNDS
+				+ " (trip duration, walk time, rides and options depend on the crowfly distance and departure time, the defaults of R5 are used if nothing is found).");
+		comments.put(ADAPTIVE_BASE_DURATION, "Trip duration (in minutes) that is allowed for all requests with adaptive bounds.");
+		comments.put(ADAPTIVE_MINIMUM_SPEED,
+				"Speed (in km/h) with which the crowfly distance must be covered with adaptive bounds. Added to the base duration.");
+		comments.put(ADAPTIVE_OFF_PEAK_DURATION,
+				"Additional trip duration (in minutes) for departures before 06:00 and after 20:00 with adaptive bounds.");
+		comments.put(ADAPTIVE_MAXIMUM_WALK_TIME,
+				"Maximum access and egress walk time (in minutes) with adaptive bounds. Short trips use half of it.");
+		comments.put(ADAPTIVE_MAXIMUM_RIDES, "Maximum number of transit rides with adaptive bounds.");
+		comments.put(ADAPTIVE_MAXIMUM_OPTIONS, "Maximum number of options returned by R5 with adaptive bounds.");
+		comments.put(STOP_COVERAGE_RESOLUTION,
+				"Approximate cell size (in meters) of a grid that marks where stops are within walking distance. Requests from or to other cells are not routed with R5. Disabled if 0.");
+		comments.put(SLICE_SERVICE_DAY,
+				"Removes all trips from the R5 network that do not run on the request day (or the following day for requests after midnight), as well as all patterns without trips. The network can then only be used for the request day.");
+		comments.put(STUDY_AREA,
+				"Clips the R5 transit layer to a study area, given as a bounding box 'minX,minY,maxX,maxY' or as a WKT geometry in the coordinate system. Patterns without stops inside are removed and stops that are no longer served are detached from the street network. The street network itself is not clipped, so memory use and the cost of walk searches stay about the same; only the transit search gets faster.");
+		comments.put(STUDY_AREA_BUFFER,
+				"Distance (in meters) around the study area in which stops keep their patterns.");
+		comments.put(WARMUP_QUERIES,
+				"Number of synthetic PT queries between random stops that are run on all cores before iteration 0, so that the router is compiled by the JIT. Latencies before and after the warmup are logged. Disabled if 0.");
+		comments.put(USE_COMPACT_PT_ROUTES,
+				"Stores every PT trip as a single 'pt' leg with a compact r5_pt route instead of one leg per stage with 'pt interaction' activities. Walking and waiting times are then part of the 'pt' leg. The route factory needs to be registered before plans are read (see R5PtRouteFactory). Scoring only sees the 'pt' leg: walking and waiting are scored as travel time of mode 'pt' and no line switches are counted. The final plans are additionally written with expanded PT trips to output_plans_expanded.xml.gz.");
+		comments.put(ROUTE_CACHE_SIZE, "Maximum number of cached PT requests. The cache is disabled if 0.");
+		comments.put(ROUTE_CACHE_SPATIAL_RESOLUTION,
+				"Approximate size (in meters) of the grid cells to which origins and destinations are snapped for caching. Exact locations if 0.");
+		comments.put(ROUTE_CACHE_TEMPORAL_RESOLUTION,
+				"Size (in seconds) of the departure time buckets for caching. Cached routes are shifted to the requested departure time. Exact times if 0.");
+		return comments;
+	}
+
+	@StringGetter(ROUTE_STORE_PATH)
+	public String getRouteStorePath() {
+		return routeStorePath;
+	}
+
+	@StringSetter(ROUTE_STORE_PATH)
+	public void setRouteStorePath(String routeStorePath) {
+		this.routeStorePath = routeStorePath;
+	}
+
+	@StringGetter(COALESCE_REQUESTS)
+	public boolean getCoalesceRequests() {
+		return coalesceRequests;
+	}
+
+	@StringSetter(COALESCE_REQUESTS)
+	public void setCoalesceRequests(boolean coalesceRequests) {
+		this.coalesceRequests = coalesceRequests;
+	}
+
+	@StringGetter(DEPARTURE_WINDOW)
+	public double getDepartureWindow() {
+		return departureWindow;
+	}
+
+	@StringSetter(DEPARTURE_WINDOW)
+	public void setDepartureWindow(double departureWindow) {
+		this.departureWindow = departureWindow;
+	}
+
+	@StringGetter(DEPARTURE_WINDOW_CACHE_SIZE)
+	public int getDepartureWindowCacheSize() {
+		return departureWindowCacheSize;
+	}
+
+	@StringSetter(DEPARTURE_WINDOW_CACHE_SIZE)
+	public void setDepartureWindowCacheSize(int departureWindowCacheSize) {
+		this.departureWindowCacheSize = departureWindowCacheSize;
+	}
+
+	@StringGetter(DEPARTURE_WINDOW_SPATIAL_RESOLUTION)
+	public double getDepartureWindowSpatialResolution() {
+		return departureWindowSpatialResolution;
+	}
+
+	@StringSetter(DEPARTURE_WINDOW_SPATIAL_RESOLUTION)
+	public void setDepartureWindowSpatialResolution(double departureWindowSpatialResolution) {
+		this.departureWindowSpatialResolution = departureWindowSpatialResolution;
+	}
+
+	@StringGetter(ACCESS_CACHE_SIZE)
+	public int getAccessCacheSize() {
+		return accessCacheSize;
+	}
+
+	@StringSetter(ACCESS_CACHE_SIZE)
+	public void setAccessCacheSize(int accessCacheSize) {
+		this.accessCacheSize = accessCacheSize;
+	}
+
+	@StringGetter(ACCESS_CACHE_SPATIAL_RESOLUTION)
+	public double getAccessCacheSpatialResolution() {
+		return accessCacheSpatialResolution;
+	}
+
+	@StringSetter(ACCESS_CACHE_SPATIAL_RESOLUTION)
+	public void setAccessCacheSpatialResolution(double accessCacheSpatialResolution) {
+		this.accessCacheSpatialResolution = accessCacheSpatialResolution;
+	}
+
+	@StringGetter(ASYNC_ROUTING_THREADS)
+	public int getAsyncRoutingThreads() {
+		return asyncRoutingThreads;
+	}
+
+	@StringSetter(ASYNC_ROUTING_THREADS)
+	public void setAsyncRoutingThreads(int asyncRoutingThreads) {
+		this.asyncRoutingThreads = asyncRoutingThreads;
+	}
+
+	@StringGetter(ASYNC_ROUTING_QUEUE_SIZE)
+	public int getAsyncRoutingQueueSize() {
+		return asyncRoutingQueueSize;
+	}
+
+	@StringSetter(ASYNC_ROUTING_QUEUE_SIZE)
+	public void setAsyncRoutingQueueSize(int asyncRoutingQueueSize) {
+		this.asyncRoutingQueueSize = asyncRoutingQueueSize;
+	}
+
+	@StringGetter(ASYNC_ROUTING_VIRTUAL_THREADS)
+	public boolean getAsyncRoutingVirtualThreads() {
+		return asyncRoutingVirtualThreads;
+	}
+
+	@StringSetter(ASYNC_ROUTING_VIRTUAL_THREADS)
+	public void setAsyncRoutingVirtualThreads(boolean asyncRoutingVirtualThreads) {
+		this.asyncRoutingVirtualThreads = asyncRoutingVirtualThreads;
+	}
+
+	@StringGetter(WRITE_ROUTING_METRICS)
+	public boolean getWriteRoutingMetrics() {
+		return writeRoutingMetrics;
+	}
+
+	@StringSetter(WRITE_ROUTING_METRICS)
+	public void setWriteRoutingMetrics(boolean writeRoutingMetrics) {
+		this.writeRoutingMetrics = writeRoutingMetrics;
+	}
+
+	@StringGetter(ROUTE_CACHE_SIZE)
+	public int getRouteCacheSize() {
+		return routeCacheSize;
+	}
+
+	@StringSetter(ROUTE_CACHE_SIZE)
+	public void setRouteCacheSize(int routeCacheSize) {
+		this.routeCacheSize = routeCacheSize;
+	}
+
+	@StringGetter(ROUTE_CACHE_SPATIAL_RESOLUTION)
+	public double getRouteCacheSpatialResolution() {
+		return routeCacheSpatialResolution;
+	}
+
+	@StringSetter(ROUTE_CACHE_SPATIAL_RESOLUTION)
+	public void setRouteCacheSpatialResolution(double routeCacheSpatialResolution) {
+		this.routeCacheSpatialResolution = routeCacheSpatialResolution;
+	}
+
+	@StringGetter(ROUTE_CACHE_TEMPORAL_RESOLUTION)
+	public double getRouteCacheTemporalResolution() {
+		return routeCacheTemporalResolution;
+	}
+
+	@StringSetter(ROUTE_CACHE_TEMPORAL_RESOLUTION)
+	public void setRouteCacheTemporalResolution(double routeCacheTemporalResolution) {
+		this.routeCacheTemporalResolution = routeCacheTemporalResolution;
+	}
+
+	@StringGetter(LINK_FINDER)
+	public String getLinkFinder() {
+		return linkFinder;
+	}
+
+	@StringSetter(LINK_FINDER)
+	public void setLinkFinder(String linkFinder) {
+		this.linkFinder = linkFinder;
+	}
+
+	@StringGetter(LINK_FINDER_MODES)
+	public String getLinkFinderModes() {
+		return linkFinderModes;
+	}
+
+	@StringSetter(LINK_FINDER_MODES)
+	public void setLinkFinderModes(String linkFinderModes) {
+		this.linkFinderModes = linkFinderModes;
+	}
+
+	@StringGetter(TRANSIT_DISTANCE_ESTIMATOR)
+	public String getTransitDistanceEstimator() {
+		return transitDistanceEstimator;
+	}
+
+	@StringSetter(TRANSIT_DISTANCE_ESTIMATOR)
+	public void setTransitDistanceEstimator(String transitDistanceEstimator) {
+		this.transitDistanceEstimator = transitDistanceEstimator;
+	}
+
+	@StringGetter(USE_DISTANCE_CACHE)
+	public boolean getUseDistanceCache() {
+		return useDistanceCache;
+	}
+
+	@StringSetter(USE_DISTANCE_CACHE)
+	public void setUseDistanceCache(boolean useDistanceCache) {
+		this.useDistanceCache = useDistanceCache;
+	}
+
+	@StringGetter(PREFILL_DISTANCE_CACHE)
+	public boolean getPrefillDistanceCache() {
+		return prefillDistanceCache;
+	}
+
+	@StringSetter(PREFILL_DISTANCE_CACHE)
+	public void setPrefillDistanceCache(boolean prefillDistanceCache) {
+		this.prefillDistanceCache = prefillDistanceCache;
+	}
+
+	@StringGetter(USE_COMPACT_PT_ROUTES)
+	public boolean getUseCompactPtRoutes() {
+		return useCompactPtRoutes;
+	}
+
+	@StringSetter(USE_COMPACT_PT_ROUTES)
+	public void setUseCompactPtRoutes(boolean useCompactPtRoutes) {
+		this.useCompactPtRoutes = useCompactPtRoutes;
+	}
+
+	@StringGetter(SEARCH_BOUNDS)
+	public String getSearchBounds() {
+		return searchBounds;
+	}
+
+	@StringSetter(SEARCH_BOUNDS)
+	public void setSearchBounds(String searchBounds) {
+		this.searchBounds = searchBounds;
+	}
+
+	@StringGetter(ADAPTIVE_BASE_DURATION)
+	public double getAdaptiveBaseDuration() {
+		return adaptiveBaseDuration;
+	}
+
+	@StringSetter(ADAPTIVE_BASE_DURATION)
+	public void setAdaptiveBaseDuration(double adaptiveBaseDuration) {
+		this.adaptiveBaseDuration = adaptiveBaseDuration;
+	}
+
+	@StringGetter(ADAPTIVE_MINIMUM_SPEED)
+	public double getAdaptiveMinimumSpeed() {
+		return adaptiveMinimumSpeed;
+	}
+
+	@StringSetter(ADAPTIVE_MINIMUM_SPEED)
+	public void setAdaptiveMinimumSpeed(double adaptiveMinimumSpeed) {
+		this.adaptiveMinimumSpeed = adaptiveMinimumSpeed;
+	}
+
+	@StringGetter(ADAPTIVE_OFF_PEAK_DURATION)
+	public double getAdaptiveOffPeakDuration() {
+		return adaptiveOffPeakDuration;
+	}
+
+	@StringSetter(ADAPTIVE_OFF_PEAK_DURATION)
+	public void setAdaptiveOffPeakDuration(double adaptiveOffPeakDuration) {
+		this.adaptiveOffPeakDuration = adaptiveOffPeakDuration;
+	}
+
+	@StringGetter(ADAPTIVE_MAXIMUM_WALK_TIME)
+	public int getAdaptiveMaximumWalkTime() {
+		return adaptiveMaximumWalkTime;
+	}
+
+	@StringSetter(ADAPTIVE_MAXIMUM_WALK_TIME)
+	public void setAdaptiveMaximumWalkTime(int adaptiveMaximumWalkTime) {
+		this.adaptiveMaximumWalkTime = adaptiveMaximumWalkTime;
+	}
+
+	@StringGetter(ADAPTIVE_MAXIMUM_RIDES)
+	public int getAdaptiveMaximumRides() {
+		return adaptiveMaximumRides;
+	}
+
+	@StringSetter(ADAPTIVE_MAXIMUM_RIDES)
+	public void setAdaptiveMaximumRides(int adaptiveMaximumRides) {
+		this.adaptiveMaximumRides = adaptiveMaximumRides;
+	}
+
+	@StringGetter(ADAPTIVE_MAXIMUM_OPTIONS)
+	public int getAdaptiveMaximumOptions() {
+		return adaptiveMaximumOptions;
+	}
+
+	@StringSetter(ADAPTIVE_MAXIMUM_OPTIONS)
+	public void setAdaptiveMaximumOptions(int adaptiveMaximumOptions) {
+		this.adaptiveMaximumOptions = adaptiveMaximumOptions;
+	}
+
+	@StringGetter(STOP_COVERAGE_RESOLUTION)
+	public double getStopCoverageResolution() {
+		return stopCoverageResolution;
+	}
+
+	@StringSetter(STOP_COVERAGE_RESOLUTION)
+	public void setStopCoverageResolution(double stopCoverageResolution) {
+		this.stopCoverageResolution = stopCoverageResolution;
+	}
+
+	@StringGetter(SLICE_SERVICE_DAY)
+	public boolean getSliceServiceDay() {
+		return sliceServiceDay;
+	}
+
+	@StringSetter(SLICE_SERVICE_DAY)
+	public void setSliceServiceDay(boolean sliceServiceDay) {
+		this.sliceServiceDay = sliceServiceDay;
+	}
+
+	@StringGetter(STUDY_AREA)
+	public String getStudyArea() {
+		return studyArea;
+	}
+
+	@StringSetter(STUDY_AREA)
+	public void setStudyArea(String studyArea) {
+		this.studyArea = studyArea;
+	}
+
+	@StringGetter(STUDY_AREA_BUFFER)
+	public double getStudyAreaBuffer() {
+		return studyAreaBuffer;
+	}
+
+	@StringSetter(STUDY_AREA_BUFFER)
+	public void setStudyAreaBuffer(double studyAreaBuffer) {
+		this.studyAreaBuffer = studyAreaBuffer;
+	}
+
+	@StringGetter(WARMUP_QUERIES)
+	public int getWarmupQueries() {
+		return warmupQueries;
+	}
+
+	@StringSetter(WARMUP_QUERIES)
+	public void setWarmupQueries(int warmupQueries) {
+		this.warmupQueries = warmupQueries;
+	}
+
+	@StringGetter(ROUTE_STORE_MAXIMUM_SIZE)
+	public int getRouteStoreMaximumSize() {
+		return routeStoreMaximumSize;
+	}
+
+	@StringSetter(ROUTE_STORE_MAXIMUM_SIZE)
+	public void setRouteStoreMaximumSize(int routeStoreMaximumSize) {
+		this.routeStoreMaximumSize = routeStoreMaximumSize;
+	}
 }
@@ -1,51 +1,133 @@
 package ch.ethz.matsim.r5.matsim;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URL;
+import java.util.Arrays;
 
 import org.apache.log4j.Logger;
 import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.population.Population;
 import org.matsim.core.config.ConfigGroup;
+import org.matsim.core.config.ConfigUtils;
 import org.matsim.core.config.groups.PlansCalcRouteConfigGroup;
 import org.matsim.core.controler.AbstractModule;
+import org.matsim.core.controler.OutputDirectoryHierarchy;
 import org.matsim.core.router.RoutingModule;
 import org.matsim.core.utils.geometry.transformations.TransformationFactory;
 
+import com.conveyal.r5.profile.ProfileRequest;
 import com.conveyal.r5.transit.TransportNetwork;
 import com.google.inject.Provides;
 import com.google.inject.Singleton;
 import com.google.inject.name.Named;
 
+import ch.ethz.matsim.r5.AsyncR5LegRouter;
 import ch.ethz.matsim.r5.R5LegRouter;
 import ch.ethz.matsim.r5.R5TeleportationRoutingModule;
+import ch.ethz.matsim.r5.cache.R5AccessCache;
+import ch.ethz.matsim.r5.cache.R5RequestCoalescer;
+import ch.ethz.matsim.r5.cache.R5ResponseCache;
+import ch.ethz.matsim.r5.cache.R5RouteCache;
+import ch.ethz.matsim.r5.cache.R5RouteCacheListener;
+import ch.ethz.matsim.r5.cache.R5RouteStore;
+import ch.ethz.matsim.r5.cache.R5RouteStoreListener;
+import ch.ethz.matsim.r5.distance.CachingDistanceEstimator;
 import ch.ethz.matsim.r5.distance.CrowflyDistanceEstimator;
 import ch.ethz.matsim.r5.distance.DistanceEstimator;
+import ch.ethz.matsim.r5.distance.PatternShapeDistanceEstimator;
+import ch.ethz.matsim.r5.metrics.R5RoutingMetrics;
+import ch.ethz.matsim.r5.metrics.R5RoutingMetricsListener;
 import ch.ethz.matsim.r5.route.LinkFinder;
 import ch.ethz.matsim.r5.route.LoopLinkFinder;
+import ch.ethz.matsim.r5.route.NearestLinkFinder;
+import ch.ethz.matsim.r5.route.R5CompactRouteListener;
+import ch.ethz.matsim.r5.route.R5TripConverter;
 import ch.ethz.matsim.r5.scoring.R5ItineraryScorer;
 import ch.ethz.matsim.r5.scoring.SoonestArrivalTimeScorer;
+import ch.ethz.matsim.r5.search.AdaptiveSearchBounds;
+import ch.ethz.matsim.r5.search.StopCoverageGrid;
 import ch.ethz.matsim.r5.utils.R5Cleaner;
+import ch.ethz.matsim.r5.utils.R5ServiceDaySlicer;
+import ch.ethz.matsim.r5.utils.R5StudyAreaClipper;
+import ch.ethz.matsim.r5.utils.ServiceDay;
+import ch.ethz.matsim.r5.utils.cleaning.R5ClippingReport;
+import ch.ethz.matsim.r5.utils.cleaning.R5CleaningReport;
+import ch.ethz.matsim.r5.utils.cleaning.R5SlicingReport;
+import ch.ethz.matsim.r5.utils.snapshot.R5NetworkSnapshot;
 import ch.ethz.matsim.r5.utils.spatial.CoordToLatLonTransformation;
 import ch.ethz.matsim.r5.utils.spatial.DefaultCoordToLatLon;
 import ch.ethz.matsim.r5.utils.spatial.DefaultLatLonToCoord;
 import ch.ethz.matsim.r5.utils.spatial.LatLonToCoordTransformation;
+import ch.ethz.matsim.r5.warmup.R5Warmup;
+import ch.ethz.matsim.r5.warmup.R5WarmupListener;
 
 public class R5Module extends AbstractModule {
 	static public Logger logger = Logger.getLogger(R5Module.class);
 
+	final private R5StartupPipeline pipeline;
+	private R5NetworkHash networkHash = null;
+
+	public R5Module() {
+		this(null);
+	}
+
+	/**
+	 * @param pipeline
+	 *            Provides the transport network, the link finder, the stop
+	 *            coverage and the distance estimator, which are then prepared
+	 *            concurrently to the MATSim scenario. May be null, in which case
+	 *            everything is prepared when it is first needed.
+	 */
+	public R5Module(R5StartupPipeline pipeline) {
+		this.pipeline = pipeline;
+	}
+
 	@Provides
 	@Singleton
 	public TransportNetwork provideTransportNetwork(R5ConfigGroup config) {
+		if (pipeline != null) {
+			return pipeline.getTransportNetwork();
+		}
+
+		return createTransportNetwork(config, getConfig().getContext(), getNetworkHash(config));
+	}
+
+	synchronized private R5NetworkHash getNetworkHash(R5ConfigGroup config) {
+		if (pipeline != null) {
+			return pipeline.getNetworkHash();
+		}
+
+		if (networkHash == null) {
+			networkHash = new R5NetworkHash(getInputFile(getConfig().getContext(), config.getNetworkInputPath()));
+		}
+
+		return networkHash;
+	}
+
+	static TransportNetwork createTransportNetwork(R5ConfigGroup config, URL context, R5NetworkHash networkHash) {
 		try {
-			logger.info("Loading R5 network ...");
+			File inputFile = getInputFile(context, config.getNetworkInputPath());
+
+			if (config.getNetworkSnapshotPath() == null || config.getNetworkSnapshotPath().isEmpty()) {
+				return loadTransportNetwork(inputFile, config);
+			}
+
+			File snapshotFile = getInputFile(context, config.getNetworkSnapshotPath());
+			String preparation = getPreparationDescription(config);
 
-			File inputFile = config.getNetworkInputPath().startsWith("/") ? new File(config.getNetworkInputPath())
-					: new File(ConfigGroup.getInputFileURL(getConfig().getContext(), config.getNetworkInputPath())
-							.getPath());
-			
-			TransportNetwork transportNetwork = TransportNetwork.read(inputFile);
-			
-			logger.info("Cleaning R5 network ...");
-			new R5Cleaner(transportNetwork).run();
+			long sourceHash = networkHash.get();
+
+			logger.info("Loading R5 network snapshot ...");
+			TransportNetwork transportNetwork = R5NetworkSnapshot.read(snapshotFile, sourceHash, preparation);
+
+			if (transportNetwork == null) {
+				transportNetwork = loadTransportNetwork(inputFile, config);
+
+				logger.info("Writing R5 network snapshot ...");
+				R5NetworkSnapshot.write(transportNetwork, snapshotFile, sourceHash, preparation);
+			}
 
 			return transportNetwork;
 		} catch (Exception e) {
@@ -54,13 +136,82 @@ public class R5Module extends AbstractModule {
 		}
 	}
 
+	static private TransportNetwork loadTransportNetwork(File inputFile, R5ConfigGroup config) throws Exception {
+		logger.info("Loading R5 network ...");
+		TransportNetwork transportNetwork = TransportNetwork.read(inputFile);
+
+		logger.info("Cleaning R5 network ...");
+		R5CleaningReport report = new R5Cleaner(transportNetwork).run();
+		logger.info("Cleaning R5 network: " + report);
+
+		if (config.getSliceServiceDay()) {
+			ServiceDay serviceDay = new ServiceDay(config.getRequestDay(), config.getRequestTimezone(),
+					transportNetwork.getTimeZone());
+
+			logger.info("Slicing R5 network to " + serviceDay.getDate() + " and " + serviceDay.getNextDate() + " ...");
+			R5SlicingReport slicingReport = new R5ServiceDaySlicer(transportNetwork, serviceDay).run();
+			logger.info("Slicing R5 network: " + slicingReport);
+		}
+
+		if (config.getStudyArea() != null && !config.getStudyArea().isEmpty()) {
+			logger.info("Clipping R5 network to study area ...");
+			R5ClippingReport clippingReport = new R5StudyAreaClipper(transportNetwork,
+					R5StudyAreaClipper.parseArea(config.getStudyArea()), config.getStudyAreaBuffer(),
+					createLatLonToCoord(config)).run();
+			logger.info("Clipping R5 network: " + clippingReport);
+		}
+
+		return transportNetwork;
+	}
+
+	/**
+	 * Describes all steps that are applied to the network after loading. A
+	 * snapshot is only valid if it has been prepared in the same way.
+	 */
+	static private String getPreparationDescription(R5ConfigGroup config) {
+		String description = "cleaner";
+
+		if (config.getSliceServiceDay()) {
+			description += ";slicer:" + config.getRequestDay() + "," + config.getRequestTimezone();
+		}
+
+		if (config.getStudyArea() != null && !config.getStudyArea().isEmpty()) {
+			description += ";clipper:" + config.getStudyArea() + "," + config.getStudyAreaBuffer() + ","
+					+ config.getCoordinateSystem();
+		}
+
+		return description;
+	}
+
+	static File getInputFile(URL context, String path) {
+		return path.startsWith("/") ? new File(path) : new File(ConfigGroup.getInputFileURL(context, path).getPath());
+	}
+
 	@Provides
 	@Singleton
 	public LinkFinder provideLinkFinder(Network network, TransportNetwork transportNetwork,
-			LatLonToCoordTransformation transformation) {
-		LoopLinkFinder finder = new LoopLinkFinder(transportNetwork, transformation);
-		finder.createStopLinks(network);
-		return finder;
+			LatLonToCoordTransformation transformation, R5ConfigGroup config) {
+		if (pipeline != null) {
+			return pipeline.getLinkFinder(network);
+		}
+
+		return createLinkFinder(network, transportNetwork, transformation, config);
+	}
+
+	static LinkFinder createLinkFinder(Network network, TransportNetwork transportNetwork,
+			LatLonToCoordTransformation transformation, R5ConfigGroup config) {
+		switch (config.getLinkFinder()) {
+		case R5ConfigGroup.LOOP_LINK_FINDER:
+			LoopLinkFinder finder = new LoopLinkFinder(transportNetwork, transformation);
+			finder.createStopLinks(network);
+			return finder;
+		case R5ConfigGroup.NEAREST_LINK_FINDER:
+			logger.info("Finding nearest links for R5 stops ...");
+			return new NearestLinkFinder(transportNetwork.transitLayer, transformation, network,
+					Arrays.asList(config.getLinkFinderModes().split(",\\s*")));
+		default:
+			throw new IllegalStateException("Unknown link finder: " + config.getLinkFinder());
+		}
 	}
 
 	@Provides
@@ -73,6 +224,10 @@ public class R5Module extends AbstractModule {
 	@Provides
 	@Singleton
 	public LatLonToCoordTransformation provideLatLonToCoord(R5ConfigGroup config) {
+		return createLatLonToCoord(config);
+	}
+
+	static LatLonToCoordTransformation createLatLonToCoord(R5ConfigGroup config) {
 		return new DefaultLatLonToCoord(TransformationFactory.getCoordinateTransformation(TransformationFactory.WGS84,
 				config.getCoordinateSystem()));
 	}
@@ -86,25 +241,229 @@ public class R5Module extends AbstractModule {
 	@Provides
 	@Singleton
 	public DistanceEstimator provideDistanceEstimator(LatLonToCoordTransformation latLonToCoord,
-			PlansCalcRouteConfigGroup routeConfig) {
-		double beelineDistanceFactor = routeConfig.getBeelineDistanceFactors().get("pt");
-		return new CrowflyDistanceEstimator(latLonToCoord, beelineDistanceFactor);
+			PlansCalcRouteConfigGroup routeConfig, TransportNetwork transportNetwork, R5ConfigGroup config) {
+		if (pipeline != null) {
+			return pipeline.getDistanceEstimator();
+		}
+
+		return createDistanceEstimator(latLonToCoord, routeConfig.getBeelineDistanceFactors().get("pt"),
+				transportNetwork, config);
+	}
+
+	static DistanceEstimator createDistanceEstimator(LatLonToCoordTransformation latLonToCoord,
+			double beelineDistanceFactor, TransportNetwork transportNetwork, R5ConfigGroup config) {
+		DistanceEstimator estimator = new CrowflyDistanceEstimator(latLonToCoord, beelineDistanceFactor);
+
+		if (config.getTransitDistanceEstimator().equals(R5ConfigGroup.PATTERN_SHAPE_DISTANCE_ESTIMATOR)) {
+			if (config.getUseDistanceCache()) {
+				logger.warn("The distance cache is ignored for " + R5ConfigGroup.PATTERN_SHAPE_DISTANCE_ESTIMATOR
+						+ ", which computes all distances along the patterns up front");
+			}
+
+			logger.info("Computing distances along transit patterns ...");
+			return new PatternShapeDistanceEstimator(transportNetwork.transitLayer, latLonToCoord, estimator);
+		} else if (!config.getTransitDistanceEstimator().equals(R5ConfigGroup.CROWFLY_DISTANCE_ESTIMATOR)) {
+			throw new IllegalStateException("Unknown distance estimator: " + config.getTransitDistanceEstimator());
+		}
+
+		if (config.getUseDistanceCache()) {
+			CachingDistanceEstimator cachingEstimator = new CachingDistanceEstimator(estimator,
+					transportNetwork.transitLayer);
+
+			if (config.getPrefillDistanceCache()) {
+				logger.info("Computing distances between consecutive stops ...");
+				cachingEstimator.prefill();
+			}
+
+			estimator = cachingEstimator;
+		}
+
+		return estimator;
 	}
 
 	@Provides
 	@Singleton
 	public R5LegRouter provideR5LegRouter(TransportNetwork transportNetwork, R5ItineraryScorer scorer,
-			DistanceEstimator distanceEstimator, R5ConfigGroup config) {
-		return new R5LegRouter(transportNetwork, scorer, distanceEstimator, config.getRequestDay(),
+			DistanceEstimator distanceEstimator, R5ConfigGroup config, R5RoutingMetrics metrics,
+			PlansCalcRouteConfigGroup routeConfig) {
+		R5LegRouter router = new R5LegRouter(transportNetwork, scorer, distanceEstimator, config.getRequestDay(),
 				config.getRequestTimezone());
+
+		if (config.getRouteCacheSize() > 0) {
+			router.setRouteCache(new R5RouteCache(config.getRouteCacheSize(), config.getRouteCacheSpatialResolution(),
+					config.getRouteCacheTemporalResolution()));
+		}
+
+		StopCoverageGrid stopCoverage = pipeline != null ? pipeline.getStopCoverage()
+				: createStopCoverage(transportNetwork, config);
+
+		if (stopCoverage != null) {
+			router.setStopCoverage(stopCoverage);
+		}
+
+		switch (config.getSearchBounds()) {
+		case R5ConfigGroup.DEFAULT_SEARCH_BOUNDS:
+			break;
+		case R5ConfigGroup.ADAPTIVE_SEARCH_BOUNDS:
+			router.setSearchBounds(createSearchBounds(config));
+			break;
+		default:
+			throw new IllegalStateException("Unknown search bounds: " + config.getSearchBounds());
+		}
+
+		if (config.getRouteStorePath() != null && !config.getRouteStorePath().isEmpty()) {
+			router.setRouteStore(createRouteStore(transportNetwork, config, routeConfig, scorer));
+		}
+
+		if (config.getCoalesceRequests()) {
+			router.setRequestCoalescer(new R5RequestCoalescer(config.getRouteCacheSpatialResolution(),
+					config.getRouteCacheTemporalResolution()));
+		}
+
+		if (config.getDepartureWindow() > 0.0) {
+			router.setResponseCache(new R5ResponseCache(config.getDepartureWindowCacheSize(),
+					config.getDepartureWindowSpatialResolution(), config.getDepartureWindow()));
+		}
+
+		if (config.getAccessCacheSize() > 0) {
+			router.setAccessCache(new R5AccessCache(transportNetwork, config.getAccessCacheSize(),
+					config.getAccessCacheSpatialResolution(), true));
+		}
+
+		if (config.getWriteRoutingMetrics()) {
+			router.setMetrics(metrics);
+		}
+
+		return router;
+	}
+
+	@Provides
+	@Singleton
+	public AsyncR5LegRouter provideAsyncR5LegRouter(R5LegRouter router, R5ConfigGroup config) {
+		int numberOfThreads = config.getAsyncRoutingThreads() > 0 ? config.getAsyncRoutingThreads()
+				: Runtime.getRuntime().availableProcessors();
+		return new AsyncR5LegRouter(router, numberOfThreads, config.getAsyncRoutingQueueSize(),
+				config.getAsyncRoutingVirtualThreads());
+	}
+
+	/**
+	 * Returns null if the stop coverage is disabled
+	 */
+	static StopCoverageGrid createStopCoverage(TransportNetwork transportNetwork, R5ConfigGroup config) {
+		if (config.getStopCoverageResolution() <= 0.0) {
+			return null;
+		}
+
+		// Radius that can be walked with the defaults of R5
+		ProfileRequest defaultRequest = new ProfileRequest();
+		double radius = defaultRequest.maxWalkTime * 60.0 * defaultRequest.walkSpeed;
+
+		logger.info("Computing R5 stop coverage ...");
+		StopCoverageGrid stopCoverage = new StopCoverageGrid(transportNetwork.transitLayer, radius,
+				config.getStopCoverageResolution());
+		logger.info("R5 stop coverage: " + stopCoverage);
+
+		return stopCoverage;
+	}
+
+	private AdaptiveSearchBounds createSearchBounds(R5ConfigGroup config) {
+		return new AdaptiveSearchBounds(config.getAdaptiveBaseDuration(), config.getAdaptiveMinimumSpeed(),
+				config.getAdaptiveOffPeakDuration(), config.getAdaptiveMaximumWalkTime(),
+				config.getAdaptiveMaximumRides(), config.getAdaptiveMaximumOptions());
+	}
+
+	private R5RouteStore createRouteStore(TransportNetwork transportNetwork, R5ConfigGroup config,
+			PlansCalcRouteConfigGroup routeConfig, R5ItineraryScorer scorer) {
+		try {
+			URL context = getConfig().getContext();
+			long networkHash = getNetworkHash(config).get();
+
+			// All settings that change the routes
+			String settings = String.join(";", getPreparationDescription(config), config.getRequestDay(),
+					config.getRequestTimezone(), config.getTransitDistanceEstimator(),
+					config.getSearchBounds().equals(R5ConfigGroup.ADAPTIVE_SEARCH_BOUNDS)
+							? createSearchBounds(config).toString()
+							: config.getSearchBounds(),
+					String.valueOf(routeConfig.getBeelineDistanceFactors().get("pt")),
+					String.valueOf(config.getDepartureWindow()),
+					String.valueOf(config.getDepartureWindowSpatialResolution()),
+					String.valueOf(config.getRouteCacheSpatialResolution()),
+					String.valueOf(config.getRouteCacheTemporalResolution()), scorer.getClass().getName());
+
+			logger.info("Opening R5 route store ...");
+			return new R5RouteStore(getInputFile(context, config.getRouteStorePath()), transportNetwork.transitLayer,
+					R5RouteStore.createFingerprint(networkHash, settings), config.getRouteCacheSpatialResolution(),
+					config.getRouteCacheTemporalResolution(), config.getRouteStoreMaximumSize());
+		} catch (IOException e) {
+			throw new UncheckedIOException("Error while opening R5 route store", e);
+		}
+	}
+
+	@Provides
+	@Singleton
+	public R5RouteStoreListener provideR5RouteStoreListener(R5LegRouter router) {
+		return new R5RouteStoreListener(router.getRouteStore());
+	}
+
+	@Provides
+	@Singleton
+	public R5RouteCacheListener provideR5RouteCacheListener(R5LegRouter router) {
+		return new R5RouteCacheListener(router.getRouteCache(), router.getAccessCache(),
+				router.getResponseCache());
+	}
+
+	@Provides
+	@Singleton
+	public R5RoutingMetrics provideR5RoutingMetrics() {
+		return new R5RoutingMetrics();
+	}
+
+	@Provides
+	@Singleton
+	public R5RoutingMetricsListener provideR5RoutingMetricsListener(R5RoutingMetrics metrics,
+			OutputDirectoryHierarchy outputDirectory) {
+		return new R5RoutingMetricsListener(metrics, outputDirectory);
+	}
+
+	@Provides
+	@Singleton
+	public R5CompactRouteListener provideR5CompactRouteListener(Population population, LinkFinder linkFinder,
+			LatLonToCoordTransformation latLonToCoord, TransportNetwork transportNetwork,
+			OutputDirectoryHierarchy outputDirectory) {
+		return new R5CompactRouteListener(population, getConfig(), new R5TripConverter(linkFinder, latLonToCoord),
+				transportNetwork.transitLayer, outputDirectory);
+	}
+
+	@Provides
+	@Singleton
+	public R5WarmupListener provideR5WarmupListener(TransportNetwork transportNetwork, R5ItineraryScorer scorer,
+			DistanceEstimator distanceEstimator, LinkFinder linkFinder, LatLonToCoordTransformation latLonToCoord,
+			R5ConfigGroup config) {
+		// A plain router runs the same search code without filling the caches and the route store
+		R5LegRouter router = new R5LegRouter(transportNetwork, scorer, distanceEstimator, config.getRequestDay(),
+				config.getRequestTimezone());
+
+		if (config.getSearchBounds().equals(R5ConfigGroup.ADAPTIVE_SEARCH_BOUNDS)) {
+			router.setSearchBounds(createSearchBounds(config));
+		}
+
+		R5Warmup warmup = new R5Warmup(router, new R5TripConverter(linkFinder, latLonToCoord), linkFinder,
+				transportNetwork.transitLayer, config.getWarmupQueries(), Runtime.getRuntime().availableProcessors(),
+				getConfig().global().getRandomSeed());
+
+		return new R5WarmupListener(warmup);
 	}
 
 	@Provides
 	@Singleton
 	public R5TeleportationRoutingModule provideR5TeleportationRoutingModule(R5LegRouter router,
 			CoordToLatLonTransformation coordToLatLon, LatLonToCoordTransformation latLonToCoord,
-			@Named("walk") RoutingModule walkRoutingModule, LinkFinder linkFinder) {
-		return new R5TeleportationRoutingModule(router, coordToLatLon, latLonToCoord, walkRoutingModule, linkFinder);
+			@Named("walk") RoutingModule walkRoutingModule, LinkFinder linkFinder, R5ConfigGroup config,
+			R5RoutingMetrics metrics) {
+		R5TeleportationRoutingModule routingModule = new R5TeleportationRoutingModule(router, coordToLatLon,
+				latLonToCoord, walkRoutingModule, linkFinder, config.getWriteRoutingMetrics() ? metrics : null);
+		routingModule.setUseCompactRoutes(config.getUseCompactPtRoutes());
+		return routingModule;
 	}
 
 	@Override
@@ -114,5 +473,29 @@ public class R5Module extends AbstractModule {
 		}
 
 		addRoutingModuleBinding("pt").to(R5TeleportationRoutingModule.class);
+
+		R5ConfigGroup r5Config = ConfigUtils.addOrGetModule(getConfig(), R5ConfigGroup.GROUP_NAME,
+				R5ConfigGroup.class);
+
+		if (r5Config.getRouteCacheSize() > 0 || r5Config.getAccessCacheSize() > 0
+				|| r5Config.getDepartureWindow() > 0.0) {
+			addControlerListenerBinding().to(R5RouteCacheListener.class);
+		}
+
+		if (r5Config.getRouteStorePath() != null && !r5Config.getRouteStorePath().isEmpty()) {
+			addControlerListenerBinding().to(R5RouteStoreListener.class);
+		}
+
+		if (r5Config.getWriteRoutingMetrics()) {
+			addControlerListenerBinding().to(R5RoutingMetricsListener.class);
+		}
+
+		if (r5Config.getWarmupQueries() > 0) {
+			addControlerListenerBinding().to(R5WarmupListener.class);
+		}
+
+		if (r5Config.getUseCompactPtRoutes()) {
+			addControlerListenerBinding().to(R5CompactRouteListener.class);
+		}
 	}
 }
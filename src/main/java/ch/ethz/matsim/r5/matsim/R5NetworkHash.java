@@ -0,0 +1,28 @@
+package ch.ethz.matsim.r5.matsim;
+
+import java.io.File;
+import java.io.IOException;
+
+import ch.ethz.matsim.r5.utils.snapshot.R5NetworkSnapshot;
+
+/**
+ * Hash of the R5 network file, which is shared by the network snapshot and the
+ * route store and computed at most once
+ */
+class R5NetworkHash {
+	final private File networkFile;
+	private Long hash = null;
+
+	R5NetworkHash(File networkFile) {
+		this.networkFile = networkFile;
+	}
+
+	synchronized long get() throws IOException {
+		if (hash == null) {
+			R5Module.logger.info("Hashing R5 network ...");
+			hash = R5NetworkSnapshot.computeSourceHash(networkFile);
+		}
+
+		return hash;
+	}
+}
@@ -0,0 +1,212 @@
+package ch.ethz.matsim.r5.matsim;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigUtils;
+
+import com.conveyal.r5.transit.TransportNetwork;
+
+import ch.ethz.matsim.r5.distance.DistanceEstimator;
+import ch.ethz.matsim.r5.route.LinkFinder;
+import ch.ethz.matsim.r5.search.StopCoverageGrid;
+import ch.ethz.matsim.r5.utils.spatial.LatLonToCoordTransformation;
+
+/**
+ * Prepares the R5 components in concurrent stages while the MATSim scenario
+ * is loaded
+ *
+ * - network: loads (or restores) and prepares the transport network
+ * - coverage: computes the stop coverage grid, after the network
+ * - distances: creates and prefills the distance estimator, after the network
+ * - links: finds the nearest links of all stops, after the network and once
+ *   the MATSim network has been passed
+ *
+ * The LoopLinkFinder adds links to the MATSim network, so it is not created
+ * concurrently, but when the link finder is requested. Every stage logs its
+ * runtime and every request logs how long it has waited for a stage, so the
+ * critical path of the startup can be read from the log. The threads of the
+ * pipeline are shut down once the link finder has been requested and all
+ * stages have finished.
+ *
+ * Usage: start the pipeline before loading the scenario, pass the network
+ * once the scenario is loaded and add the R5Module with the pipeline to the
+ * controler.
+ */
+public class R5StartupPipeline {
+	final private R5ConfigGroup config;
+	final private Config matsimConfig;
+
+	final private ExecutorService executor;
+	final private R5NetworkHash networkHash;
+
+	private CompletableFuture<TransportNetwork> transportNetwork = null;
+	private CompletableFuture<StopCoverageGrid> stopCoverage = null;
+	private CompletableFuture<DistanceEstimator> distanceEstimator = null;
+	private CompletableFuture<LinkFinder> linkFinder = null;
+
+	private Network network = null;
+	private boolean isShutdownRequested = false;
+
+	public R5StartupPipeline(Config matsimConfig) {
+		this.matsimConfig = matsimConfig;
+		this.config = ConfigUtils.addOrGetModule(matsimConfig, R5ConfigGroup.GROUP_NAME, R5ConfigGroup.class);
+		this.networkHash = new R5NetworkHash(
+				R5Module.getInputFile(matsimConfig.getContext(), config.getNetworkInputPath()));
+
+		AtomicInteger threadIndex = new AtomicInteger(0);
+
+		this.executor = Executors.newCachedThreadPool(runnable -> {
+			Thread thread = new Thread(runnable, "r5-startup-" + threadIndex.getAndIncrement());
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	static private <T> T timed(String stage, Supplier<T> supplier) {
+		long startTime = System.currentTimeMillis();
+		T result = supplier.get();
+		R5Module.logger.info(String.format("R5 startup stage '%s' finished in %d ms", stage,
+				System.currentTimeMillis() - startTime));
+		return result;
+	}
+
+	static private <T> T join(String stage, CompletableFuture<T> future) {
+		long startTime = System.currentTimeMillis();
+
+		try {
+			T result = future.join();
+
+			long waitingTime = System.currentTimeMillis() - startTime;
+
+			if (waitingTime > 0) {
+				R5Module.logger.info(String.format("Waited %d ms for R5 startup stage '%s'", waitingTime, stage));
+			}
+
+			return result;
+		} catch (CompletionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+
+			throw new RuntimeException("Error in R5 startup stage '" + stage + "'", e.getCause());
+		}
+	}
+
+	/**
+	 * Starts the stages that only depend on the transport network. Calling this
+	 * more than once has no effect.
+	 */
+	synchronized public R5StartupPipeline start() {
+		if (transportNetwork == null) {
+			LatLonToCoordTransformation latLonToCoord = R5Module.createLatLonToCoord(config);
+			double beelineDistanceFactor = matsimConfig.plansCalcRoute().getBeelineDistanceFactors().get("pt");
+
+			transportNetwork = CompletableFuture.supplyAsync(() -> timed("network",
+					() -> R5Module.createTransportNetwork(config, matsimConfig.getContext(), networkHash)), executor);
+
+			stopCoverage = transportNetwork.thenApplyAsync(
+					r5Network -> timed("coverage", () -> R5Module.createStopCoverage(r5Network, config)), executor);
+
+			distanceEstimator = transportNetwork.thenApplyAsync(r5Network -> timed("distances",
+					() -> R5Module.createDistanceEstimator(latLonToCoord, beelineDistanceFactor, r5Network, config)),
+					executor);
+		}
+
+		return this;
+	}
+
+	/**
+	 * Passes the MATSim network, for which the links of the stops are found
+	 * concurrently if the NearestLinkFinder is used. The network must not be
+	 * replaced afterwards.
+	 */
+	synchronized public void setNetwork(Network network) {
+		if (this.network != null && this.network != network) {
+			throw new IllegalStateException("The network of the R5 startup pipeline must not be replaced");
+		}
+
+		this.network = network;
+		start();
+
+		if (linkFinder == null && !isShutdownRequested
+				&& config.getLinkFinder().equals(R5ConfigGroup.NEAREST_LINK_FINDER)) {
+			LatLonToCoordTransformation latLonToCoord = R5Module.createLatLonToCoord(config);
+
+			linkFinder = transportNetwork.thenApplyAsync(r5Network -> timed("links",
+					() -> R5Module.createLinkFinder(network, r5Network, latLonToCoord, config)), executor);
+		}
+	}
+
+	R5NetworkHash getNetworkHash() {
+		return networkHash;
+	}
+
+	public TransportNetwork getTransportNetwork() {
+		start();
+		return join("network", transportNetwork);
+	}
+
+	/**
+	 * Returns null if the stop coverage is disabled
+	 */
+	public StopCoverageGrid getStopCoverage() {
+		start();
+		return join("coverage", stopCoverage);
+	}
+
+	public DistanceEstimator getDistanceEstimator() {
+		start();
+		return join("distances", distanceEstimator);
+	}
+
+	/**
+	 * Shuts down the threads once all started stages have finished. No stages
+	 * are started afterwards.
+	 */
+	synchronized private void shutdownAfterStages() {
+		if (!isShutdownRequested) {
+			isShutdownRequested = true;
+
+			CompletableFuture<?>[] stages = linkFinder == null
+					? new CompletableFuture<?>[] { stopCoverage, distanceEstimator }
+					: new CompletableFuture<?>[] { stopCoverage, distanceEstimator, linkFinder };
+
+			CompletableFuture.allOf(stages).whenComplete((result, error) -> executor.shutdown());
+		}
+	}
+
+	/**
+	 * Returns the link finder of the stage, or creates it for the given network
+	 * if the stage has not been started. The network must be the one that has
+	 * been passed to setNetwork.
+	 */
+	public LinkFinder getLinkFinder(Network network) {
+		CompletableFuture<LinkFinder> future;
+
+		synchronized (this) {
+			if (this.network != null && this.network != network) {
+				throw new IllegalStateException(
+						"The link finder is requested for another network than the one passed to the R5 startup pipeline");
+			}
+
+			start();
+			shutdownAfterStages();
+			future = linkFinder;
+		}
+
+		if (future != null) {
+			return join("links", future);
+		}
+
+		TransportNetwork r5Network = getTransportNetwork();
+		return timed("links",
+				() -> R5Module.createLinkFinder(network, r5Network, R5Module.createLatLonToCoord(config), config));
+	}
+}
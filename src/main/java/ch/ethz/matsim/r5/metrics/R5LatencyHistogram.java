@@ -0,0 +1,125 @@
+package ch.ethz.matsim.r5.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free histogram of latencies in nanoseconds
+ *
+ * Values below 16 have their own bucket, larger values are collected in eight
+ * buckets per power of two, so reported percentiles are accurate to about
+ * 12.5%. Recording only increments atomic counters and never allocates.
+ */
+public class R5LatencyHistogram {
+	final static private int SUB_BUCKET_BITS = 3;
+	final static private int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	final static private int LINEAR_BUCKETS = 2 * SUB_BUCKETS;
+	final static private int NUMBER_OF_BUCKETS = LINEAR_BUCKETS + (63 - SUB_BUCKET_BITS - 1) * SUB_BUCKETS;
+
+	final private AtomicLongArray counts = new AtomicLongArray(NUMBER_OF_BUCKETS);
+	final private AtomicLong sum = new AtomicLong(0);
+	final private AtomicLong max = new AtomicLong(0);
+
+	static private int getBucket(long value) {
+		if (value < LINEAR_BUCKETS) {
+			return (int) Math.max(0, value);
+		}
+
+		int exponent = 63 - Long.numberOfLeadingZeros(value);
+		int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+
+		return LINEAR_BUCKETS + (exponent - SUB_BUCKET_BITS - 1) * SUB_BUCKETS + subBucket;
+	}
+
+	/**
+	 * Returns the largest value that falls into the bucket
+	 */
+	static private long getUpperBound(int bucket) {
+		if (bucket < LINEAR_BUCKETS) {
+			return bucket;
+		}
+
+		int exponent = (bucket - LINEAR_BUCKETS) / SUB_BUCKETS + SUB_BUCKET_BITS + 1;
+		int subBucket = (bucket - LINEAR_BUCKETS) % SUB_BUCKETS;
+		int shift = exponent - SUB_BUCKET_BITS;
+
+		return ((long) (SUB_BUCKETS + subBucket) << shift) + (1L << shift) - 1;
+	}
+
+	public void record(long nanoseconds) {
+		counts.incrementAndGet(getBucket(nanoseconds));
+		sum.addAndGet(nanoseconds);
+		max.accumulateAndGet(nanoseconds, Math::max);
+	}
+
+	/**
+	 * Returns the recorded values and resets the histogram. Values that are
+	 * recorded concurrently end up in either this or the next snapshot.
+	 */
+	public Snapshot snapshotAndReset() {
+		long[] snapshotCounts = new long[NUMBER_OF_BUCKETS];
+		long snapshotCount = 0;
+
+		for (int i = 0; i < NUMBER_OF_BUCKETS; i++) {
+			snapshotCounts[i] = counts.getAndSet(i, 0);
+			snapshotCount += snapshotCounts[i];
+		}
+
+		return new Snapshot(snapshotCounts, snapshotCount, sum.getAndSet(0), max.getAndSet(0));
+	}
+
+	static public class Snapshot {
+		final private long[] counts;
+		final private long count;
+		final private long sum;
+		final private long max;
+
+		Snapshot(long[] counts, long count, long sum, long max) {
+			this.counts = counts;
+			this.count = count;
+			this.sum = sum;
+			this.max = max;
+		}
+
+		public long getCount() {
+			return count;
+		}
+
+		public long getSum() {
+			return sum;
+		}
+
+		public long getMax() {
+			return max;
+		}
+
+		public double getMean() {
+			return count == 0 ? Double.NaN : (double) sum / count;
+		}
+
+		/**
+		 * @param percentile
+		 *            between 0.0 and 1.0
+		 * @return Upper bound of the bucket that contains the percentile, NaN if
+		 *         nothing has been recorded
+		 */
+		public double getPercentile(double percentile) {
+			if (count == 0) {
+				return Double.NaN;
+			}
+
+			long threshold = Math.max(1, (long) Math.ceil(percentile * count));
+			long cumulativeCount = 0;
+
+			for (int i = 0; i < counts.length; i++) {
+				cumulativeCount += counts[i];
+
+				if (cumulativeCount >= threshold) {
+					return Math.min(getUpperBound(i), max);
+				}
+			}
+
+			return max;
+		}
+	}
+}
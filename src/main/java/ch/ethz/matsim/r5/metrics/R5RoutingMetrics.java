@@ -0,0 +1,67 @@
+package ch.ethz.matsim.r5.metrics;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Collects latencies of the PT routing phases and counts special cases
+ *
+ * <ul>
+ * <li>SEARCH: R5 query
+ * <li>RECONSTRUCTION: selection of an itinerary and conversion to R5Legs
+ * <li>CONVERSION: conversion of R5Legs into MATSim plan elements
+ * </ul>
+ */
+public class R5RoutingMetrics {
+	public enum Phase {
+		SEARCH, RECONSTRUCTION, CONVERSION
+	}
+
+	final private Map<Phase, R5LatencyHistogram> histograms = new EnumMap<>(Phase.class);
+
+	final private LongAdder numberOfRequests = new LongAdder();
+	final private LongAdder numberOfFallbacks = new LongAdder();
+	final private LongAdder numberOfExceptions = new LongAdder();
+
+	public R5RoutingMetrics() {
+		for (Phase phase : Phase.values()) {
+			histograms.put(phase, new R5LatencyHistogram());
+		}
+	}
+
+	public void record(Phase phase, long nanoseconds) {
+		histograms.get(phase).record(nanoseconds);
+	}
+
+	public void addRequest() {
+		numberOfRequests.increment();
+	}
+
+	/**
+	 * No PT route has been found and the walk router has been used instead
+	 */
+	public void addFallback() {
+		numberOfFallbacks.increment();
+	}
+
+	public void addException() {
+		numberOfExceptions.increment();
+	}
+
+	public R5LatencyHistogram getHistogram(Phase phase) {
+		return histograms.get(phase);
+	}
+
+	public long getAndResetNumberOfRequests() {
+		return numberOfRequests.sumThenReset();
+	}
+
+	public long getAndResetNumberOfFallbacks() {
+		return numberOfFallbacks.sumThenReset();
+	}
+
+	public long getAndResetNumberOfExceptions() {
+		return numberOfExceptions.sumThenReset();
+	}
+}
@@ -0,0 +1,73 @@
+package ch.ethz.matsim.r5.metrics;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+import org.matsim.core.controler.OutputDirectoryHierarchy;
+import org.matsim.core.controler.events.IterationEndsEvent;
+import org.matsim.core.controler.listener.IterationEndsListener;
+
+import ch.ethz.matsim.r5.matsim.R5Module;
+import ch.ethz.matsim.r5.metrics.R5RoutingMetrics.Phase;
+
+/**
+ * Writes the routing metrics after every iteration and resets them
+ *
+ * Each iteration adds one line per phase to r5_routing_metrics.csv in the
+ * output directory. Latencies are given in milliseconds.
+ */
+public class R5RoutingMetricsListener implements IterationEndsListener {
+	final static private String FILE_NAME = "r5_routing_metrics.csv";
+	final static private String HEADER = "iteration;phase;count;mean;p50;p90;p99;max;requests;fallbacks;exceptions";
+
+	final private R5RoutingMetrics metrics;
+	final private OutputDirectoryHierarchy outputDirectory;
+
+	private boolean isFirstWrite = true;
+
+	public R5RoutingMetricsListener(R5RoutingMetrics metrics, OutputDirectoryHierarchy outputDirectory) {
+		this.metrics = metrics;
+		this.outputDirectory = outputDirectory;
+	}
+
+	static private double toMilliseconds(double nanoseconds) {
+		return nanoseconds * 1e-6;
+	}
+
+	@Override
+	public void notifyIterationEnds(IterationEndsEvent event) {
+		long numberOfRequests = metrics.getAndResetNumberOfRequests();
+		long numberOfFallbacks = metrics.getAndResetNumberOfFallbacks();
+		long numberOfExceptions = metrics.getAndResetNumberOfExceptions();
+
+		try (BufferedWriter writer = new BufferedWriter(
+				new FileWriter(outputDirectory.getOutputFilename(FILE_NAME), !isFirstWrite))) {
+			if (isFirstWrite) {
+				writer.write(HEADER + "\n");
+				isFirstWrite = false;
+			}
+
+			for (Phase phase : Phase.values()) {
+				R5LatencyHistogram.Snapshot snapshot = metrics.getHistogram(phase).snapshotAndReset();
+
+				writer.write(String.format("%d;%s;%d;%.3f;%.3f;%.3f;%.3f;%.3f;%d;%d;%d\n", event.getIteration(),
+						phase, snapshot.getCount(), toMilliseconds(snapshot.getMean()),
+						toMilliseconds(snapshot.getPercentile(0.5)), toMilliseconds(snapshot.getPercentile(0.9)),
+						toMilliseconds(snapshot.getPercentile(0.99)), toMilliseconds(snapshot.getMax()),
+						numberOfRequests, numberOfFallbacks, numberOfExceptions));
+
+				R5Module.logger.info(String.format(
+						"R5 routing %s (iteration %d): %d calls, mean %.3f ms, p99 %.3f ms", phase,
+						event.getIteration(), snapshot.getCount(), toMilliseconds(snapshot.getMean()),
+						toMilliseconds(snapshot.getPercentile(0.99))));
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+
+		R5Module.logger.info(String.format("R5 routing (iteration %d): %d requests, %d walk fallbacks, %d exceptions",
+				event.getIteration(), numberOfRequests, numberOfFallbacks, numberOfExceptions));
+	}
+}
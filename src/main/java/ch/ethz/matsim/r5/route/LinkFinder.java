@@ -3,6 +3,19 @@ package ch.ethz.matsim.r5.route;
 import org.matsim.api.core.v01.Id;
 import org.matsim.api.core.v01.network.Link;
 
+import com.conveyal.r5.transit.TransitLayer;
+
 public interface LinkFinder {
 	Id<Link> findLink(String stopId);
+
+	/**
+	 * Finds the link of a stop given by its index in the transit layer
+	 *
+	 * By default, the stop id is looked up and passed to findLink(String), so
+	 * existing implementations keep working. Implementations that store links by
+	 * stop index should override this to avoid the lookup.
+	 */
+	default Id<Link> findLink(int stopIndex, TransitLayer transitLayer) {
+		return findLink(transitLayer.stopIdForIndex.get(stopIndex));
+	}
 }
@@ -9,6 +9,7 @@ import org.matsim.api.core.v01.network.Network;
 import org.matsim.api.core.v01.network.NetworkFactory;
 import org.matsim.api.core.v01.network.Node;
 
+import com.conveyal.r5.transit.TransitLayer;
 import com.conveyal.r5.transit.TransportNetwork;
 import com.vividsolutions.jts.geom.Coordinate;
 
@@ -29,6 +30,11 @@ public class LoopLinkFinder implements LinkFinder {
 		NetworkFactory factory = network.getFactory();
 
 		for (int i = 0; i < numberOfStops; i++) {
+			if (transportNetwork.transitLayer.patternsForStop.get(i).isEmpty()) {
+				// Stops that are not served by any pattern (e.g. after clipping) never appear in routes
+				continue;
+			}
+
 			Coordinate latlon = transportNetwork.transitLayer.getCoordinateForStopFixed(i);
 
 			// TODO: This is tricky. If the stop is not attached to a vertex in R5 we don't have
@@ -54,6 +60,15 @@ public class LoopLinkFinder implements LinkFinder {
 
 	@Override
 	public Id<Link> findLink(String stopId) {
-		return Id.createLinkId("transit_loop_" + transportNetwork.transitLayer.indexForStopId.get(stopId));
+		return getLinkId(transportNetwork.transitLayer.indexForStopId.get(stopId));
+	}
+
+	@Override
+	public Id<Link> findLink(int stopIndex, TransitLayer transitLayer) {
+		return getLinkId(stopIndex);
+	}
+
+	static private Id<Link> getLinkId(int stopIndex) {
+		return Id.createLinkId("transit_loop_" + stopIndex);
 	}
 }
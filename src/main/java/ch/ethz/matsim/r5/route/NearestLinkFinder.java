@@ -0,0 +1,154 @@
+package ch.ethz.matsim.r5.route;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.core.utils.collections.QuadTree;
+import org.matsim.core.utils.geometry.CoordUtils;
+
+import com.conveyal.r5.transit.TransitLayer;
+import com.vividsolutions.jts.geom.Coordinate;
+
+import ch.ethz.matsim.r5.utils.spatial.LatLon;
+import ch.ethz.matsim.r5.utils.spatial.LatLonToCoordTransformation;
+
+/**
+ * Snaps every R5 stop to the nearest link of the MATSim network
+ *
+ * Only links that allow at least one of the given modes are considered. The
+ * links are indexed by points sampled along them, so the nearest link is found
+ * exactly by checking all links with a sample close to the stop. The links of
+ * all stops are found in parallel at construction time and stored by stop
+ * index, so no links need to be added to the network. Stops that are not
+ * served by any pattern are skipped.
+ */
+public class NearestLinkFinder implements LinkFinder {
+	/**
+	 * Maximum distance between two sampled points of a link in meters
+	 */
+	final static private double SAMPLE_DISTANCE = 100.0;
+
+	final private TransitLayer transitLayer;
+	final private Id<Link>[] stopLinks;
+
+	@SuppressWarnings("unchecked")
+	public NearestLinkFinder(TransitLayer transitLayer, LatLonToCoordTransformation transformation, Network network,
+			Collection<String> modes) {
+		this.transitLayer = transitLayer;
+
+		QuadTree<Link> index = createIndex(network, modes);
+
+		// See LoopLinkFinder for stops without coordinates
+		Coord centerCoord = transformation.transform(new LatLon(transitLayer.centerLat, transitLayer.centerLon));
+
+		this.stopLinks = new Id[transitLayer.getStopCount()];
+
+		IntStream.range(0, stopLinks.length).parallel().forEach(stopIndex -> {
+			if (transitLayer.patternsForStop.get(stopIndex).isEmpty()) {
+				return;
+			}
+
+			Coordinate latlon = transitLayer.getCoordinateForStopFixed(stopIndex);
+			Coord coord = latlon != null ? transformation.transform(new LatLon(latlon.y, latlon.x)) : centerCoord;
+
+			stopLinks[stopIndex] = findNearestLink(index, coord);
+		});
+	}
+
+	static private QuadTree<Link> createIndex(Network network, Collection<String> modes) {
+		double minX = Double.POSITIVE_INFINITY;
+		double minY = Double.POSITIVE_INFINITY;
+		double maxX = Double.NEGATIVE_INFINITY;
+		double maxY = Double.NEGATIVE_INFINITY;
+
+		List<Link> links = new ArrayList<>();
+
+		for (Link link : network.getLinks().values()) {
+			if (!Collections.disjoint(link.getAllowedModes(), modes)) {
+				links.add(link);
+
+				for (Coord coord : new Coord[] { link.getFromNode().getCoord(), link.getToNode().getCoord() }) {
+					minX = Math.min(minX, coord.getX());
+					minY = Math.min(minY, coord.getY());
+					maxX = Math.max(maxX, coord.getX());
+					maxY = Math.max(maxY, coord.getY());
+				}
+			}
+		}
+
+		if (links.isEmpty()) {
+			throw new IllegalStateException("No links found for modes " + modes);
+		}
+
+		QuadTree<Link> index = new QuadTree<>(minX, minY, maxX, maxY);
+
+		for (Link link : links) {
+			Coord fromCoord = link.getFromNode().getCoord();
+			Coord toCoord = link.getToNode().getCoord();
+
+			int numberOfSegments = Math
+					.max((int) Math.ceil(CoordUtils.calcEuclideanDistance(fromCoord, toCoord) / SAMPLE_DISTANCE), 1);
+
+			for (int k = 0; k <= numberOfSegments; k++) {
+				double fraction = (double) k / numberOfSegments;
+				index.put(fromCoord.getX() + fraction * (toCoord.getX() - fromCoord.getX()),
+						fromCoord.getY() + fraction * (toCoord.getY() - fromCoord.getY()), link);
+			}
+		}
+
+		return index;
+	}
+
+	static private double getDistance(Link link, Coord coord) {
+		return CoordUtils.distancePointLinesegment(link.getFromNode().getCoord(), link.getToNode().getCoord(), coord);
+	}
+
+	/**
+	 * The closest point on a link is at most half a sample distance away from
+	 * one of its samples. Hence, every link that is closer than the link of the
+	 * closest sample has a sample within that distance plus half a sample
+	 * distance.
+	 */
+	static private Id<Link> findNearestLink(QuadTree<Link> index, Coord coord) {
+		Link nearestLink = index.getClosest(coord.getX(), coord.getY());
+		double nearestDistance = getDistance(nearestLink, coord);
+
+		for (Link link : index.getDisk(coord.getX(), coord.getY(), nearestDistance + 0.5 * SAMPLE_DISTANCE)) {
+			double distance = getDistance(link, coord);
+
+			if (distance < nearestDistance) {
+				nearestDistance = distance;
+				nearestLink = link;
+			}
+		}
+
+		return nearestLink.getId();
+	}
+
+	@Override
+	public Id<Link> findLink(String stopId) {
+		int stopIndex = transitLayer.indexForStopId.get(stopId);
+
+		if (stopIndex < 0 || stopIndex >= stopLinks.length || stopLinks[stopIndex] == null) {
+			throw new IllegalStateException("Unknown stop: " + stopId);
+		}
+
+		return stopLinks[stopIndex];
+	}
+
+	@Override
+	public Id<Link> findLink(int stopIndex, TransitLayer transitLayer) {
+		if (stopIndex < 0 || stopIndex >= stopLinks.length || stopLinks[stopIndex] == null) {
+			throw new IllegalStateException("Unknown stop index: " + stopIndex);
+		}
+
+		return stopLinks[stopIndex];
+	}
+}
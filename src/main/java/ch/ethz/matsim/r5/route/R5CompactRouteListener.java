@@ -0,0 +1,72 @@
+package ch.ethz.matsim.r5.route;
+
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.api.core.v01.population.Plan;
+import org.matsim.api.core.v01.population.Population;
+import org.matsim.api.core.v01.population.PopulationWriter;
+import org.matsim.core.config.Config;
+import org.matsim.core.controler.OutputDirectoryHierarchy;
+import org.matsim.core.controler.events.ShutdownEvent;
+import org.matsim.core.controler.listener.ShutdownListener;
+import org.matsim.core.population.PopulationUtils;
+
+import com.conveyal.r5.transit.TransitLayer;
+
+import ch.ethz.matsim.r5.matsim.R5Module;
+
+/**
+ * Writes the final plans with expanded PT trips if compact routes are used
+ *
+ * The plans are copied and every R5PtRoute is replaced by the detailed legs and
+ * "pt interaction" activities in output_plans_expanded.xml.gz, so that the
+ * stages of the trips can be analyzed. The population of the simulation is not
+ * changed.
+ */
+public class R5CompactRouteListener implements ShutdownListener {
+	final static private String FILE_NAME = "output_plans_expanded.xml.gz";
+
+	final private Population population;
+	final private Config config;
+	final private R5TripConverter converter;
+	final private TransitLayer transitLayer;
+	final private OutputDirectoryHierarchy outputDirectory;
+
+	public R5CompactRouteListener(Population population, Config config, R5TripConverter converter,
+			TransitLayer transitLayer, OutputDirectoryHierarchy outputDirectory) {
+		this.population = population;
+		this.config = config;
+		this.converter = converter;
+		this.transitLayer = transitLayer;
+		this.outputDirectory = outputDirectory;
+	}
+
+	@Override
+	public void notifyShutdown(ShutdownEvent event) {
+		if (event.isUnexpected()) {
+			return;
+		}
+
+		R5Module.logger.info("Expanding compact PT routes ...");
+		Population expandedPopulation = PopulationUtils.createPopulation(config);
+
+		for (Person person : population.getPersons().values()) {
+			Person expandedPerson = expandedPopulation.getFactory().createPerson(person.getId());
+
+			for (Plan plan : person.getPlans()) {
+				Plan expandedPlan = expandedPopulation.getFactory().createPlan();
+				PopulationUtils.copyFromTo(plan, expandedPlan);
+				converter.expand(expandedPlan, transitLayer);
+
+				expandedPerson.addPlan(expandedPlan);
+
+				if (plan == person.getSelectedPlan()) {
+					expandedPerson.setSelectedPlan(expandedPlan);
+				}
+			}
+
+			expandedPopulation.addPerson(expandedPerson);
+		}
+
+		new PopulationWriter(expandedPopulation).write(outputDirectory.getOutputFilename(FILE_NAME));
+	}
+}
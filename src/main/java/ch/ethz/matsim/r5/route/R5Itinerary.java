@@ -0,0 +1,325 @@
+package ch.ethz.matsim.r5.route;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.conveyal.r5.transit.TransitLayer;
+import com.vividsolutions.jts.geom.Coordinate;
+
+import ch.ethz.matsim.r5.utils.spatial.LatLon;
+
+/**
+ * Compact representation of a routed PT trip
+ *
+ * The legs are stored in primitive arrays, stops are referenced by their index
+ * in the transit layer. Itineraries are immutable, so shifted copies share all
+ * arrays except for the departure times. Stop ids, locations and R5Leg
+ * objects are only created on request.
+ */
+public class R5Itinerary {
+	public enum LegType {
+		ACCESS, TRANSIT, TRANSFER, EGRESS
+	}
+
+	final static private LegType[] LEG_TYPES = LegType.values();
+
+	/**
+	 * Stop index of the origin and destination of access and egress legs
+	 */
+	final static public int NO_STOP = -1;
+
+	final private TransitLayer transitLayer;
+
+	final private double fromLatitude;
+	final private double fromLongitude;
+	final private double toLatitude;
+	final private double toLongitude;
+
+	final private byte[] types;
+	final private double[] departureTimes;
+	final private double[] travelTimes;
+	final private double[] distances;
+	final private int[] departureStops;
+	final private int[] arrivalStops;
+	final private int[] patternIds;
+	final private int[] timeIds;
+
+	R5Itinerary(TransitLayer transitLayer, double fromLatitude, double fromLongitude, double toLatitude,
+			double toLongitude, byte[] types, double[] departureTimes, double[] travelTimes, double[] distances,
+			int[] departureStops, int[] arrivalStops, int[] patternIds, int[] timeIds) {
+		this.transitLayer = transitLayer;
+		this.fromLatitude = fromLatitude;
+		this.fromLongitude = fromLongitude;
+		this.toLatitude = toLatitude;
+		this.toLongitude = toLongitude;
+		this.types = types;
+		this.departureTimes = departureTimes;
+		this.travelTimes = travelTimes;
+		this.distances = distances;
+		this.departureStops = departureStops;
+		this.arrivalStops = arrivalStops;
+		this.patternIds = patternIds;
+		this.timeIds = timeIds;
+	}
+
+	public int size() {
+		return types.length;
+	}
+
+	public LegType getType(int index) {
+		return LEG_TYPES[types[index]];
+	}
+
+	public boolean isWalk(int index) {
+		return types[index] != LegType.TRANSIT.ordinal();
+	}
+
+	public double getDepartureTime(int index) {
+		return departureTimes[index];
+	}
+
+	public double getTravelTime(int index) {
+		return travelTimes[index];
+	}
+
+	public double getArrivalTime(int index) {
+		return departureTimes[index] + travelTimes[index];
+	}
+
+	public double getDistance(int index) {
+		return distances[index];
+	}
+
+	/**
+	 * @return Stop index or NO_STOP for access legs
+	 */
+	public int getDepartureStop(int index) {
+		return departureStops[index];
+	}
+
+	/**
+	 * @return Stop index or NO_STOP for egress legs
+	 */
+	public int getArrivalStop(int index) {
+		return arrivalStops[index];
+	}
+
+	/**
+	 * @return Pattern index for transit legs, otherwise -1
+	 */
+	public int getPatternId(int index) {
+		return patternIds[index];
+	}
+
+	/**
+	 * @return Time index for transit legs, otherwise -1
+	 */
+	public int getTimeId(int index) {
+		return timeIds[index];
+	}
+
+	public double getFromLatitude() {
+		return fromLatitude;
+	}
+
+	public double getFromLongitude() {
+		return fromLongitude;
+	}
+
+	public double getToLatitude() {
+		return toLatitude;
+	}
+
+	public double getToLongitude() {
+		return toLongitude;
+	}
+
+	public TransitLayer getTransitLayer() {
+		return transitLayer;
+	}
+
+	public LatLon getDepartureLocation(int index) {
+		return departureStops[index] == NO_STOP ? new LatLon(fromLatitude, fromLongitude)
+				: getStopLocation(departureStops[index]);
+	}
+
+	public LatLon getArrivalLocation(int index) {
+		return arrivalStops[index] == NO_STOP ? new LatLon(toLatitude, toLongitude)
+				: getStopLocation(arrivalStops[index]);
+	}
+
+	public String getStopId(int stopIndex) {
+		return stopIndex == NO_STOP ? null : transitLayer.stopIdForIndex.get(stopIndex);
+	}
+
+	/**
+	 * Returns the location of a stop. Stops without a location on the street
+	 * layer are placed at the center of the transit layer.
+	 */
+	public LatLon getStopLocation(int stopIndex) {
+		Coordinate coordinate = transitLayer.getCoordinateForStopFixed(stopIndex);
+
+		if (coordinate == null) {
+			return new LatLon(transitLayer.centerLat, transitLayer.centerLon);
+		}
+
+		return new LatLon(coordinate.y, coordinate.x);
+	}
+
+	/**
+	 * Returns a copy that is shifted in time by the given offset
+	 */
+	public R5Itinerary shift(double offset) {
+		if (offset == 0.0) {
+			return this;
+		}
+
+		double[] shiftedDepartureTimes = new double[departureTimes.length];
+
+		for (int i = 0; i < departureTimes.length; i++) {
+			shiftedDepartureTimes[i] = departureTimes[i] + offset;
+		}
+
+		return new R5Itinerary(transitLayer, fromLatitude, fromLongitude, toLatitude, toLongitude, types,
+				shiftedDepartureTimes, travelTimes, distances, departureStops, arrivalStops, patternIds, timeIds);
+	}
+
+	/**
+	 * Creates the R5Leg representation of the itinerary
+	 */
+	public List<R5Leg> toLegs() {
+		List<R5Leg> legs = new ArrayList<>(size());
+
+		for (int i = 0; i < size(); i++) {
+			switch (getType(i)) {
+			case ACCESS:
+				legs.add(new R5AccessLeg(departureTimes[i], travelTimes[i], distances[i], getDepartureLocation(i),
+						getArrivalLocation(i), getStopId(arrivalStops[i])));
+				break;
+			case TRANSIT:
+				legs.add(new R5TransitLeg(departureTimes[i], travelTimes[i], distances[i], getDepartureLocation(i),
+						getArrivalLocation(i), getStopId(departureStops[i]), getStopId(arrivalStops[i]),
+						patternIds[i], timeIds[i]));
+				break;
+			case TRANSFER:
+				R5TransferLeg transferLeg = new R5TransferLeg(departureTimes[i], travelTimes[i], distances[i],
+						getDepartureLocation(i), getStopId(departureStops[i]));
+				transferLeg.setArrival(getArrivalLocation(i), getStopId(arrivalStops[i]));
+				legs.add(transferLeg);
+				break;
+			case EGRESS:
+				legs.add(new R5EgressLeg(departureTimes[i], travelTimes[i], distances[i], getDepartureLocation(i),
+						getArrivalLocation(i), getStopId(departureStops[i])));
+				break;
+			}
+		}
+
+		return legs;
+	}
+
+	/**
+	 * Collects the legs of an itinerary
+	 */
+	static public class Builder {
+		final private TransitLayer transitLayer;
+
+		final private double fromLatitude;
+		final private double fromLongitude;
+		final private double toLatitude;
+		final private double toLongitude;
+
+		private int size = 0;
+
+		private byte[] types;
+		private double[] departureTimes;
+		private double[] travelTimes;
+		private double[] distances;
+		private int[] departureStops;
+		private int[] arrivalStops;
+		private int[] patternIds;
+		private int[] timeIds;
+
+		/**
+		 * @param capacity
+		 *            Expected number of legs
+		 */
+		public Builder(TransitLayer transitLayer, double fromLatitude, double fromLongitude, double toLatitude,
+				double toLongitude, int capacity) {
+			this.transitLayer = transitLayer;
+			this.fromLatitude = fromLatitude;
+			this.fromLongitude = fromLongitude;
+			this.toLatitude = toLatitude;
+			this.toLongitude = toLongitude;
+
+			capacity = Math.max(1, capacity);
+			this.types = new byte[capacity];
+			this.departureTimes = new double[capacity];
+			this.travelTimes = new double[capacity];
+			this.distances = new double[capacity];
+			this.departureStops = new int[capacity];
+			this.arrivalStops = new int[capacity];
+			this.patternIds = new int[capacity];
+			this.timeIds = new int[capacity];
+		}
+
+		public Builder addLeg(LegType type, double departureTime, double travelTime, double distance,
+				int departureStop, int arrivalStop, int patternId, int timeId) {
+			if (size == types.length) {
+				int capacity = Math.max(4, 2 * size);
+				types = Arrays.copyOf(types, capacity);
+				departureTimes = Arrays.copyOf(departureTimes, capacity);
+				travelTimes = Arrays.copyOf(travelTimes, capacity);
+				distances = Arrays.copyOf(distances, capacity);
+				departureStops = Arrays.copyOf(departureStops, capacity);
+				arrivalStops = Arrays.copyOf(arrivalStops, capacity);
+				patternIds = Arrays.copyOf(patternIds, capacity);
+				timeIds = Arrays.copyOf(timeIds, capacity);
+			}
+
+			types[size] = (byte) type.ordinal();
+			departureTimes[size] = departureTime;
+			travelTimes[size] = travelTime;
+			distances[size] = distance;
+			departureStops[size] = departureStop;
+			arrivalStops[size] = arrivalStop;
+			patternIds[size] = patternId;
+			timeIds[size] = timeId;
+			size++;
+
+			return this;
+		}
+
+		public Builder addAccessLeg(double departureTime, double travelTime, double distance, int arrivalStop) {
+			return addLeg(LegType.ACCESS, departureTime, travelTime, distance, NO_STOP, arrivalStop, -1, -1);
+		}
+
+		public Builder addTransitLeg(double departureTime, double travelTime, double distance, int departureStop,
+				int arrivalStop, int patternId, int timeId) {
+			return addLeg(LegType.TRANSIT, departureTime, travelTime, distance, departureStop, arrivalStop,
+					patternId, timeId);
+		}
+
+		public Builder addTransferLeg(double departureTime, double travelTime, double distance, int departureStop,
+				int arrivalStop) {
+			return addLeg(LegType.TRANSFER, departureTime, travelTime, distance, departureStop, arrivalStop, -1,
+					-1);
+		}
+
+		public Builder addEgressLeg(double departureTime, double travelTime, double distance, int departureStop) {
+			return addLeg(LegType.EGRESS, departureTime, travelTime, distance, departureStop, NO_STOP, -1, -1);
+		}
+
+		public R5Itinerary build() {
+			if (size == types.length) {
+				return new R5Itinerary(transitLayer, fromLatitude, fromLongitude, toLatitude, toLongitude, types,
+						departureTimes, travelTimes, distances, departureStops, arrivalStops, patternIds, timeIds);
+			}
+
+			return new R5Itinerary(transitLayer, fromLatitude, fromLongitude, toLatitude, toLongitude,
+					Arrays.copyOf(types, size), Arrays.copyOf(departureTimes, size), Arrays.copyOf(travelTimes, size),
+					Arrays.copyOf(distances, size), Arrays.copyOf(departureStops, size),
+					Arrays.copyOf(arrivalStops, size), Arrays.copyOf(patternIds, size), Arrays.copyOf(timeIds, size));
+		}
+	}
+}
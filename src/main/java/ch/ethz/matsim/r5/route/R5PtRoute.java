@@ -0,0 +1,246 @@
+package ch.ethz.matsim.r5.route;
+
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.population.Route;
+import org.matsim.core.utils.misc.Time;
+
+import com.conveyal.r5.transit.TransitLayer;
+
+import ch.ethz.matsim.r5.route.R5Itinerary.LegType;
+
+/**
+ * Compact route of a whole PT trip
+ *
+ * The trip is stored as one leg whose route contains the legs of the R5
+ * itinerary in primitive arrays: the leg types, four indices per leg
+ * (departure stop, arrival stop, pattern, time) and three values per leg
+ * (departure time, travel time, distance). Stop ids, coordinates and the
+ * detailed plan elements are only created on request, see R5TripConverter.
+ *
+ * The route description lists the legs separated by spaces, each given as
+ * "type,departureTime,travelTime,distance,departureStop,arrivalStop,pattern,time"
+ * with the ordinal of the leg type. Stop indices refer to the transit layer of
+ * the network with which the route has been created.
+ */
+public class R5PtRoute implements Route, Cloneable {
+	final static public String ROUTE_TYPE = "r5_pt";
+
+	final static private LegType[] LEG_TYPES = LegType.values();
+	final static private byte[] NO_TYPES = new byte[0];
+	final static private int[] NO_INDICES = new int[0];
+	final static private double[] NO_VALUES = new double[0];
+
+	private Id<Link> startLinkId;
+	private Id<Link> endLinkId;
+
+	private double distance = Double.NaN;
+	private double travelTime = Time.UNDEFINED_TIME;
+
+	private byte[] types = NO_TYPES;
+	private int[] indices = NO_INDICES;
+	private double[] values = NO_VALUES;
+
+	public R5PtRoute(Id<Link> startLinkId, Id<Link> endLinkId) {
+		this.startLinkId = startLinkId;
+		this.endLinkId = endLinkId;
+	}
+
+	/**
+	 * Replaces the legs of the route by the legs of the itinerary. Distance and
+	 * travel time are set to the totals of the itinerary.
+	 */
+	public void setItinerary(R5Itinerary itinerary) {
+		int numberOfLegs = itinerary.size();
+
+		types = new byte[numberOfLegs];
+		indices = new int[4 * numberOfLegs];
+		values = new double[3 * numberOfLegs];
+
+		double totalDistance = 0.0;
+
+		for (int i = 0; i < numberOfLegs; i++) {
+			types[i] = (byte) itinerary.getType(i).ordinal();
+
+			indices[4 * i] = itinerary.getDepartureStop(i);
+			indices[4 * i + 1] = itinerary.getArrivalStop(i);
+			indices[4 * i + 2] = itinerary.getPatternId(i);
+			indices[4 * i + 3] = itinerary.getTimeId(i);
+
+			values[3 * i] = itinerary.getDepartureTime(i);
+			values[3 * i + 1] = itinerary.getTravelTime(i);
+			values[3 * i + 2] = itinerary.getDistance(i);
+
+			totalDistance += itinerary.getDistance(i);
+		}
+
+		distance = totalDistance;
+		travelTime = numberOfLegs > 0 ? itinerary.getArrivalTime(numberOfLegs - 1) - itinerary.getDepartureTime(0)
+				: 0.0;
+	}
+
+	/**
+	 * Recreates the itinerary of the route. Origin and destination are not stored
+	 * in the route and are therefore unknown.
+	 */
+	public R5Itinerary getItinerary(TransitLayer transitLayer) {
+		R5Itinerary.Builder builder = new R5Itinerary.Builder(transitLayer, Double.NaN, Double.NaN, Double.NaN,
+				Double.NaN, types.length);
+
+		for (int i = 0; i < types.length; i++) {
+			builder.addLeg(LEG_TYPES[types[i]], values[3 * i], values[3 * i + 1], values[3 * i + 2], indices[4 * i],
+					indices[4 * i + 1], indices[4 * i + 2], indices[4 * i + 3]);
+		}
+
+		return builder.build();
+	}
+
+	public int getNumberOfLegs() {
+		return types.length;
+	}
+
+	@Override
+	public double getDistance() {
+		return distance;
+	}
+
+	@Override
+	public void setDistance(double distance) {
+		this.distance = distance;
+	}
+
+	@Override
+	public double getTravelTime() {
+		return travelTime;
+	}
+
+	@Override
+	public void setTravelTime(double travelTime) {
+		this.travelTime = travelTime;
+	}
+
+	@Override
+	public Id<Link> getStartLinkId() {
+		return startLinkId;
+	}
+
+	@Override
+	public Id<Link> getEndLinkId() {
+		return endLinkId;
+	}
+
+	@Override
+	public void setStartLinkId(Id<Link> startLinkId) {
+		this.startLinkId = startLinkId;
+	}
+
+	@Override
+	public void setEndLinkId(Id<Link> endLinkId) {
+		this.endLinkId = endLinkId;
+	}
+
+	@Override
+	public String getRouteDescription() {
+		StringBuilder builder = new StringBuilder(40 * types.length);
+
+		for (int i = 0; i < types.length; i++) {
+			if (i > 0) {
+				builder.append(' ');
+			}
+
+			builder.append(types[i]);
+
+			for (int k = 0; k < 3; k++) {
+				builder.append(',');
+				appendValue(builder, values[3 * i + k]);
+			}
+
+			for (int k = 0; k < 4; k++) {
+				builder.append(',').append(indices[4 * i + k]);
+			}
+		}
+
+		return builder.toString();
+	}
+
+	static private void appendValue(StringBuilder builder, double value) {
+		if (value == Math.rint(value) && Math.abs(value) < Long.MAX_VALUE) {
+			builder.append((long) value);
+		} else {
+			builder.append(value);
+		}
+	}
+
+	@Override
+	public void setRouteDescription(String routeDescription) {
+		String trimmed = routeDescription == null ? "" : routeDescription.trim();
+
+		if (trimmed.isEmpty()) {
+			types = NO_TYPES;
+			indices = NO_INDICES;
+			values = NO_VALUES;
+			return;
+		}
+
+		String[] legs = trimmed.split("\\s+");
+
+		byte[] parsedTypes = new byte[legs.length];
+		int[] parsedIndices = new int[4 * legs.length];
+		double[] parsedValues = new double[3 * legs.length];
+
+		for (int i = 0; i < legs.length; i++) {
+			String[] parts = legs[i].split(",");
+
+			if (parts.length != 8) {
+				throw new IllegalStateException("Invalid R5 PT route description: " + routeDescription);
+			}
+
+			try {
+				int type = Integer.parseInt(parts[0]);
+
+				if (type < 0 || type >= LEG_TYPES.length) {
+					throw new IllegalStateException("Unknown leg type in R5 PT route description: " + type);
+				}
+
+				parsedTypes[i] = (byte) type;
+
+				for (int k = 0; k < 3; k++) {
+					parsedValues[3 * i + k] = Double.parseDouble(parts[1 + k]);
+				}
+
+				for (int k = 0; k < 4; k++) {
+					parsedIndices[4 * i + k] = Integer.parseInt(parts[4 + k]);
+				}
+			} catch (NumberFormatException e) {
+				throw new IllegalStateException("Invalid R5 PT route description: " + routeDescription, e);
+			}
+		}
+
+		types = parsedTypes;
+		indices = parsedIndices;
+		values = parsedValues;
+	}
+
+	@Override
+	public String getRouteType() {
+		return ROUTE_TYPE;
+	}
+
+	/**
+	 * The leg arrays are never modified in place, so they are shared with the
+	 * copy
+	 */
+	@Override
+	public R5PtRoute clone() {
+		try {
+			return (R5PtRoute) super.clone();
+		} catch (CloneNotSupportedException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "[R5PtRoute: " + startLinkId + " -> " + endLinkId + ", legs: " + types.length + "]";
+	}
+}
@@ -0,0 +1,28 @@
+package ch.ethz.matsim.r5.route;
+
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.population.Route;
+import org.matsim.core.population.routes.RouteFactory;
+
+/**
+ * Creates R5PtRoutes, e.g. when reading plans
+ *
+ * The factory needs to be registered before the population is read:
+ *
+ * <pre>
+ * scenario.getPopulation().getFactory().getRouteFactories().setRouteFactory(R5PtRoute.class,
+ * 		new R5PtRouteFactory());
+ * </pre>
+ */
+public class R5PtRouteFactory implements RouteFactory {
+	@Override
+	public Route createRoute(Id<Link> startLinkId, Id<Link> endLinkId) {
+		return new R5PtRoute(startLinkId, endLinkId);
+	}
+
+	@Override
+	public String getCreatedRouteType() {
+		return R5PtRoute.ROUTE_TYPE;
+	}
+}
@@ -0,0 +1,163 @@
+package ch.ethz.matsim.r5.route;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.population.Activity;
+import org.matsim.api.core.v01.population.Leg;
+import org.matsim.api.core.v01.population.Plan;
+import org.matsim.api.core.v01.population.PlanElement;
+import org.matsim.api.core.v01.population.Route;
+import org.matsim.core.population.PopulationUtils;
+import org.matsim.core.population.routes.GenericRouteFactory;
+import org.matsim.core.utils.misc.Time;
+
+import com.conveyal.r5.transit.TransitLayer;
+
+import ch.ethz.matsim.r5.route.R5Itinerary.LegType;
+import ch.ethz.matsim.r5.utils.spatial.LatLonToCoordTransformation;
+
+/**
+ * Converts R5 itineraries into MATSim plan elements
+ *
+ * An itinerary is either converted into the detailed form with one leg per
+ * access, transit, transfer and egress leg and "pt interaction" activities in
+ * between, or into a single "pt" leg with an R5PtRoute. The compact form can
+ * be expanded into the detailed form at any time.
+ */
+public class R5TripConverter {
+	final private LinkFinder linkFinder;
+	final private LatLonToCoordTransformation latLonToCoord;
+	final private GenericRouteFactory routeFactory = new GenericRouteFactory();
+
+	public R5TripConverter(LinkFinder linkFinder, LatLonToCoordTransformation latLonToCoord) {
+		this.linkFinder = linkFinder;
+		this.latLonToCoord = latLonToCoord;
+	}
+
+	private Id<Link> getStartLinkId(R5Itinerary itinerary, int index, Id<Link> fromLinkId) {
+		if (itinerary.getType(index) == LegType.ACCESS) {
+			return fromLinkId;
+		}
+
+		return linkFinder.findLink(itinerary.getDepartureStop(index), itinerary.getTransitLayer());
+	}
+
+	private Id<Link> getEndLinkId(R5Itinerary itinerary, int index, Id<Link> toLinkId) {
+		if (itinerary.getType(index) == LegType.EGRESS) {
+			return toLinkId;
+		}
+
+		return linkFinder.findLink(itinerary.getArrivalStop(index), itinerary.getTransitLayer());
+	}
+
+	/**
+	 * Creates one leg per leg of the itinerary with "pt interaction" activities
+	 * in between
+	 */
+	public List<PlanElement> createPlanElements(R5Itinerary itinerary, Id<Link> fromLinkId, Id<Link> toLinkId) {
+		List<PlanElement> matsimPlan = new ArrayList<>(2 * itinerary.size() - 1);
+
+		Activity previousActivity = null;
+
+		for (int i = 0; i < itinerary.size(); i++) {
+			double legDepartureTime = itinerary.getDepartureTime(i);
+			double legArrivalTime = itinerary.getArrivalTime(i);
+
+			Leg matsimLeg = PopulationUtils.createLeg(itinerary.isWalk(i) ? "transit_walk" : "pt");
+			matsimLeg.setDepartureTime(legDepartureTime);
+			matsimLeg.setTravelTime(legArrivalTime - legDepartureTime);
+
+			Id<Link> startLinkId = getStartLinkId(itinerary, i, fromLinkId);
+			Id<Link> endLinkId = getEndLinkId(itinerary, i, toLinkId);
+
+			Route matsimRoute = routeFactory.createRoute(startLinkId, endLinkId);
+			matsimRoute.setDistance(itinerary.getDistance(i));
+			matsimRoute.setTravelTime(legArrivalTime - legDepartureTime);
+
+			matsimLeg.setRoute(matsimRoute);
+			matsimPlan.add(matsimLeg);
+
+			if (previousActivity != null) {
+				previousActivity.setLinkId(startLinkId);
+				previousActivity.setEndTime(legDepartureTime);
+			}
+
+			if (i < itinerary.size() - 1) {
+				Activity activity = PopulationUtils.createActivityFromCoord("pt interaction",
+						latLonToCoord.transform(itinerary.getArrivalLocation(i)));
+				activity.setStartTime(legArrivalTime);
+				matsimPlan.add(activity);
+				previousActivity = activity;
+			}
+		}
+
+		for (PlanElement element : matsimPlan) {
+			if (element instanceof Activity) {
+				Activity activity = (Activity) element;
+				activity.setMaximumDuration(Math.max(0, activity.getEndTime() - activity.getStartTime()));
+				activity.setEndTime(Time.UNDEFINED_TIME);
+			}
+		}
+
+		return matsimPlan;
+	}
+
+	/**
+	 * Creates a single "pt" leg with an R5PtRoute. Walking and waiting times
+	 * are part of the travel time of the leg.
+	 */
+	public Leg createCompactLeg(R5Itinerary itinerary, Id<Link> fromLinkId, Id<Link> toLinkId) {
+		R5PtRoute route = new R5PtRoute(fromLinkId, toLinkId);
+		route.setItinerary(itinerary);
+
+		Leg matsimLeg = PopulationUtils.createLeg("pt");
+		matsimLeg.setDepartureTime(itinerary.getDepartureTime(0));
+		matsimLeg.setTravelTime(route.getTravelTime());
+		matsimLeg.setRoute(route);
+
+		return matsimLeg;
+	}
+
+	/**
+	 * Expands a leg with an R5PtRoute into the detailed form. Other legs are
+	 * returned as they are.
+	 *
+	 * @param transitLayer
+	 *            The transit layer with which the route has been created
+	 */
+	public List<PlanElement> expand(Leg leg, TransitLayer transitLayer) {
+		if (!(leg.getRoute() instanceof R5PtRoute)) {
+			return Collections.singletonList(leg);
+		}
+
+		R5PtRoute route = (R5PtRoute) leg.getRoute();
+
+		if (route.getNumberOfLegs() == 0) {
+			return Collections.singletonList(leg);
+		}
+
+		return createPlanElements(route.getItinerary(transitLayer), route.getStartLinkId(), route.getEndLinkId());
+	}
+
+	/**
+	 * Replaces all legs with an R5PtRoute in the plan by their detailed form
+	 */
+	public void expand(Plan plan, TransitLayer transitLayer) {
+		List<PlanElement> elements = new ArrayList<>(plan.getPlanElements().size());
+
+		for (PlanElement element : plan.getPlanElements()) {
+			if (element instanceof Leg) {
+				elements.addAll(expand((Leg) element, transitLayer));
+			} else {
+				elements.add(element);
+			}
+		}
+
+		plan.getPlanElements().clear();
+		plan.getPlanElements().addAll(elements);
+	}
+}
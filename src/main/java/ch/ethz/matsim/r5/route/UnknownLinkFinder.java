@@ -3,9 +3,16 @@ package ch.ethz.matsim.r5.route;
 import org.matsim.api.core.v01.Id;
 import org.matsim.api.core.v01.network.Link;
 
+import com.conveyal.r5.transit.TransitLayer;
+
 public class UnknownLinkFinder implements LinkFinder {
 	@Override
 	public Id<Link> findLink(String stopId) {
 		return Id.createLinkId("unknown");
 	}
+
+	@Override
+	public Id<Link> findLink(int stopIndex, TransitLayer transitLayer) {
+		return Id.createLinkId("unknown");
+	}
 }
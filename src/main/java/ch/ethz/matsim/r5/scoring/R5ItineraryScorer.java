@@ -14,4 +14,16 @@ public interface R5ItineraryScorer {
 	 * @param itinerary from R5
 	 */
 	double scoreItinerary(Itinerary itinerary, double departureTime);
+
+	/**
+	 * Returns the score of a route for which start and end time have already been
+	 * resolved by the router
+	 * 
+	 * @param itinerary from R5
+	 * @param startTime in seconds, not before departureTime
+	 * @param endTime in seconds, not before startTime
+	 */
+	default double scoreItinerary(Itinerary itinerary, double startTime, double endTime, double departureTime) {
+		return scoreItinerary(itinerary, departureTime);
+	}
 }
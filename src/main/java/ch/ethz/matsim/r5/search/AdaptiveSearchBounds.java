@@ -0,0 +1,112 @@
+package ch.ethz.matsim.r5.search;
+
+import com.conveyal.r5.profile.ProfileRequest;
+
+import ch.ethz.matsim.r5.utils.ServiceDay;
+import ch.ethz.matsim.r5.utils.spatial.LatLon;
+import ch.ethz.matsim.r5.utils.spatial.SpatialQuantizer;
+
+/**
+ * Bounds the R5 search according to the crowfly distance of a request
+ *
+ * <ul>
+ * <li>Trip duration: a base duration plus the time needed to cover the
+ * distance at a minimum speed, extended outside of the peak service hours
+ * where waiting times are longer
+ * <li>Walk time: half of the maximum walk time plus one minute per kilometer,
+ * at most the maximum walk time
+ * <li>Rides: two plus one per 10 km, at most the maximum number of rides
+ * <li>Options: one plus one per 5 km, at most the maximum number of options
+ * </ul>
+ *
+ * The bounds never exceed the defaults of R5, so a short urban trip is
+ * searched in a much smaller space than a long distance trip.
+ */
+public class AdaptiveSearchBounds {
+	final static private double SERVICE_START = 6.0 * 3600.0;
+	final static private double SERVICE_END = 20.0 * 3600.0;
+
+	final static private double RIDE_DISTANCE = 10000.0;
+	final static private double OPTION_DISTANCE = 5000.0;
+
+	final private double baseDuration;
+	final private double minimumSpeed;
+	final private double offPeakDuration;
+	final private int maximumWalkTime;
+	final private int maximumRides;
+	final private int maximumOptions;
+
+	final private ProfileRequest defaultRequest = new ProfileRequest();
+
+	/**
+	 * @param baseDuration
+	 *            Trip duration in minutes that is allowed for all requests
+	 * @param minimumSpeed
+	 *            Speed in km/h with which the crowfly distance must be covered
+	 * @param offPeakDuration
+	 *            Additional trip duration in minutes outside of 06:00 to 20:00
+	 * @param maximumWalkTime
+	 *            Maximum access and egress walk time in minutes
+	 * @param maximumRides
+	 *            Maximum number of transit rides
+	 * @param maximumOptions
+	 *            Maximum number of options that are returned by R5
+	 */
+	public AdaptiveSearchBounds(double baseDuration, double minimumSpeed, double offPeakDuration,
+			int maximumWalkTime, int maximumRides, int maximumOptions) {
+		this.baseDuration = baseDuration;
+		this.minimumSpeed = minimumSpeed;
+		this.offPeakDuration = offPeakDuration;
+		this.maximumWalkTime = Math.min(maximumWalkTime, defaultRequest.maxWalkTime);
+		this.maximumRides = Math.min(maximumRides, defaultRequest.maxRides);
+		this.maximumOptions = maximumOptions;
+	}
+
+	/**
+	 * Returns an approximation of the crowfly distance in meters, which is
+	 * accurate enough for the distances of a study area
+	 */
+	static public double getCrowflyDistance(LatLon fromLocation, LatLon toLocation) {
+		double latitudeDistance = toLocation.getLatitude() - fromLocation.getLatitude();
+		double longitudeDistance = (toLocation.getLongitude() - fromLocation.getLongitude())
+				* Math.cos(Math.toRadians(0.5 * (fromLocation.getLatitude() + toLocation.getLatitude())));
+
+		return SpatialQuantizer.METERS_PER_DEGREE
+				* Math.sqrt(latitudeDistance * latitudeDistance + longitudeDistance * longitudeDistance);
+	}
+
+	/**
+	 * Sets the bounds of a profile request
+	 *
+	 * @param departureTime
+	 *            in seconds
+	 */
+	public void apply(ProfileRequest profileRequest, LatLon fromLocation, LatLon toLocation, double departureTime) {
+		double distance = getCrowflyDistance(fromLocation, toLocation);
+		double departureOffset = ServiceDay.normalizeDepartureTime(departureTime);
+
+		double tripDuration = baseDuration + (distance / 1000.0) / minimumSpeed * 60.0;
+
+		if (departureOffset < SERVICE_START || departureOffset >= SERVICE_END) {
+			tripDuration += offPeakDuration;
+		}
+
+		profileRequest.maxTripDurationMinutes = (int) Math.min(Math.ceil(tripDuration),
+				defaultRequest.maxTripDurationMinutes);
+
+		int walkTime = maximumWalkTime / 2 + (int) Math.ceil(distance / 1000.0);
+		profileRequest.maxWalkTime = Math.max(1, Math.min(walkTime, maximumWalkTime));
+
+		int rides = 2 + (int) (distance / RIDE_DISTANCE);
+		profileRequest.maxRides = Math.max(1, Math.min(rides, maximumRides));
+
+		int options = 1 + (int) (distance / OPTION_DISTANCE);
+		profileRequest.limit = Math.max(1, Math.min(options, maximumOptions));
+	}
+
+	@Override
+	public String toString() {
+		return String.format("Adaptive(%s, %s, %s, %d, %d, %d)", baseDuration, minimumSpeed, offPeakDuration,
+				maximumWalkTime, maximumRides, maximumOptions);
+	}
+}
@@ -0,0 +1,223 @@
+package ch.ethz.matsim.r5.search;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.stream.IntStream;
+
+import com.conveyal.r5.streets.StreetLayer;
+import com.conveyal.r5.transit.TransitLayer;
+import com.vividsolutions.jts.geom.Coordinate;
+
+import ch.ethz.matsim.r5.utils.spatial.LatLon;
+import ch.ethz.matsim.r5.utils.spatial.SpatialQuantizer;
+
+/**
+ * Grid over the extent of the transit layer that marks the cells from which a
+ * stop may be reachable by walking
+ *
+ * A cell is covered if its center is within the access radius plus half of
+ * the cell diagonal of any stop. The access radius is extended by the distance
+ * within which R5 snaps locations to the street network, since walking only
+ * starts at the snapped location. Walking distances on the street network are
+ * never shorter than crowfly distances, so a location in an uncovered cell
+ * cannot reach any stop and R5 does not need to be queried. Locations outside
+ * of the extent are never covered. The cells are stored as one bit each.
+ *
+ * Cells span a fixed longitude range, so their width in meters depends on the
+ * latitude. Distances are computed per row with the scale that makes them
+ * shortest, so that coverage is never underestimated.
+ */
+public class StopCoverageGrid {
+	final private double minimumLatitude;
+	final private double minimumLongitude;
+	final private double latitudeCellSize;
+	final private double longitudeCellSize;
+
+	final private int numberOfRows;
+	final private int numberOfColumns;
+
+	final private AtomicLongArray bits;
+
+	private long numberOfCoveredCells = 0;
+
+	/**
+	 * @param radius
+	 *            Access radius in meters
+	 * @param resolution
+	 *            Approximate cell size in meters
+	 */
+	public StopCoverageGrid(TransitLayer transitLayer, double radius, double resolution) {
+		if (resolution <= 0.0) {
+			throw new IllegalStateException("Resolution of the stop coverage grid must be positive");
+		}
+
+		int numberOfStops = transitLayer.getStopCount();
+		double[] latitudes = new double[numberOfStops];
+		double[] longitudes = new double[numberOfStops];
+
+		double minimumLatitude = Double.POSITIVE_INFINITY;
+		double maximumLatitude = Double.NEGATIVE_INFINITY;
+		double minimumLongitude = Double.POSITIVE_INFINITY;
+		double maximumLongitude = Double.NEGATIVE_INFINITY;
+
+		for (int stopIndex = 0; stopIndex < numberOfStops; stopIndex++) {
+			Coordinate coordinate = transitLayer.getCoordinateForStopFixed(stopIndex);
+
+			if (coordinate == null) {
+				// Stops without a location on the street layer cannot be reached by walking
+				latitudes[stopIndex] = Double.NaN;
+				continue;
+			}
+
+			latitudes[stopIndex] = coordinate.y;
+			longitudes[stopIndex] = coordinate.x;
+
+			minimumLatitude = Math.min(minimumLatitude, coordinate.y);
+			maximumLatitude = Math.max(maximumLatitude, coordinate.y);
+			minimumLongitude = Math.min(minimumLongitude, coordinate.x);
+			maximumLongitude = Math.max(maximumLongitude, coordinate.x);
+		}
+
+		if (minimumLatitude > maximumLatitude) {
+			// No stop has a location, nothing is covered
+			minimumLatitude = maximumLatitude = transitLayer.centerLat;
+			minimumLongitude = maximumLongitude = transitLayer.centerLon;
+		}
+
+		double coverageRadius = radius + StreetLayer.LINK_RADIUS_METERS;
+
+		double centerLatitude = 0.5 * (minimumLatitude + maximumLatitude);
+		double longitudeScale = getLongitudeScale(centerLatitude);
+
+		this.latitudeCellSize = resolution / SpatialQuantizer.METERS_PER_DEGREE;
+		this.longitudeCellSize = latitudeCellSize / longitudeScale;
+
+		double latitudeRadius = coverageRadius / SpatialQuantizer.METERS_PER_DEGREE;
+
+		// Degrees of longitude are shortest on the side of the grid farthest from the
+		// equator, so the radius covers the most longitude there
+		double minimumLongitudeScale = Math.min(getLongitudeScale(minimumLatitude - latitudeRadius),
+				getLongitudeScale(maximumLatitude + latitudeRadius));
+		double longitudeRadius = latitudeRadius / minimumLongitudeScale;
+
+		this.minimumLatitude = minimumLatitude - latitudeRadius;
+		this.minimumLongitude = minimumLongitude - longitudeRadius;
+
+		this.numberOfRows = (int) Math.ceil((maximumLatitude + latitudeRadius - this.minimumLatitude) / latitudeCellSize)
+				+ 1;
+		this.numberOfColumns = (int) Math
+				.ceil((maximumLongitude + longitudeRadius - this.minimumLongitude) / longitudeCellSize) + 1;
+
+		long numberOfCells = (long) numberOfRows * numberOfColumns;
+
+		if (numberOfCells > (long) Integer.MAX_VALUE * 64) {
+			throw new IllegalStateException("Stop coverage grid is too large, use a coarser resolution");
+		}
+
+		this.bits = new AtomicLongArray((int) ((numberOfCells + 63) / 64));
+
+		double halfCellHeight = 0.5 * resolution;
+		double maximumHalfCellWidth = 0.5 * longitudeCellSize * SpatialQuantizer.METERS_PER_DEGREE
+				* getMaximumLongitudeScale(this.minimumLatitude,
+						this.minimumLatitude + numberOfRows * latitudeCellSize);
+		int rowRange = (int) Math
+				.ceil((coverageRadius + Math.hypot(halfCellHeight, maximumHalfCellWidth)) / resolution);
+
+		IntStream.range(0, numberOfStops).parallel().filter(stopIndex -> !Double.isNaN(latitudes[stopIndex]))
+				.forEach(stopIndex -> {
+					int stopRow = getRow(latitudes[stopIndex]);
+					int stopColumn = getColumn(longitudes[stopIndex]);
+
+					for (int row = Math.max(0, stopRow - rowRange); row <= Math.min(numberOfRows - 1,
+							stopRow + rowRange); row++) {
+						double rowLatitude = this.minimumLatitude + (row + 0.5) * latitudeCellSize;
+						double latitudeDistance = (rowLatitude - latitudes[stopIndex])
+								* SpatialQuantizer.METERS_PER_DEGREE;
+
+						// Cells are widest at the row edge nearest to the equator
+						double halfCellWidth = 0.5 * longitudeCellSize * SpatialQuantizer.METERS_PER_DEGREE
+								* getMaximumLongitudeScale(rowLatitude - 0.5 * latitudeCellSize,
+										rowLatitude + 0.5 * latitudeCellSize);
+						double rowRadius = coverageRadius + Math.hypot(halfCellHeight, halfCellWidth);
+
+						// Longitude distances are shortest at the latitude farthest from the equator
+						double rowScale = Math.min(getLongitudeScale(rowLatitude),
+								getLongitudeScale(latitudes[stopIndex]));
+						int columnRange = (int) Math.ceil(
+								rowRadius / (longitudeCellSize * SpatialQuantizer.METERS_PER_DEGREE * rowScale));
+
+						for (int column = Math.max(0, stopColumn - columnRange); column <= Math
+								.min(numberOfColumns - 1, stopColumn + columnRange); column++) {
+							double longitudeDistance = (this.minimumLongitude + (column + 0.5) * longitudeCellSize
+									- longitudes[stopIndex]) * SpatialQuantizer.METERS_PER_DEGREE * rowScale;
+
+							if (latitudeDistance * latitudeDistance
+									+ longitudeDistance * longitudeDistance <= rowRadius * rowRadius) {
+								setCovered((long) row * numberOfColumns + column);
+							}
+						}
+					}
+				});
+
+		for (int i = 0; i < bits.length(); i++) {
+			numberOfCoveredCells += Long.bitCount(bits.get(i));
+		}
+	}
+
+	static private double getLongitudeScale(double latitude) {
+		return Math.max(1e-6, Math.cos(Math.toRadians(latitude)));
+	}
+
+	/**
+	 * Returns the longitude scale at the latitude of the range that is nearest
+	 * to the equator
+	 */
+	static private double getMaximumLongitudeScale(double minimumLatitude, double maximumLatitude) {
+		if (minimumLatitude <= 0.0 && maximumLatitude >= 0.0) {
+			return 1.0;
+		}
+
+		return Math.max(getLongitudeScale(minimumLatitude), getLongitudeScale(maximumLatitude));
+	}
+
+	private int getRow(double latitude) {
+		return (int) Math.floor((latitude - minimumLatitude) / latitudeCellSize);
+	}
+
+	private int getColumn(double longitude) {
+		return (int) Math.floor((longitude - minimumLongitude) / longitudeCellSize);
+	}
+
+	private void setCovered(long cell) {
+		long mask = 1L << (cell & 63);
+		bits.accumulateAndGet((int) (cell >>> 6), mask, (value, update) -> value | update);
+	}
+
+	/**
+	 * Returns whether a stop may be reachable by walking from the location
+	 */
+	public boolean isCovered(LatLon location) {
+		int row = getRow(location.getLatitude());
+		int column = getColumn(location.getLongitude());
+
+		if (row < 0 || row >= numberOfRows || column < 0 || column >= numberOfColumns) {
+			return false;
+		}
+
+		long cell = (long) row * numberOfColumns + column;
+		return (bits.get((int) (cell >>> 6)) & (1L << (cell & 63))) != 0;
+	}
+
+	public long getNumberOfCells() {
+		return (long) numberOfRows * numberOfColumns;
+	}
+
+	public long getNumberOfCoveredCells() {
+		return numberOfCoveredCells;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("Cells: %d x %d, Covered: %d (%.2f%%)", numberOfRows, numberOfColumns,
+				numberOfCoveredCells, 100.0 * numberOfCoveredCells / getNumberOfCells());
+	}
+}
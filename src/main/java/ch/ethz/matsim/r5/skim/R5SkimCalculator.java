@@ -0,0 +1,306 @@
+package ch.ethz.matsim.r5.skim;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import com.conveyal.r5.api.util.Stop;
+import com.conveyal.r5.profile.ProfileRequest;
+import com.conveyal.r5.transit.TransitLayer;
+import com.conveyal.r5.transit.TransportNetwork;
+import com.conveyal.r5.transit.TripPattern;
+import com.conveyal.r5.transit.TripSchedule;
+
+import ch.ethz.matsim.r5.cache.R5AccessCache;
+import ch.ethz.matsim.r5.cache.R5AccessCache.AccessStops;
+import ch.ethz.matsim.r5.distance.DistanceEstimator;
+import ch.ethz.matsim.r5.distance.PatternShapeDistanceEstimator;
+import ch.ethz.matsim.r5.matsim.R5Module;
+import ch.ethz.matsim.r5.skim.R5SkimRaptor.Trip;
+import ch.ethz.matsim.r5.utils.ServiceDay;
+
+/**
+ * Calculates zone-to-zone PT skims
+ *
+ * For every point of an origin zone and every departure time, one one-to-many
+ * search is run, which yields the connections to all points of all
+ * destination zones at once. Origin zones are processed in parallel. The
+ * values of a relation are averaged over all combinations of origin points,
+ * destination points and departure times for which a connection is found.
+ * Only connections with at least one transit ride are considered.
+ *
+ * Trips of the service day and of the following day are used, as in the
+ * R5ServiceDaySlicer. In-vehicle distances are measured along the patterns with
+ * the DistanceEstimator of the router: the cumulative distances of the
+ * PatternShapeDistanceEstimator are used directly, other estimators are
+ * summed up between consecutive stops.
+ *
+ * Frequency-based trips are not taken into account.
+ */
+public class R5SkimCalculator {
+	final private TransitLayer transitLayer;
+	final private ServiceDay serviceDay;
+	final private R5AccessCache accessCache;
+	final private int numberOfThreads;
+
+	final private Trip[][] activeTrips;
+	final private boolean[] orderedPatterns;
+	final private double[][] cumulativeDistances;
+	final private double walkSpeed;
+
+	private int maximumRides = 8;
+	private double maximumTravelTime = 3.0 * 3600.0;
+
+	public R5SkimCalculator(TransportNetwork transportNetwork, ServiceDay serviceDay,
+			DistanceEstimator distanceEstimator, int numberOfThreads) {
+		this.transitLayer = transportNetwork.transitLayer;
+		this.serviceDay = serviceDay;
+		this.numberOfThreads = numberOfThreads;
+
+		// Walk searches from every point, locations are not quantized
+		this.accessCache = new R5AccessCache(transportNetwork, Integer.MAX_VALUE, 0.0);
+		this.walkSpeed = new ProfileRequest().walkSpeed;
+
+		BitSet activeServices = transitLayer.getActiveServicesForDate(serviceDay.getDate());
+		BitSet nextActiveServices = transitLayer.getActiveServicesForDate(serviceDay.getNextDate());
+		int dayOffset = (int) ServiceDay.SECONDS_PER_DAY;
+
+		int numberOfPatterns = transitLayer.tripPatterns.size();
+		this.activeTrips = new Trip[numberOfPatterns][];
+		this.orderedPatterns = new boolean[numberOfPatterns];
+		this.cumulativeDistances = new double[numberOfPatterns][];
+
+		IntStream.range(0, numberOfPatterns).parallel().forEach(patternIndex -> {
+			TripPattern pattern = transitLayer.tripPatterns.get(patternIndex);
+			List<Trip> trips = new ArrayList<>();
+
+			for (TripSchedule trip : pattern.tripSchedules) {
+				if (trip.headwaySeconds == null) {
+					if (activeServices.get(trip.serviceCode)) {
+						trips.add(new Trip(trip.arrivals, trip.departures));
+					}
+
+					// Trips after midnight are searched on the following day
+					if (nextActiveServices.get(trip.serviceCode)) {
+						trips.add(new Trip(shift(trip.arrivals, dayOffset), shift(trip.departures, dayOffset)));
+					}
+				}
+			}
+
+			trips.sort(Comparator.comparingInt(trip -> trip.departures[0]));
+			activeTrips[patternIndex] = trips.toArray(new Trip[trips.size()]);
+			orderedPatterns[patternIndex] = R5SkimRaptor.isOrdered(activeTrips[patternIndex]);
+			cumulativeDistances[patternIndex] = computeCumulativeDistances(distanceEstimator, patternIndex);
+		});
+	}
+
+	static private int[] shift(int[] times, int offset) {
+		int[] shiftedTimes = new int[times.length];
+
+		for (int i = 0; i < times.length; i++) {
+			shiftedTimes[i] = times[i] + offset;
+		}
+
+		return shiftedTimes;
+	}
+
+	private double[] computeCumulativeDistances(DistanceEstimator distanceEstimator, int patternIndex) {
+		if (distanceEstimator instanceof PatternShapeDistanceEstimator) {
+			return ((PatternShapeDistanceEstimator) distanceEstimator).getCumulativeDistances(patternIndex);
+		}
+
+		TripPattern pattern = transitLayer.tripPatterns.get(patternIndex);
+		double[] distances = new double[pattern.stops.length];
+
+		for (int i = 1; i < pattern.stops.length; i++) {
+			double distance = distanceEstimator.getDistance(new Stop(pattern.stops[i - 1], transitLayer),
+					new Stop(pattern.stops[i], transitLayer), pattern.routeIndex);
+
+			// Stops without a known location do not contribute to the distance
+			distances[i] = distances[i - 1] + (Double.isNaN(distance) ? 0.0 : distance);
+		}
+
+		return distances;
+	}
+
+	/**
+	 * Sets the maximum number of vehicles per connection (default 8)
+	 */
+	public void setMaximumRides(int maximumRides) {
+		this.maximumRides = maximumRides;
+	}
+
+	/**
+	 * Sets the maximum travel time in seconds (default 3h)
+	 */
+	public void setMaximumTravelTime(double maximumTravelTime) {
+		this.maximumTravelTime = maximumTravelTime;
+	}
+
+	/**
+	 * @param departureTimes
+	 *            in seconds of the service day
+	 */
+	public R5SkimMatrix calculate(List<SkimZone> zones, List<Double> departureTimes) throws InterruptedException {
+		List<String> zoneIds = new ArrayList<>(zones.size());
+
+		for (SkimZone zone : zones) {
+			zoneIds.add(zone.getId());
+		}
+
+		R5SkimMatrix matrix = new R5SkimMatrix(zoneIds);
+		ExecutorService executor = Executors.newFixedThreadPool(numberOfThreads);
+
+		try {
+			R5Module.logger.info("Searching stops around zone points ...");
+			AccessStops[][] zoneStops = findZoneStops(zones, executor);
+
+			R5Module.logger.info(String.format("Calculating skims for %d zones and %d departure times ...",
+					zones.size(), departureTimes.size()));
+
+			ThreadLocal<R5SkimRaptor> raptors = ThreadLocal
+					.withInitial(() -> new R5SkimRaptor(transitLayer, activeTrips, orderedPatterns,
+							cumulativeDistances, walkSpeed));
+			AtomicInteger numberOfProcessedZones = new AtomicInteger(0);
+			List<Future<?>> futures = new ArrayList<>(zones.size());
+
+			for (int originIndex = 0; originIndex < zones.size(); originIndex++) {
+				int finalOriginIndex = originIndex;
+
+				futures.add(executor.submit(() -> {
+					calculateOrigin(raptors.get(), finalOriginIndex, zoneStops, departureTimes, matrix);
+
+					int processed = numberOfProcessedZones.incrementAndGet();
+
+					if (processed % 100 == 0 || processed == zones.size()) {
+						R5Module.logger.info(String.format("Calculated skims for %d/%d zones", processed,
+								zones.size()));
+					}
+				}));
+			}
+
+			waitFor(futures);
+		} finally {
+			executor.shutdownNow();
+		}
+
+		return matrix;
+	}
+
+	private AccessStops[][] findZoneStops(List<SkimZone> zones, ExecutorService executor)
+			throws InterruptedException {
+		AccessStops[][] zoneStops = new AccessStops[zones.size()][];
+		List<Future<?>> futures = new ArrayList<>(zones.size());
+
+		for (int zoneIndex = 0; zoneIndex < zones.size(); zoneIndex++) {
+			int finalZoneIndex = zoneIndex;
+
+			futures.add(executor.submit(() -> {
+				SkimZone zone = zones.get(finalZoneIndex);
+				zoneStops[finalZoneIndex] = new AccessStops[zone.getPoints().size()];
+
+				for (int k = 0; k < zone.getPoints().size(); k++) {
+					zoneStops[finalZoneIndex][k] = accessCache.getAccessStops(zone.getPoints().get(k));
+				}
+			}));
+		}
+
+		waitFor(futures);
+		return zoneStops;
+	}
+
+	static private void waitFor(List<Future<?>> futures) throws InterruptedException {
+		try {
+			for (Future<?> future : futures) {
+				future.get();
+			}
+		} catch (ExecutionException e) {
+			throw new RuntimeException("Error while calculating skims", e.getCause());
+		}
+	}
+
+	private void calculateOrigin(R5SkimRaptor raptor, int originIndex, AccessStops[][] zoneStops,
+			List<Double> departureTimes, R5SkimMatrix matrix) {
+		int numberOfZones = zoneStops.length;
+		int numberOfMeasures = SkimMeasure.values().length;
+
+		double[][] sums = new double[numberOfZones][numberOfMeasures];
+		int[] counts = new int[numberOfZones];
+
+		for (AccessStops accessStops : zoneStops[originIndex]) {
+			if (accessStops.isEmpty()) {
+				continue;
+			}
+
+			for (double departureTime : departureTimes) {
+				int scheduleDepartureTime = serviceDay.getScheduleTime(departureTime);
+				raptor.run(accessStops, scheduleDepartureTime, maximumRides,
+						scheduleDepartureTime + (int) maximumTravelTime);
+
+				for (int destinationIndex = 0; destinationIndex < numberOfZones; destinationIndex++) {
+					for (AccessStops egressStops : zoneStops[destinationIndex]) {
+						if (addConnection(raptor, egressStops, scheduleDepartureTime, sums[destinationIndex])) {
+							counts[destinationIndex]++;
+						}
+					}
+				}
+			}
+		}
+
+		for (int destinationIndex = 0; destinationIndex < numberOfZones; destinationIndex++) {
+			if (counts[destinationIndex] > 0) {
+				for (SkimMeasure measure : SkimMeasure.values()) {
+					matrix.set(measure, originIndex, destinationIndex,
+							(float) (sums[destinationIndex][measure.ordinal()] / counts[destinationIndex]));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Finds the egress stop with the earliest arrival and adds the values of the
+	 * connection
+	 *
+	 * @return false if no connection is found
+	 */
+	private boolean addConnection(R5SkimRaptor raptor, AccessStops egressStops, int departureTime, double[] sums) {
+		int bestStopIndex = -1;
+		int bestArrivalTime = R5SkimRaptor.UNREACHED;
+		int bestEgressTime = 0;
+
+		for (int k = 0; k < egressStops.size(); k++) {
+			int stopIndex = egressStops.getStopIndex(k);
+			int stopArrivalTime = raptor.getArrivalTime(stopIndex);
+
+			if (stopArrivalTime != R5SkimRaptor.UNREACHED && raptor.getRides(stopIndex) > 0) {
+				int arrivalTime = stopArrivalTime + egressStops.getWalkTime(k);
+
+				if (arrivalTime < bestArrivalTime) {
+					bestStopIndex = stopIndex;
+					bestArrivalTime = arrivalTime;
+					bestEgressTime = egressStops.getWalkTime(k);
+				}
+			}
+		}
+
+		if (bestStopIndex < 0 || bestArrivalTime - departureTime > maximumTravelTime) {
+			return false;
+		}
+
+		sums[SkimMeasure.TRAVEL_TIME.ordinal()] += bestArrivalTime - departureTime;
+		sums[SkimMeasure.ACCESS_TIME.ordinal()] += raptor.getAccessTime(bestStopIndex);
+		sums[SkimMeasure.EGRESS_TIME.ordinal()] += bestEgressTime;
+		sums[SkimMeasure.IN_VEHICLE_TIME.ordinal()] += raptor.getInVehicleTime(bestStopIndex);
+		sums[SkimMeasure.TRANSFERS.ordinal()] += raptor.getRides(bestStopIndex) - 1;
+		sums[SkimMeasure.IN_VEHICLE_DISTANCE.ordinal()] += raptor.getDistance(bestStopIndex);
+
+		return true;
+	}
+}
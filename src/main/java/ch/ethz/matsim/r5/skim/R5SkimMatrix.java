@@ -0,0 +1,147 @@
+package ch.ethz.matsim.r5.skim;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.FloatBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Zone-to-zone matrices of all skim measures
+ *
+ * File format (big endian): magic (int), version (int), number of zones
+ * (int), number of measures (int), offset of the data (long), zone ids (UTF),
+ * measure names (UTF). The data starts at the given offset and contains one
+ * float matrix per measure in row-major order (origin, destination), so a
+ * matrix can be memory-mapped directly. Relations without a connection are
+ * NaN.
+ */
+public class R5SkimMatrix {
+	final static public int MAGIC = 0x5235534b; // "R5SK"
+	final static public int VERSION = 1;
+
+	final private List<String> zoneIds;
+	final private FloatBuffer[] values;
+
+	private R5SkimMatrix(List<String> zoneIds, FloatBuffer[] values) {
+		this.zoneIds = zoneIds;
+		this.values = values;
+	}
+
+	/**
+	 * Creates empty matrices, all relations are NaN
+	 */
+	public R5SkimMatrix(List<String> zoneIds) {
+		this.zoneIds = zoneIds;
+		this.values = new FloatBuffer[SkimMeasure.values().length];
+
+		float[] empty = new float[zoneIds.size() * zoneIds.size()];
+		Arrays.fill(empty, Float.NaN);
+
+		for (int i = 0; i < values.length; i++) {
+			values[i] = FloatBuffer.wrap(empty.clone());
+		}
+	}
+
+	public List<String> getZoneIds() {
+		return zoneIds;
+	}
+
+	public int getNumberOfZones() {
+		return zoneIds.size();
+	}
+
+	public float get(SkimMeasure measure, int originIndex, int destinationIndex) {
+		return values[measure.ordinal()].get(originIndex * zoneIds.size() + destinationIndex);
+	}
+
+	public void set(SkimMeasure measure, int originIndex, int destinationIndex, float value) {
+		values[measure.ordinal()].put(originIndex * zoneIds.size() + destinationIndex, value);
+	}
+
+	public void write(File file) throws IOException {
+		ByteArrayOutputStream headerBuffer = new ByteArrayOutputStream();
+		DataOutputStream header = new DataOutputStream(headerBuffer);
+
+		for (String zoneId : zoneIds) {
+			header.writeUTF(zoneId);
+		}
+
+		for (SkimMeasure measure : SkimMeasure.values()) {
+			header.writeUTF(measure.name());
+		}
+
+		header.flush();
+
+		long dataOffset = 4 * 4 + 8 + headerBuffer.size();
+
+		try (DataOutputStream outputStream = new DataOutputStream(
+				new BufferedOutputStream(new FileOutputStream(file), 1 << 20))) {
+			outputStream.writeInt(MAGIC);
+			outputStream.writeInt(VERSION);
+			outputStream.writeInt(zoneIds.size());
+			outputStream.writeInt(values.length);
+			outputStream.writeLong(dataOffset);
+			headerBuffer.writeTo(outputStream);
+
+			for (FloatBuffer buffer : values) {
+				for (int i = 0; i < buffer.capacity(); i++) {
+					outputStream.writeFloat(buffer.get(i));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Maps the matrices of a file into memory. The data is read on demand from
+	 * the page cache and is not copied onto the heap.
+	 */
+	static public R5SkimMatrix map(File file) throws IOException {
+		try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+				FileChannel channel = randomAccessFile.getChannel()) {
+			DataInputStream header = new DataInputStream(Channels.newInputStream(channel));
+
+			if (header.readInt() != MAGIC || header.readInt() != VERSION) {
+				throw new IllegalStateException("Not a skim matrix file: " + file);
+			}
+
+			int numberOfZones = header.readInt();
+			int numberOfMeasures = header.readInt();
+			long dataOffset = header.readLong();
+
+			List<String> zoneIds = new ArrayList<>(numberOfZones);
+
+			for (int i = 0; i < numberOfZones; i++) {
+				zoneIds.add(header.readUTF());
+			}
+
+			FloatBuffer[] values = new FloatBuffer[SkimMeasure.values().length];
+			long matrixSize = 4L * numberOfZones * numberOfZones;
+
+			for (int i = 0; i < numberOfMeasures; i++) {
+				SkimMeasure measure = SkimMeasure.valueOf(header.readUTF());
+				values[measure.ordinal()] = channel.map(MapMode.READ_ONLY, dataOffset + i * matrixSize, matrixSize)
+						.asFloatBuffer();
+			}
+
+			for (SkimMeasure measure : SkimMeasure.values()) {
+				if (values[measure.ordinal()] == null) {
+					throw new IllegalStateException("Measure " + measure + " is missing in " + file);
+				}
+			}
+
+			// The mappings stay valid after the channel is closed
+			return new R5SkimMatrix(zoneIds, values);
+		}
+	}
+}
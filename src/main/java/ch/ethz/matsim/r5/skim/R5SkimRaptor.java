@@ -0,0 +1,343 @@
+package ch.ethz.matsim.r5.skim;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+import com.conveyal.r5.transit.PickDropType;
+import com.conveyal.r5.transit.TransitLayer;
+import com.conveyal.r5.transit.TripPattern;
+
+import ch.ethz.matsim.r5.cache.R5AccessCache.AccessStops;
+
+import gnu.trove.list.TIntList;
+
+/**
+ * One-to-many round-based transit search (RAPTOR) on the R5 transit layer
+ *
+ * Finds the earliest arrival at all stops for one departure. Together with the
+ * arrival time, every stop keeps the access time, in-vehicle time, number of
+ * rides and in-vehicle distance of the connection by which it was reached
+ * first. In-vehicle distances are differences of the cumulative distances
+ * along the patterns. Instances hold the search state and must not be shared
+ * between threads.
+ *
+ * As in R5, a board slack is required when boarding after a previous ride,
+ * but not for the first boarding after the access walk.
+ */
+class R5SkimRaptor {
+	final static int UNREACHED = Integer.MAX_VALUE;
+
+	/**
+	 * Minimum time between alighting and boarding in seconds, the default of
+	 * the R5 transit search
+	 */
+	final static int BOARD_SLACK = 60;
+
+	final private TransitLayer transitLayer;
+	final private Trip[][] activeTrips;
+	final private boolean[] orderedPatterns;
+	final private double[][] cumulativeDistances;
+	final private double walkSpeed;
+
+	final private int[] arrivalTimes;
+	final private int[] accessTimes;
+	final private int[] inVehicleTimes;
+	final private int[] rides;
+	final private double[] distances;
+
+	final private int[] previousArrivalTimes;
+	final private int[] previousAccessTimes;
+	final private int[] previousInVehicleTimes;
+	final private int[] previousRides;
+	final private double[] previousDistances;
+
+	final private BitSet markedStops;
+	final private BitSet transitStops;
+	final private BitSet transferStops;
+	final private BitSet markedPatterns;
+
+	/**
+	 * @param activeTrips
+	 *            Trips per pattern that run on the service day, ordered by
+	 *            departure time at the first stop
+	 * @param orderedPatterns
+	 *            Whether the trips of a pattern are ordered by departure time at
+	 *            every stop, see isOrdered
+	 * @param cumulativeDistances
+	 *            Distances from the first stop of each pattern to its stops in
+	 *            meters
+	 * @param walkSpeed
+	 *            Walk speed for transfers in m/s
+	 */
+	R5SkimRaptor(TransitLayer transitLayer, Trip[][] activeTrips, boolean[] orderedPatterns,
+			double[][] cumulativeDistances, double walkSpeed) {
+		this.transitLayer = transitLayer;
+		this.activeTrips = activeTrips;
+		this.orderedPatterns = orderedPatterns;
+		this.cumulativeDistances = cumulativeDistances;
+		this.walkSpeed = walkSpeed;
+
+		int numberOfStops = transitLayer.getStopCount();
+
+		this.arrivalTimes = new int[numberOfStops];
+		this.accessTimes = new int[numberOfStops];
+		this.inVehicleTimes = new int[numberOfStops];
+		this.rides = new int[numberOfStops];
+		this.distances = new double[numberOfStops];
+
+		this.previousArrivalTimes = new int[numberOfStops];
+		this.previousAccessTimes = new int[numberOfStops];
+		this.previousInVehicleTimes = new int[numberOfStops];
+		this.previousRides = new int[numberOfStops];
+		this.previousDistances = new double[numberOfStops];
+
+		this.markedStops = new BitSet(numberOfStops);
+		this.transitStops = new BitSet(numberOfStops);
+		this.transferStops = new BitSet(numberOfStops);
+		this.markedPatterns = new BitSet(activeTrips.length);
+	}
+
+	/**
+	 * @param departureTime
+	 *            in seconds of the schedule
+	 * @param maximumRides
+	 *            Maximum number of vehicles per connection
+	 * @param latestArrivalTime
+	 *            in seconds of the schedule, later arrivals are ignored
+	 */
+	void run(AccessStops accessStops, int departureTime, int maximumRides, int latestArrivalTime) {
+		Arrays.fill(arrivalTimes, UNREACHED);
+		markedStops.clear();
+
+		for (int i = 0; i < accessStops.size(); i++) {
+			int stopIndex = accessStops.getStopIndex(i);
+			int arrivalTime = departureTime + accessStops.getWalkTime(i);
+
+			if (arrivalTime < arrivalTimes[stopIndex]) {
+				arrivalTimes[stopIndex] = arrivalTime;
+				accessTimes[stopIndex] = accessStops.getWalkTime(i);
+				inVehicleTimes[stopIndex] = 0;
+				rides[stopIndex] = 0;
+				distances[stopIndex] = 0.0;
+				markedStops.set(stopIndex);
+			}
+		}
+
+		for (int round = 0; round < maximumRides && !markedStops.isEmpty(); round++) {
+			System.arraycopy(arrivalTimes, 0, previousArrivalTimes, 0, arrivalTimes.length);
+			System.arraycopy(accessTimes, 0, previousAccessTimes, 0, accessTimes.length);
+			System.arraycopy(inVehicleTimes, 0, previousInVehicleTimes, 0, inVehicleTimes.length);
+			System.arraycopy(rides, 0, previousRides, 0, rides.length);
+			System.arraycopy(distances, 0, previousDistances, 0, distances.length);
+
+			markedPatterns.clear();
+
+			for (int stopIndex = markedStops.nextSetBit(0); stopIndex >= 0; stopIndex = markedStops
+					.nextSetBit(stopIndex + 1)) {
+				TIntList patterns = transitLayer.patternsForStop.get(stopIndex);
+
+				for (int k = 0; k < patterns.size(); k++) {
+					markedPatterns.set(patterns.get(k));
+				}
+			}
+
+			transitStops.clear();
+
+			for (int patternIndex = markedPatterns.nextSetBit(0); patternIndex >= 0; patternIndex = markedPatterns
+					.nextSetBit(patternIndex + 1)) {
+				scanPattern(patternIndex, latestArrivalTime);
+			}
+
+			transferStops.clear();
+
+			for (int stopIndex = transitStops.nextSetBit(0); stopIndex >= 0; stopIndex = transitStops
+					.nextSetBit(stopIndex + 1)) {
+				transfer(stopIndex, latestArrivalTime);
+			}
+
+			markedStops.clear();
+			markedStops.or(transitStops);
+			markedStops.or(transferStops);
+		}
+	}
+
+	private void scanPattern(int patternIndex, int latestArrivalTime) {
+		Trip[] trips = activeTrips[patternIndex];
+
+		if (trips.length == 0) {
+			return;
+		}
+
+		TripPattern pattern = transitLayer.tripPatterns.get(patternIndex);
+		double[] patternDistances = cumulativeDistances[patternIndex];
+		boolean isOrdered = orderedPatterns[patternIndex];
+
+		Trip trip = null;
+		int boardingPosition = -1;
+		int boardingStopIndex = -1;
+
+		for (int position = 0; position < pattern.stops.length; position++) {
+			int stopIndex = pattern.stops[position];
+
+			if (trip != null && canAlight(pattern, position)) {
+				int arrivalTime = trip.arrivals[position];
+
+				if (arrivalTime < arrivalTimes[stopIndex] && arrivalTime <= latestArrivalTime) {
+					arrivalTimes[stopIndex] = arrivalTime;
+					accessTimes[stopIndex] = previousAccessTimes[boardingStopIndex];
+					inVehicleTimes[stopIndex] = previousInVehicleTimes[boardingStopIndex] + arrivalTime
+							- trip.departures[boardingPosition];
+					rides[stopIndex] = previousRides[boardingStopIndex] + 1;
+					distances[stopIndex] = previousDistances[boardingStopIndex] + patternDistances[position]
+							- patternDistances[boardingPosition];
+					transitStops.set(stopIndex);
+				}
+			}
+
+			if (markedStops.get(stopIndex) && canBoard(pattern, position)) {
+				int readyTime = previousArrivalTimes[stopIndex];
+
+				if (previousRides[stopIndex] > 0) {
+					readyTime += BOARD_SLACK;
+				}
+
+				if (trip == null || readyTime < trip.departures[position]) {
+					Trip earliestTrip = isOrdered ? findEarliestTrip(trips, position, readyTime)
+							: scanEarliestTrip(trips, position, readyTime);
+
+					if (earliestTrip != null
+							&& (trip == null || earliestTrip.departures[position] < trip.departures[position])) {
+						trip = earliestTrip;
+						boardingPosition = position;
+						boardingStopIndex = stopIndex;
+					}
+				}
+			}
+		}
+	}
+
+	static private boolean canBoard(TripPattern pattern, int position) {
+		return position < pattern.stops.length - 1
+				&& (pattern.pickups == null || pattern.pickups[position] != PickDropType.NONE);
+	}
+
+	static private boolean canAlight(TripPattern pattern, int position) {
+		return pattern.dropoffs == null || pattern.dropoffs[position] != PickDropType.NONE;
+	}
+
+	/**
+	 * Returns whether trips that are ordered by their departure at the first stop
+	 * are ordered by departure at every stop, i.e. no trip overtakes another one
+	 */
+	static boolean isOrdered(Trip[] trips) {
+		for (int i = 1; i < trips.length; i++) {
+			int[] previousDepartures = trips[i - 1].departures;
+			int[] departures = trips[i].departures;
+
+			for (int position = 0; position < departures.length; position++) {
+				if (departures[position] < previousDepartures[position]) {
+					return false;
+				}
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * Binary search for the first trip that departs at or after the ready time,
+	 * only valid for ordered patterns
+	 */
+	static private Trip findEarliestTrip(Trip[] trips, int position, int readyTime) {
+		int low = 0;
+		int high = trips.length;
+
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+
+			if (trips[middle].departures[position] < readyTime) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+
+		return low < trips.length ? trips[low] : null;
+	}
+
+	/**
+	 * Linear search for the trip that departs first at or after the ready time,
+	 * for patterns in which trips overtake each other
+	 */
+	static private Trip scanEarliestTrip(Trip[] trips, int position, int readyTime) {
+		Trip earliestTrip = null;
+
+		for (Trip trip : trips) {
+			int departureTime = trip.departures[position];
+
+			if (departureTime >= readyTime
+					&& (earliestTrip == null || departureTime < earliestTrip.departures[position])) {
+				earliestTrip = trip;
+			}
+		}
+
+		return earliestTrip;
+	}
+
+	private void transfer(int stopIndex, int latestArrivalTime) {
+		TIntList transfers = transitLayer.transfersForStop.get(stopIndex);
+
+		if (transfers == null) {
+			return;
+		}
+
+		// Pairs of target stop and distance in millimeters
+		for (int k = 0; k < transfers.size(); k += 2) {
+			int targetStopIndex = transfers.get(k);
+			int arrivalTime = arrivalTimes[stopIndex] + (int) Math.ceil(transfers.get(k + 1) / 1000.0 / walkSpeed);
+
+			if (arrivalTime < arrivalTimes[targetStopIndex] && arrivalTime <= latestArrivalTime) {
+				arrivalTimes[targetStopIndex] = arrivalTime;
+				accessTimes[targetStopIndex] = accessTimes[stopIndex];
+				inVehicleTimes[targetStopIndex] = inVehicleTimes[stopIndex];
+				rides[targetStopIndex] = rides[stopIndex];
+				distances[targetStopIndex] = distances[stopIndex];
+				transferStops.set(targetStopIndex);
+			}
+		}
+	}
+
+	int getArrivalTime(int stopIndex) {
+		return arrivalTimes[stopIndex];
+	}
+
+	int getAccessTime(int stopIndex) {
+		return accessTimes[stopIndex];
+	}
+
+	int getInVehicleTime(int stopIndex) {
+		return inVehicleTimes[stopIndex];
+	}
+
+	int getRides(int stopIndex) {
+		return rides[stopIndex];
+	}
+
+	double getDistance(int stopIndex) {
+		return distances[stopIndex];
+	}
+
+	/**
+	 * Arrival and departure times of a trip at the stops of its pattern, in
+	 * seconds after midnight of the first day of the service day
+	 */
+	static class Trip {
+		final int[] arrivals;
+		final int[] departures;
+
+		Trip(int[] arrivals, int[] departures) {
+			this.arrivals = arrivals;
+			this.departures = departures;
+		}
+	}
+}
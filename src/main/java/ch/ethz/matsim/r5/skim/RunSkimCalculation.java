@@ -0,0 +1,160 @@
+package ch.ethz.matsim.r5.skim;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.matsim.api.core.v01.Coord;
+import org.matsim.core.utils.geometry.transformations.TransformationFactory;
+import org.matsim.core.utils.misc.Time;
+
+import com.conveyal.r5.transit.TransportNetwork;
+
+import ch.ethz.matsim.r5.distance.CrowflyDistanceEstimator;
+import ch.ethz.matsim.r5.distance.DistanceEstimator;
+import ch.ethz.matsim.r5.distance.PatternShapeDistanceEstimator;
+import ch.ethz.matsim.r5.matsim.R5ConfigGroup;
+import ch.ethz.matsim.r5.utils.R5Cleaner;
+import ch.ethz.matsim.r5.utils.ServiceDay;
+import ch.ethz.matsim.r5.utils.spatial.CoordToLatLonTransformation;
+import ch.ethz.matsim.r5.utils.spatial.DefaultCoordToLatLon;
+import ch.ethz.matsim.r5.utils.spatial.DefaultLatLonToCoord;
+import ch.ethz.matsim.r5.utils.spatial.LatLon;
+import ch.ethz.matsim.r5.utils.spatial.LatLonToCoordTransformation;
+
+/**
+ * Calculates PT skims between zones
+ *
+ * The input is a CSV file without header in which each line contains a zone id
+ * and the coordinates (x, y) of a point in the given coordinate system. Zones
+ * may be given by several lines, i.e. by several sampled points. The output is
+ * written in the format of R5SkimMatrix.
+ *
+ * Usage: RunSkimCalculation --network network.dat --zones zones.csv --output
+ * skims.bin --departure-times 07:00:00,07:30:00,08:00:00 [--crs EPSG:2056]
+ * [--day 2017-09-25] [--timezone +02:00] [--threads N] [--max-rides 8]
+ * [--max-travel-time 180] [--delimiter ;] [--distance-estimator Crowfly]
+ * [--beeline-factor 1.3]
+ *
+ * In-vehicle distances are estimated in the same way as by the router with the
+ * given transitDistanceEstimator and beeline distance factor.
+ */
+public class RunSkimCalculation {
+	static public void main(String[] args) throws Exception {
+		Map<String, String> options = parseOptions(args);
+
+		String networkPath = getRequiredOption(options, "network");
+		String zonesPath = getRequiredOption(options, "zones");
+		String outputPath = getRequiredOption(options, "output");
+		String departureTimesOption = getRequiredOption(options, "departure-times");
+
+		String crs = options.getOrDefault("crs", TransformationFactory.CH1903_LV03_Plus);
+		String day = options.getOrDefault("day", "2017-09-25");
+		String timezone = options.getOrDefault("timezone", "+02:00");
+		String delimiter = options.getOrDefault("delimiter", ";");
+		String distanceEstimatorName = options.getOrDefault("distance-estimator",
+				R5ConfigGroup.CROWFLY_DISTANCE_ESTIMATOR);
+		double beelineDistanceFactor = Double.parseDouble(options.getOrDefault("beeline-factor", "1.3"));
+
+		int numberOfThreads = Integer.parseInt(
+				options.getOrDefault("threads", String.valueOf(Runtime.getRuntime().availableProcessors())));
+		int maximumRides = Integer.parseInt(options.getOrDefault("max-rides", "8"));
+		double maximumTravelTime = 60.0 * Double.parseDouble(options.getOrDefault("max-travel-time", "180"));
+
+		List<Double> departureTimes = new ArrayList<>();
+
+		for (String departureTime : departureTimesOption.split(",")) {
+			departureTimes.add(Time.parseTime(departureTime.trim()));
+		}
+
+		CoordToLatLonTransformation coordToLatLon = new DefaultCoordToLatLon(
+				TransformationFactory.getCoordinateTransformation(crs, TransformationFactory.WGS84));
+		List<SkimZone> zones = readZones(zonesPath, delimiter, coordToLatLon);
+
+		TransportNetwork transportNetwork = TransportNetwork.read(new File(networkPath));
+		new R5Cleaner(transportNetwork).run();
+
+		LatLonToCoordTransformation latLonToCoord = new DefaultLatLonToCoord(
+				TransformationFactory.getCoordinateTransformation(TransformationFactory.WGS84, crs));
+		DistanceEstimator distanceEstimator = new CrowflyDistanceEstimator(latLonToCoord, beelineDistanceFactor);
+
+		if (distanceEstimatorName.equals(R5ConfigGroup.PATTERN_SHAPE_DISTANCE_ESTIMATOR)) {
+			distanceEstimator = new PatternShapeDistanceEstimator(transportNetwork.transitLayer, latLonToCoord,
+					distanceEstimator);
+		} else if (!distanceEstimatorName.equals(R5ConfigGroup.CROWFLY_DISTANCE_ESTIMATOR)) {
+			throw new IllegalArgumentException("Unknown distance estimator: " + distanceEstimatorName);
+		}
+
+		ServiceDay serviceDay = new ServiceDay(day, timezone, transportNetwork.getTimeZone());
+		R5SkimCalculator calculator = new R5SkimCalculator(transportNetwork, serviceDay, distanceEstimator,
+				numberOfThreads);
+		calculator.setMaximumRides(maximumRides);
+		calculator.setMaximumTravelTime(maximumTravelTime);
+
+		R5SkimMatrix matrix = calculator.calculate(zones, departureTimes);
+		matrix.write(new File(outputPath));
+	}
+
+	static private List<SkimZone> readZones(String path, String delimiter, CoordToLatLonTransformation coordToLatLon)
+			throws Exception {
+		Map<String, List<LatLon>> points = new LinkedHashMap<>();
+
+		try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(path)))) {
+			String line;
+			long lineNumber = 0;
+
+			while ((line = reader.readLine()) != null) {
+				lineNumber++;
+
+				if (line.trim().isEmpty()) {
+					continue;
+				}
+
+				String[] parts = line.split(delimiter);
+
+				try {
+					Coord coord = new Coord(Double.parseDouble(parts[1]), Double.parseDouble(parts[2]));
+					points.computeIfAbsent(parts[0], id -> new ArrayList<>()).add(coordToLatLon.transform(coord));
+				} catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+					throw new IllegalStateException("Invalid zone in line " + lineNumber + ": " + line, e);
+				}
+			}
+		}
+
+		List<SkimZone> zones = new ArrayList<>(points.size());
+
+		for (Map.Entry<String, List<LatLon>> entry : points.entrySet()) {
+			zones.add(new SkimZone(entry.getKey(), entry.getValue()));
+		}
+
+		return zones;
+	}
+
+	static private Map<String, String> parseOptions(String[] args) {
+		Map<String, String> options = new HashMap<>();
+
+		for (int i = 0; i < args.length; i += 2) {
+			if (!args[i].startsWith("--") || i + 1 >= args.length) {
+				throw new IllegalArgumentException("Expected arguments of the form --name value, found: " + args[i]);
+			}
+
+			options.put(args[i].substring(2), args[i + 1]);
+		}
+
+		return options;
+	}
+
+	static private String getRequiredOption(Map<String, String> options, String name) {
+		if (!options.containsKey(name)) {
+			throw new IllegalArgumentException("Missing required argument: --" + name);
+		}
+
+		return options.get(name);
+	}
+}
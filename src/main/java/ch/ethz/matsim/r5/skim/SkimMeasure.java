@@ -0,0 +1,9 @@
+package ch.ethz.matsim.r5.skim;
+
+/**
+ * Quantities of a skim matrix. Times are given in seconds, distances in
+ * meters.
+ */
+public enum SkimMeasure {
+	TRAVEL_TIME, ACCESS_TIME, EGRESS_TIME, IN_VEHICLE_TIME, TRANSFERS, IN_VEHICLE_DISTANCE
+}
@@ -0,0 +1,36 @@
+package ch.ethz.matsim.r5.skim;
+
+import java.util.Collections;
+import java.util.List;
+
+import ch.ethz.matsim.r5.utils.spatial.LatLon;
+
+/**
+ * Zone of a skim matrix, represented by its centroid or by a number of sampled
+ * points
+ */
+public class SkimZone {
+	final private String id;
+	final private List<LatLon> points;
+
+	public SkimZone(String id, List<LatLon> points) {
+		if (points.isEmpty()) {
+			throw new IllegalArgumentException("Zone " + id + " has no points");
+		}
+
+		this.id = id;
+		this.points = points;
+	}
+
+	public SkimZone(String id, LatLon centroid) {
+		this(id, Collections.singletonList(centroid));
+	}
+
+	public String getId() {
+		return id;
+	}
+
+	public List<LatLon> getPoints() {
+		return points;
+	}
+}
@@ -1,10 +1,19 @@
 package ch.ethz.matsim.r5.utils;
 
-import java.util.LinkedList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.IntStream;
 
-import com.conveyal.r5.transit.RouteInfo;
+import com.conveyal.r5.transit.TransitLayer;
 import com.conveyal.r5.transit.TransportNetwork;
+import com.conveyal.r5.transit.TripPattern;
+import com.conveyal.r5.transit.TripSchedule;
+
+import ch.ethz.matsim.r5.utils.cleaning.InvalidRouteTypeRule;
+import ch.ethz.matsim.r5.utils.cleaning.R5CleaningReport;
+import ch.ethz.matsim.r5.utils.cleaning.R5CleaningRule;
 
 /**
  * Cleans the R5 network to be usable by MATSim
@@ -12,35 +21,74 @@ import com.conveyal.r5.transit.TransportNetwork;
  * @author Sebastian Hörl <sebastian.hoerl@ivt.baug.ethz.ch>
  */
 public class R5Cleaner {
+	// Rough heap size of a TripSchedule without its arrival and departure arrays
+	final static private long TRIP_SCHEDULE_OVERHEAD = 128;
+
 	final private TransportNetwork transportNetwork;
+	final private List<R5CleaningRule> rules;
 	
-	public R5Cleaner(TransportNetwork transportNetwork) {
+	public R5Cleaner(TransportNetwork transportNetwork, List<R5CleaningRule> rules) {
 		this.transportNetwork = transportNetwork;
+		this.rules = rules;
+	}
+
+	public R5Cleaner(TransportNetwork transportNetwork) {
+		this(transportNetwork, Arrays.asList(new InvalidRouteTypeRule()));
 	}
 	
 	/**
 	 * Cleans the network for MATSim:
 	 * 
-	 * - E.g. Switzerland GTFS contains additional modes
-	 * - Find the routes with those additional modes
-	 * - Clear all schedules on those routes
+	 * - Every rule marks the routes that should be deactivated (e.g. routes with
+	 *   additional modes in the Switzerland GTFS)
+	 * - All patterns are processed in parallel, the schedules of patterns on
+	 *   marked routes or rejected by a rule are cleared
 	 */
-	public void run() {
-		List<Integer> routeIndices = new LinkedList<>();
+	public R5CleaningReport run() {
+		long startTime = System.currentTimeMillis();
+		TransitLayer transitLayer = transportNetwork.transitLayer;
+
+		BitSet removedRoutes = new BitSet(transitLayer.routes.size());
+
+		for (R5CleaningRule rule : rules) {
+			rule.markRoutes(transitLayer, removedRoutes);
+		}
 
-		for (int i = 0; i < transportNetwork.transitLayer.routes.size(); i++) {
-			RouteInfo route = transportNetwork.transitLayer.routes.get(i);
+		LongAdder numberOfPatterns = new LongAdder();
+		LongAdder numberOfTrips = new LongAdder();
+		LongAdder freedMemory = new LongAdder();
 
-			if (route.route_type >= 1500) {
-				route.route_type = 1200; // Needs to be valid to avoid exception
-				routeIndices.add(i); // Save to deactivate associated patterns
+		IntStream.range(0, transitLayer.tripPatterns.size()).parallel().forEach(index -> {
+			TripPattern pattern = transitLayer.tripPatterns.get(index);
+
+			if (pattern.tripSchedules.isEmpty() || !isRemoved(transitLayer, index, pattern, removedRoutes)) {
+				return;
+			}
+
+			for (TripSchedule schedule : pattern.tripSchedules) {
+				freedMemory.add(TRIP_SCHEDULE_OVERHEAD + 4L * (schedule.arrivals.length + schedule.departures.length));
 			}
+
+			numberOfPatterns.increment();
+			numberOfTrips.add(pattern.tripSchedules.size());
+			pattern.tripSchedules.clear(); // Remove all schedules to deactivate
+		});
+
+		return new R5CleaningReport(removedRoutes.cardinality(), numberOfPatterns.intValue(), numberOfTrips.sum(),
+				freedMemory.sum(), System.currentTimeMillis() - startTime);
+	}
+
+	private boolean isRemoved(TransitLayer transitLayer, int index, TripPattern pattern, BitSet removedRoutes) {
+		if (pattern.routeIndex >= 0 && removedRoutes.get(pattern.routeIndex)) {
+			return true;
 		}
 
-		for (com.conveyal.r5.transit.TripPattern pattern : transportNetwork.transitLayer.tripPatterns) {
-			if (routeIndices.contains(pattern.routeIndex)) {
-				pattern.tripSchedules.clear(); // Remove all schedules to deactivate
+		for (R5CleaningRule rule : rules) {
+			if (rule.removePattern(transitLayer, index, pattern)) {
+				return true;
 			}
 		}
+
+		return false;
 	}
 }
@@ -0,0 +1,112 @@
+package ch.ethz.matsim.r5.utils;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.IntStream;
+
+import com.conveyal.r5.transit.TransitLayer;
+import com.conveyal.r5.transit.TransportNetwork;
+import com.conveyal.r5.transit.TripPattern;
+import com.conveyal.r5.transit.TripSchedule;
+
+import ch.ethz.matsim.r5.utils.cleaning.R5SlicingReport;
+
+/**
+ * Reduces the transit layer to the trips of the days that are routed
+ *
+ * - All patterns are processed in parallel, trip schedules whose service is not
+ *   active on any of the given dates are removed
+ * - Patterns without any trip schedule (including those deactivated by the
+ *   R5Cleaner) are removed from the transit layer and the indices of the
+ *   transit layer are rebuilt
+ *
+ * Afterwards, pattern indices differ from the ones of the original network.
+ */
+public class R5ServiceDaySlicer {
+	// Rough heap size of a TripSchedule without its arrival and departure arrays
+	final static private long TRIP_SCHEDULE_OVERHEAD = 128;
+
+	final private TransportNetwork transportNetwork;
+	final private Collection<LocalDate> dates;
+
+	/**
+	 * @param dates
+	 *            Dates of the schedule on which services are kept
+	 */
+	public R5ServiceDaySlicer(TransportNetwork transportNetwork, Collection<LocalDate> dates) {
+		this.transportNetwork = transportNetwork;
+		this.dates = dates;
+	}
+
+	/**
+	 * Keeps the services of the dates on which the requests of a service day
+	 * are searched, i.e. the day itself and the following day for requests after
+	 * midnight
+	 */
+	public R5ServiceDaySlicer(TransportNetwork transportNetwork, ServiceDay serviceDay) {
+		this(transportNetwork, Arrays.asList(serviceDay.getDate(), serviceDay.getNextDate()));
+	}
+
+	public R5SlicingReport run() {
+		long startTime = System.currentTimeMillis();
+		TransitLayer transitLayer = transportNetwork.transitLayer;
+
+		BitSet activeServices = new BitSet(transitLayer.services.size());
+
+		for (LocalDate date : dates) {
+			activeServices.or(transitLayer.getActiveServicesForDate(date));
+		}
+
+		LongAdder numberOfTrips = new LongAdder();
+		LongAdder freedMemory = new LongAdder();
+
+		IntStream.range(0, transitLayer.tripPatterns.size()).parallel().forEach(index -> {
+			TripPattern pattern = transitLayer.tripPatterns.get(index);
+			Iterator<TripSchedule> iterator = pattern.tripSchedules.iterator();
+
+			boolean hasSchedules = false;
+			boolean hasFrequencies = false;
+
+			while (iterator.hasNext()) {
+				TripSchedule schedule = iterator.next();
+
+				if (!activeServices.get(schedule.serviceCode)) {
+					freedMemory.add(TRIP_SCHEDULE_OVERHEAD + 4L * (schedule.arrivals.length + schedule.departures.length));
+					numberOfTrips.increment();
+					iterator.remove();
+				} else if (schedule.headwaySeconds == null) {
+					hasSchedules = true;
+				} else {
+					hasFrequencies = true;
+				}
+			}
+
+			pattern.hasSchedules = hasSchedules;
+			pattern.hasFrequencies = hasFrequencies;
+			pattern.servicesActive.and(activeServices);
+		});
+
+		List<TripPattern> remainingPatterns = new ArrayList<>(transitLayer.tripPatterns.size());
+
+		for (TripPattern pattern : transitLayer.tripPatterns) {
+			if (!pattern.tripSchedules.isEmpty()) {
+				remainingPatterns.add(pattern);
+			}
+		}
+
+		int numberOfPatterns = transitLayer.tripPatterns.size() - remainingPatterns.size();
+
+		transitLayer.tripPatterns.clear();
+		transitLayer.tripPatterns.addAll(remainingPatterns);
+		transitLayer.rebuildTransientIndexes();
+
+		return new R5SlicingReport(numberOfPatterns, numberOfTrips.sum(), freedMemory.sum(),
+				System.currentTimeMillis() - startTime);
+	}
+}
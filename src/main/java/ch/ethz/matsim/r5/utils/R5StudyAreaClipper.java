@@ -0,0 +1,164 @@
+package ch.ethz.matsim.r5.utils;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import org.matsim.api.core.v01.Coord;
+
+import com.conveyal.r5.transit.TransitLayer;
+import com.conveyal.r5.transit.TransportNetwork;
+import com.conveyal.r5.transit.TripPattern;
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.geom.prep.PreparedGeometry;
+import com.vividsolutions.jts.geom.prep.PreparedGeometryFactory;
+import com.vividsolutions.jts.io.ParseException;
+import com.vividsolutions.jts.io.WKTReader;
+
+import ch.ethz.matsim.r5.utils.cleaning.R5ClippingReport;
+import ch.ethz.matsim.r5.utils.spatial.LatLon;
+import ch.ethz.matsim.r5.utils.spatial.LatLonToCoordTransformation;
+
+import gnu.trove.list.TIntList;
+import gnu.trove.list.array.TIntArrayList;
+
+/**
+ * Reduces the transit layer to the patterns that serve a study area
+ *
+ * - Patterns that do not serve any stop inside the (buffered) area are removed
+ *   and the indices of the transit layer are rebuilt. Patterns that serve the
+ *   area are kept with all their stops, including those outside.
+ * - Stops that are not served by any remaining pattern are detached from the
+ *   street layer and lose their transfers. Transfers to such stops are removed
+ *   as well.
+ *
+ * Stop indices are kept, so that stop ids and indices remain valid. Only the
+ * transit layer is clipped. Fewer patterns are scanned in every round of the
+ * transit search and their schedules are freed.
+ *
+ * Clipping the street layer is out of scope: its edges and vertices would have
+ * to be renumbered and every stored route and snapshot remapped. The street
+ * layer usually takes most of the memory of a network, so memory use, startup
+ * time and the cost of access, egress and transfer searches hardly change.
+ */
+public class R5StudyAreaClipper {
+	final static private GeometryFactory GEOMETRY_FACTORY = new GeometryFactory();
+
+	final private TransportNetwork transportNetwork;
+	final private PreparedGeometry area;
+	final private LatLonToCoordTransformation latLonToCoord;
+
+	/**
+	 * @param area
+	 *            Study area in the coordinate system of latLonToCoord
+	 * @param buffer
+	 *            Distance around the area in which stops keep their patterns
+	 */
+	public R5StudyAreaClipper(TransportNetwork transportNetwork, Geometry area, double buffer,
+			LatLonToCoordTransformation latLonToCoord) {
+		this.transportNetwork = transportNetwork;
+		this.area = PreparedGeometryFactory.prepare(buffer > 0.0 ? area.buffer(buffer) : area);
+		this.latLonToCoord = latLonToCoord;
+	}
+
+	/**
+	 * Parses a study area, given either as a bounding box "minX,minY,maxX,maxY"
+	 * or as a WKT geometry
+	 */
+	static public Geometry parseArea(String area) {
+		String[] parts = area.split(",");
+
+		if (parts.length == 4) {
+			try {
+				double minX = Double.parseDouble(parts[0].trim());
+				double minY = Double.parseDouble(parts[1].trim());
+				double maxX = Double.parseDouble(parts[2].trim());
+				double maxY = Double.parseDouble(parts[3].trim());
+
+				return GEOMETRY_FACTORY.toGeometry(new Envelope(minX, maxX, minY, maxY));
+			} catch (NumberFormatException e) {
+				// Not a bounding box, try WKT
+			}
+		}
+
+		try {
+			return new WKTReader(GEOMETRY_FACTORY).read(area);
+		} catch (ParseException e) {
+			throw new IllegalStateException("Study area is neither a bounding box nor a WKT geometry: " + area, e);
+		}
+	}
+
+	public R5ClippingReport run() {
+		long startTime = System.currentTimeMillis();
+		TransitLayer transitLayer = transportNetwork.transitLayer;
+
+		int numberOfStops = transitLayer.getStopCount();
+		BitSet insideStops = new BitSet(numberOfStops);
+
+		for (int stopIndex = 0; stopIndex < numberOfStops; stopIndex++) {
+			Coordinate coordinate = transitLayer.getCoordinateForStopFixed(stopIndex);
+
+			if (coordinate != null) {
+				Coord coord = latLonToCoord.transform(new LatLon(coordinate.y, coordinate.x));
+
+				if (area.contains(GEOMETRY_FACTORY.createPoint(new Coordinate(coord.getX(), coord.getY())))) {
+					insideStops.set(stopIndex);
+				}
+			}
+		}
+
+		List<TripPattern> remainingPatterns = new ArrayList<>(transitLayer.tripPatterns.size());
+		BitSet servedStops = new BitSet(numberOfStops);
+
+		for (TripPattern pattern : transitLayer.tripPatterns) {
+			for (int stopIndex : pattern.stops) {
+				if (insideStops.get(stopIndex)) {
+					remainingPatterns.add(pattern);
+
+					for (int servedStopIndex : pattern.stops) {
+						servedStops.set(servedStopIndex);
+					}
+
+					break;
+				}
+			}
+		}
+
+		IntStream.range(0, numberOfStops).parallel().forEach(stopIndex -> {
+			TIntList transfers = transitLayer.transfersForStop.get(stopIndex);
+
+			if (!servedStops.get(stopIndex)) {
+				transitLayer.streetVertexForStop.set(stopIndex, -1);
+
+				if (transfers != null) {
+					transfers.clear();
+				}
+			} else if (transfers != null) {
+				// Transfers are stored as pairs of target stop and distance
+				TIntList remainingTransfers = new TIntArrayList(transfers.size());
+
+				for (int i = 0; i < transfers.size(); i += 2) {
+					if (servedStops.get(transfers.get(i))) {
+						remainingTransfers.add(transfers.get(i));
+						remainingTransfers.add(transfers.get(i + 1));
+					}
+				}
+
+				transitLayer.transfersForStop.set(stopIndex, remainingTransfers);
+			}
+		});
+
+		int numberOfPatterns = transitLayer.tripPatterns.size() - remainingPatterns.size();
+
+		transitLayer.tripPatterns.clear();
+		transitLayer.tripPatterns.addAll(remainingPatterns);
+		transitLayer.rebuildTransientIndexes();
+
+		return new R5ClippingReport(numberOfStops - servedStops.cardinality(), numberOfPatterns,
+				System.currentTimeMillis() - startTime);
+	}
+}
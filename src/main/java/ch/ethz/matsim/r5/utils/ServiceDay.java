@@ -0,0 +1,122 @@
+package ch.ethz.matsim.r5.utils;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+
+import com.conveyal.r5.profile.ProfileRequest;
+
+/**
+ * Converts between MATSim times (seconds since midnight of the simulated day)
+ * and the times used by R5 for the selected service day
+ *
+ * The start of the service day is resolved once, so that requests can be
+ * filled from primitive seconds instead of formatting and parsing timestamps
+ * for every request.
+ */
+public class ServiceDay {
+	final static public double SECONDS_PER_DAY = 24.0 * 3600.0;
+
+	final private ZoneId zoneId;
+	final private LocalDate date;
+	final private LocalDate nextDate;
+	final private int startOffset;
+
+	/**
+	 * @param day
+	 *            Selected day of the transit schedule, given as a string in
+	 *            YYYY-MM-DD
+	 * @param timezone
+	 *            Timezone in which departure times are given, e.g. +02:00
+	 * @param zoneId
+	 *            Timezone of the transport network
+	 */
+	public ServiceDay(String day, String timezone, ZoneId zoneId) {
+		ZonedDateTime start = ZonedDateTime.of(LocalDate.parse(day), LocalTime.MIDNIGHT, ZoneOffset.of(timezone))
+				.withZoneSameInstant(zoneId);
+
+		this.zoneId = zoneId;
+		this.date = start.toLocalDate();
+		this.nextDate = date.plusDays(1);
+		this.startOffset = start.toLocalTime().toSecondOfDay();
+	}
+
+	/**
+	 * Sets date and departure time range of a request, equivalent to
+	 * ProfileRequest.setTime with timestamps on the service day.
+	 *
+	 * @param earliestDepartureTime
+	 *            in seconds after midnight of the service day
+	 * @param departureWindow
+	 *            in seconds, the request covers one additional second to avoid
+	 *            an empty range
+	 */
+	public void setTime(ProfileRequest profileRequest, double earliestDepartureTime, double departureWindow) {
+		int fromTime = startOffset + (int) earliestDepartureTime;
+		LocalDate requestDate = date;
+
+		if (fromTime >= SECONDS_PER_DAY) {
+			fromTime -= (int) SECONDS_PER_DAY;
+			requestDate = nextDate;
+		}
+
+		profileRequest.zoneId = zoneId;
+		profileRequest.date = requestDate;
+		profileRequest.fromTime = fromTime;
+		profileRequest.toTime = fromTime + (int) departureWindow + 1;
+	}
+
+	/**
+	 * Returns the date of the schedule on which the service day starts
+	 */
+	public LocalDate getDate() {
+		return date;
+	}
+
+	/**
+	 * Returns the date of the schedule after getDate(), on which requests after
+	 * midnight are searched
+	 */
+	public LocalDate getNextDate() {
+		return nextDate;
+	}
+
+	/**
+	 * Converts a time on the service day to seconds after midnight of getDate()
+	 * in the timezone of the network, as used by the R5 trip schedules
+	 */
+	public int getScheduleTime(double time) {
+		return startOffset + (int) time;
+	}
+
+	/**
+	 * Maps a departure time to the service day
+	 */
+	static public double normalizeDepartureTime(double departureTime) {
+		if (departureTime > SECONDS_PER_DAY) {
+			departureTime -= Math.ceil(departureTime / SECONDS_PER_DAY - 1.0) * SECONDS_PER_DAY;
+		}
+
+		return departureTime;
+	}
+
+	/**
+	 * Returns the second of day of an R5 timestamp
+	 */
+	static public double getSecondOfDay(ZonedDateTime time) {
+		return time.toLocalTime().toSecondOfDay();
+	}
+
+	/**
+	 * Shifts a time by full days until it is not before the reference time
+	 */
+	static public double rollOver(double time, double reference) {
+		if (time < reference) {
+			time += Math.ceil((reference - time) / SECONDS_PER_DAY) * SECONDS_PER_DAY;
+		}
+
+		return time;
+	}
+}
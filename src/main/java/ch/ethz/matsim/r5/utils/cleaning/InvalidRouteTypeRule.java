@@ -0,0 +1,39 @@
+package ch.ethz.matsim.r5.utils.cleaning;
+
+import java.util.BitSet;
+
+import com.conveyal.r5.transit.RouteInfo;
+import com.conveyal.r5.transit.TransitLayer;
+
+/**
+ * Deactivates routes with route types that R5 cannot handle
+ *
+ * E.g. the Switzerland GTFS contains additional (extended) route types. Those
+ * routes are kept with a valid route type, to avoid exceptions in R5, but all
+ * their schedules are removed.
+ */
+public class InvalidRouteTypeRule implements R5CleaningRule {
+	final private int minimumInvalidRouteType;
+	final private int replacementRouteType;
+
+	public InvalidRouteTypeRule(int minimumInvalidRouteType, int replacementRouteType) {
+		this.minimumInvalidRouteType = minimumInvalidRouteType;
+		this.replacementRouteType = replacementRouteType;
+	}
+
+	public InvalidRouteTypeRule() {
+		this(1500, 1200);
+	}
+
+	@Override
+	public void markRoutes(TransitLayer transitLayer, BitSet removedRoutes) {
+		for (int i = 0; i < transitLayer.routes.size(); i++) {
+			RouteInfo route = transitLayer.routes.get(i);
+
+			if (route.route_type >= minimumInvalidRouteType) {
+				route.route_type = replacementRouteType; // Needs to be valid to avoid exception
+				removedRoutes.set(i); // Save to deactivate associated patterns
+			}
+		}
+	}
+}
@@ -0,0 +1,62 @@
+package ch.ethz.matsim.r5.utils.cleaning;
+
+/**
+ * Summary of what has been removed by the R5Cleaner
+ */
+public class R5CleaningReport {
+	final private int numberOfRoutes;
+	final private int numberOfPatterns;
+	final private long numberOfTrips;
+	final private long estimatedFreedMemory;
+	final private long runtime;
+
+	public R5CleaningReport(int numberOfRoutes, int numberOfPatterns, long numberOfTrips, long estimatedFreedMemory,
+			long runtime) {
+		this.numberOfRoutes = numberOfRoutes;
+		this.numberOfPatterns = numberOfPatterns;
+		this.numberOfTrips = numberOfTrips;
+		this.estimatedFreedMemory = estimatedFreedMemory;
+		this.runtime = runtime;
+	}
+
+	/**
+	 * Number of deactivated routes
+	 */
+	public int getNumberOfRoutes() {
+		return numberOfRoutes;
+	}
+
+	/**
+	 * Number of patterns whose schedules have been removed
+	 */
+	public int getNumberOfPatterns() {
+		return numberOfPatterns;
+	}
+
+	/**
+	 * Number of removed trip schedules
+	 */
+	public long getNumberOfTrips() {
+		return numberOfTrips;
+	}
+
+	/**
+	 * Estimated heap size of the removed trip schedules in bytes
+	 */
+	public long getEstimatedFreedMemory() {
+		return estimatedFreedMemory;
+	}
+
+	/**
+	 * Runtime of the cleaner in milliseconds
+	 */
+	public long getRuntime() {
+		return runtime;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("Removed routes: %d, patterns: %d, trips: %d, ~%.1f MB in %d ms", numberOfRoutes,
+				numberOfPatterns, numberOfTrips, estimatedFreedMemory / 1e6, runtime);
+	}
+}
@@ -0,0 +1,30 @@
+package ch.ethz.matsim.r5.utils.cleaning;
+
+import java.util.BitSet;
+
+import com.conveyal.r5.transit.TransitLayer;
+import com.conveyal.r5.transit.TripPattern;
+
+/**
+ * A rule of the R5Cleaner pipeline
+ *
+ * Rules may either mark whole routes, in which case all schedules of the
+ * patterns on those routes are removed, or decide for individual patterns.
+ */
+public interface R5CleaningRule {
+	/**
+	 * Marks the indices of routes that should be deactivated. Called once per
+	 * rule, in the order of the pipeline.
+	 */
+	default void markRoutes(TransitLayer transitLayer, BitSet removedRoutes) {
+	}
+
+	/**
+	 * Decides whether the schedules of a pattern should be removed. Called in
+	 * parallel for different patterns, so implementations must not modify shared
+	 * state.
+	 */
+	default boolean removePattern(TransitLayer transitLayer, int patternIndex, TripPattern pattern) {
+		return false;
+	}
+}
@@ -0,0 +1,44 @@
+package ch.ethz.matsim.r5.utils.cleaning;
+
+/**
+ * Summary of what has been removed by the R5StudyAreaClipper
+ */
+public class R5ClippingReport {
+	final private int numberOfStops;
+	final private int numberOfPatterns;
+	final private long runtime;
+
+	public R5ClippingReport(int numberOfStops, int numberOfPatterns, long runtime) {
+		this.numberOfStops = numberOfStops;
+		this.numberOfPatterns = numberOfPatterns;
+		this.runtime = runtime;
+	}
+
+	/**
+	 * Number of stops that are not served by any remaining pattern, which have
+	 * been detached from the street layer
+	 */
+	public int getNumberOfStops() {
+		return numberOfStops;
+	}
+
+	/**
+	 * Number of patterns that have been removed from the transit layer
+	 */
+	public int getNumberOfPatterns() {
+		return numberOfPatterns;
+	}
+
+	/**
+	 * Runtime of the clipper in milliseconds
+	 */
+	public long getRuntime() {
+		return runtime;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("Detached stops: %d, removed patterns: %d in %d ms", numberOfStops, numberOfPatterns,
+				runtime);
+	}
+}
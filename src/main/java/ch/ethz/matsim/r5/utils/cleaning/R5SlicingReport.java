@@ -0,0 +1,52 @@
+package ch.ethz.matsim.r5.utils.cleaning;
+
+/**
+ * Summary of what has been removed by the R5ServiceDaySlicer
+ */
+public class R5SlicingReport {
+	final private int numberOfPatterns;
+	final private long numberOfTrips;
+	final private long estimatedFreedMemory;
+	final private long runtime;
+
+	public R5SlicingReport(int numberOfPatterns, long numberOfTrips, long estimatedFreedMemory, long runtime) {
+		this.numberOfPatterns = numberOfPatterns;
+		this.numberOfTrips = numberOfTrips;
+		this.estimatedFreedMemory = estimatedFreedMemory;
+		this.runtime = runtime;
+	}
+
+	/**
+	 * Number of patterns that have been removed from the transit layer
+	 */
+	public int getNumberOfPatterns() {
+		return numberOfPatterns;
+	}
+
+	/**
+	 * Number of removed trip schedules
+	 */
+	public long getNumberOfTrips() {
+		return numberOfTrips;
+	}
+
+	/**
+	 * Estimated heap size of the removed trip schedules in bytes
+	 */
+	public long getEstimatedFreedMemory() {
+		return estimatedFreedMemory;
+	}
+
+	/**
+	 * Runtime of the slicer in milliseconds
+	 */
+	public long getRuntime() {
+		return runtime;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("Removed patterns: %d, trips: %d, ~%.1f MB in %d ms", numberOfPatterns, numberOfTrips,
+				estimatedFreedMemory / 1e6, runtime);
+	}
+}
@@ -0,0 +1,97 @@
+package ch.ethz.matsim.r5.utils.snapshot;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+
+/**
+ * Reads a file sequentially through read-only memory mappings
+ *
+ * The file is mapped in chunks, so files larger than 2 GB are supported.
+ * Since the pages are backed by the OS page cache, several processes reading
+ * the same file share the same physical memory.
+ */
+public class MappedFileInputStream extends InputStream {
+	final static private long CHUNK_SIZE = 1L << 30;
+
+	final private FileChannel channel;
+	final private long size;
+
+	private long chunkOffset;
+	private MappedByteBuffer buffer;
+
+	public MappedFileInputStream(FileChannel channel, long offset) throws IOException {
+		this.channel = channel;
+		this.size = channel.size();
+		map(offset);
+	}
+
+	private void map(long offset) throws IOException {
+		chunkOffset = offset;
+		buffer = channel.map(MapMode.READ_ONLY, offset, Math.min(CHUNK_SIZE, size - offset));
+	}
+
+	private boolean ensureAvailable() throws IOException {
+		if (buffer.hasRemaining()) {
+			return true;
+		}
+
+		long nextOffset = chunkOffset + buffer.capacity();
+
+		if (nextOffset >= size) {
+			return false;
+		}
+
+		map(nextOffset);
+		return true;
+	}
+
+	@Override
+	public int read() throws IOException {
+		if (!ensureAvailable()) {
+			return -1;
+		}
+
+		return buffer.get() & 0xff;
+	}
+
+	@Override
+	public int read(byte[] target, int offset, int length) throws IOException {
+		if (length == 0) {
+			return 0;
+		}
+
+		if (!ensureAvailable()) {
+			return -1;
+		}
+
+		length = Math.min(length, buffer.remaining());
+		buffer.get(target, offset, length);
+		return length;
+	}
+
+	@Override
+	public long skip(long n) throws IOException {
+		long skipped = 0;
+
+		while (skipped < n && ensureAvailable()) {
+			int step = (int) Math.min(n - skipped, buffer.remaining());
+			buffer.position(buffer.position() + step);
+			skipped += step;
+		}
+
+		return skipped;
+	}
+
+	@Override
+	public int available() {
+		return buffer.remaining();
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+}
@@ -0,0 +1,129 @@
+package ch.ethz.matsim.r5.utils.snapshot;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.zip.CRC32;
+
+import com.conveyal.r5.transit.TransportNetwork;
+
+import ch.ethz.matsim.r5.matsim.R5Module;
+
+/**
+ * Snapshot of a prepared (e.g. cleaned) TransportNetwork
+ *
+ * The snapshot starts with a header that contains the hash of the source
+ * network file and a description of the preparation steps that have been
+ * applied. A snapshot is only used if both match, otherwise the network needs
+ * to be prepared again. The snapshot is read through memory mappings, so
+ * repeated runs on the same machine read it from the page cache.
+ */
+public class R5NetworkSnapshot {
+	final static private int MAGIC = 0x5235534e; // "R5SN"
+	final static private int VERSION = 1;
+
+	final static private long HASH_CHUNK_SIZE = 1L << 28;
+
+	private R5NetworkSnapshot() {
+	}
+
+	/**
+	 * Computes a CRC32 hash of the whole file
+	 */
+	static public long computeSourceHash(File sourceFile) throws IOException {
+		CRC32 crc = new CRC32();
+
+		try (RandomAccessFile file = new RandomAccessFile(sourceFile, "r"); FileChannel channel = file.getChannel()) {
+			long size = channel.size();
+
+			for (long offset = 0; offset < size; offset += HASH_CHUNK_SIZE) {
+				MappedByteBuffer buffer = channel.map(MapMode.READ_ONLY, offset,
+						Math.min(HASH_CHUNK_SIZE, size - offset));
+				crc.update(buffer);
+			}
+
+			return crc.getValue() ^ (size << 32);
+		}
+	}
+
+	/**
+	 * Reads a snapshot
+	 *
+	 * @param sourceHash
+	 *            Hash of the source network file, see computeSourceHash
+	 * @param preparation
+	 *            Description of the preparation steps
+	 * @return The network or null if the snapshot does not exist or does not
+	 *         match the source and preparation
+	 */
+	static public TransportNetwork read(File snapshotFile, long sourceHash, String preparation) throws Exception {
+		if (!snapshotFile.exists()) {
+			return null;
+		}
+
+		RandomAccessFile file = new RandomAccessFile(snapshotFile, "r");
+
+		try (MappedFileInputStream inputStream = new MappedFileInputStream(file.getChannel(), 0)) {
+			DataInputStream header = new DataInputStream(inputStream);
+
+			if (header.readInt() != MAGIC || header.readInt() != VERSION) {
+				R5Module.logger.warn("Ignoring invalid R5 network snapshot " + snapshotFile);
+				return null;
+			}
+
+			if (header.readLong() != sourceHash) {
+				R5Module.logger.info("R5 network snapshot does not match the source network");
+				return null;
+			}
+
+			if (!header.readUTF().equals(preparation)) {
+				R5Module.logger.info("R5 network snapshot has been prepared with different settings");
+				return null;
+			}
+
+			return TransportNetwork.read(inputStream);
+		} finally {
+			file.close();
+		}
+	}
+
+	/**
+	 * Writes a snapshot. The file is replaced atomically, so that concurrent
+	 * runs never read a partially written snapshot.
+	 */
+	static public void write(TransportNetwork transportNetwork, File snapshotFile, long sourceHash,
+			String preparation) throws IOException {
+		File temporaryFile = new File(snapshotFile.getAbsolutePath() + ".tmp" + System.nanoTime());
+
+		try {
+			DataOutputStream outputStream = new DataOutputStream(
+					new BufferedOutputStream(new FileOutputStream(temporaryFile), 1 << 20));
+
+			try {
+				outputStream.writeInt(MAGIC);
+				outputStream.writeInt(VERSION);
+				outputStream.writeLong(sourceHash);
+				outputStream.writeUTF(preparation);
+				outputStream.flush();
+
+				transportNetwork.write(outputStream);
+			} finally {
+				outputStream.close();
+			}
+
+			Files.move(temporaryFile.toPath(), snapshotFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			Files.deleteIfExists(temporaryFile.toPath());
+		}
+	}
+}
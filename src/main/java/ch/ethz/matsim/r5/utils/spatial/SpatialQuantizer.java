@@ -0,0 +1,80 @@
+package ch.ethz.matsim.r5.utils.spatial;
+
+/**
+ * Maps WGS84 coordinates to the cells of a regular grid with an approximate
+ * cell size given in meters.
+ *
+ * If the resolution is not positive, every distinct coordinate is its own
+ * cell, i.e. locations are compared exactly.
+ */
+public class SpatialQuantizer {
+	final static public double METERS_PER_DEGREE = 111320.0;
+
+	final private double resolution;
+	final private double latitudeCellSize;
+
+	/**
+	 * @param resolution
+	 *            Approximate size of a grid cell in meters
+	 */
+	public SpatialQuantizer(double resolution) {
+		this.resolution = resolution;
+		this.latitudeCellSize = resolution / METERS_PER_DEGREE;
+	}
+
+	public boolean isExact() {
+		return resolution <= 0.0;
+	}
+
+	public double getResolution() {
+		return resolution;
+	}
+
+	public long getLatitudeCell(double latitude) {
+		if (isExact()) {
+			return Double.doubleToLongBits(latitude);
+		}
+
+		return (long) Math.floor(latitude / latitudeCellSize);
+	}
+
+	public long getLongitudeCell(double latitude, double longitude) {
+		if (isExact()) {
+			return Double.doubleToLongBits(longitude);
+		}
+
+		return (long) Math.floor(longitude / getLongitudeCellSize(latitude));
+	}
+
+	/**
+	 * Uses the center of the latitude band so that all points of a cell share the
+	 * same longitudinal scaling
+	 */
+	private double getLongitudeCellSize(double latitude) {
+		double bandLatitude = (getLatitudeCell(latitude) + 0.5) * latitudeCellSize;
+		return latitudeCellSize / Math.max(1e-6, Math.cos(Math.toRadians(bandLatitude)));
+	}
+
+	/**
+	 * Returns the center of the cell of a location, or the location itself if
+	 * locations are compared exactly
+	 */
+	public LatLon getCellCenter(LatLon location) {
+		if (isExact()) {
+			return location;
+		}
+
+		double longitudeCellSize = getLongitudeCellSize(location.getLatitude());
+
+		return new LatLon((getLatitudeCell(location) + 0.5) * latitudeCellSize,
+				(getLongitudeCell(location) + 0.5) * longitudeCellSize);
+	}
+
+	public long getLatitudeCell(LatLon location) {
+		return getLatitudeCell(location.getLatitude());
+	}
+
+	public long getLongitudeCell(LatLon location) {
+		return getLongitudeCell(location.getLatitude(), location.getLongitude());
+	}
+}
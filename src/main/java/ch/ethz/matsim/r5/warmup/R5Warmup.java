@@ -0,0 +1,186 @@
+package ch.ethz.matsim.r5.warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.log4j.Logger;
+
+import com.conveyal.r5.transit.TransitLayer;
+import com.vividsolutions.jts.geom.Coordinate;
+
+import ch.ethz.matsim.r5.R5LegRouter;
+import ch.ethz.matsim.r5.metrics.R5LatencyHistogram;
+import ch.ethz.matsim.r5.route.LinkFinder;
+import ch.ethz.matsim.r5.route.R5Itinerary;
+import ch.ethz.matsim.r5.route.R5TripConverter;
+import ch.ethz.matsim.r5.utils.spatial.LatLon;
+
+/**
+ * Runs synthetic PT queries to let the JIT compile the search and the
+ * conversion code before the first iteration
+ *
+ * Queries go from one randomly sampled stop to another one at a random
+ * departure time during the service hours. All stops that are served by a
+ * pattern and have a location are sampled. The found itineraries are
+ * converted into plan elements, so the wrapper code is compiled as well.
+ *
+ * A small sample of the queries is timed before and after the warmup. The
+ * router should not have any caches attached, otherwise the repeated
+ * sample is answered from the cache and synthetic routes end up in it.
+ */
+public class R5Warmup {
+	final static private Logger logger = Logger.getLogger(R5Warmup.class);
+
+	final static private double SERVICE_START = 6.0 * 3600.0;
+	final static private double SERVICE_END = 20.0 * 3600.0;
+
+	final static private int MAXIMUM_SAMPLE_SIZE = 200;
+
+	final private R5LegRouter router;
+	final private R5TripConverter converter;
+	final private LinkFinder linkFinder;
+	final private TransitLayer transitLayer;
+
+	final private List<Query> queries;
+	final private int sampleSize;
+	final private int numberOfThreads;
+
+	/**
+	 * @param numberOfQueries
+	 *            Number of synthetic queries of the warmup
+	 * @param numberOfThreads
+	 *            Number of threads that run the queries
+	 * @param seed
+	 *            Seed with which stops and departure times are sampled
+	 */
+	public R5Warmup(R5LegRouter router, R5TripConverter converter, LinkFinder linkFinder, TransitLayer transitLayer,
+			int numberOfQueries, int numberOfThreads, long seed) {
+		this.router = router;
+		this.converter = converter;
+		this.linkFinder = linkFinder;
+		this.transitLayer = transitLayer;
+		this.numberOfThreads = numberOfThreads;
+		this.queries = createQueries(transitLayer, numberOfQueries, new Random(seed));
+		this.sampleSize = Math.max(1, Math.min(MAXIMUM_SAMPLE_SIZE, queries.size() / 10));
+	}
+
+	static private class Query {
+		final int fromStop;
+		final int toStop;
+		final LatLon fromLocation;
+		final LatLon toLocation;
+		final double departureTime;
+
+		Query(int fromStop, int toStop, LatLon fromLocation, LatLon toLocation, double departureTime) {
+			this.fromStop = fromStop;
+			this.toStop = toStop;
+			this.fromLocation = fromLocation;
+			this.toLocation = toLocation;
+			this.departureTime = departureTime;
+		}
+	}
+
+	static private List<Query> createQueries(TransitLayer transitLayer, int numberOfQueries, Random random) {
+		List<Integer> stops = new ArrayList<>();
+		List<LatLon> locations = new ArrayList<>();
+
+		for (int stopIndex = 0; stopIndex < transitLayer.getStopCount(); stopIndex++) {
+			Coordinate coordinate = transitLayer.getCoordinateForStopFixed(stopIndex);
+
+			if (coordinate != null && !transitLayer.patternsForStop.get(stopIndex).isEmpty()) {
+				stops.add(stopIndex);
+				locations.add(new LatLon(coordinate.y, coordinate.x));
+			}
+		}
+
+		List<Query> queries = new ArrayList<>(numberOfQueries);
+
+		if (stops.size() < 2) {
+			return queries;
+		}
+
+		while (queries.size() < numberOfQueries) {
+			int fromIndex = random.nextInt(stops.size());
+			int toIndex = random.nextInt(stops.size());
+
+			if (fromIndex != toIndex) {
+				double departureTime = SERVICE_START + random.nextDouble() * (SERVICE_END - SERVICE_START);
+				queries.add(new Query(stops.get(fromIndex), stops.get(toIndex), locations.get(fromIndex),
+						locations.get(toIndex), Math.floor(departureTime)));
+			}
+		}
+
+		return queries;
+	}
+
+	private void process(Query query) {
+		try {
+			R5Itinerary itinerary = router.routeItinerary(query.fromLocation, query.toLocation, query.departureTime,
+					null);
+
+			if (itinerary != null) {
+				converter.createPlanElements(itinerary, linkFinder.findLink(query.fromStop, transitLayer),
+						linkFinder.findLink(query.toStop, transitLayer));
+			}
+		} catch (RuntimeException e) {
+			// Failing queries still compile the code paths that they have reached
+			logger.debug("Error during R5 warmup", e);
+		}
+	}
+
+	/**
+	 * Runs the queries from the given range on all threads
+	 *
+	 * @param histogram
+	 *            Records the latency of every query, may be null
+	 */
+	private void runQueries(int start, int end, R5LatencyHistogram histogram) throws InterruptedException {
+		AtomicInteger nextQuery = new AtomicInteger(start);
+		List<Thread> workers = new ArrayList<>(numberOfThreads);
+
+		for (int i = 0; i < numberOfThreads; i++) {
+			Thread worker = new Thread(() -> {
+				int index;
+
+				while ((index = nextQuery.getAndIncrement()) < end) {
+					long startTime = System.nanoTime();
+					process(queries.get(index));
+
+					if (histogram != null) {
+						histogram.record(System.nanoTime() - startTime);
+					}
+				}
+			}, "r5-warmup-" + i);
+
+			worker.setDaemon(true);
+			worker.start();
+			workers.add(worker);
+		}
+
+		for (Thread worker : workers) {
+			worker.join();
+		}
+	}
+
+	public R5WarmupReport run() throws InterruptedException {
+		if (queries.isEmpty()) {
+			return new R5WarmupReport(0, null, null, 0);
+		}
+
+		R5LatencyHistogram histogram = new R5LatencyHistogram();
+
+		runQueries(0, sampleSize, histogram);
+		R5LatencyHistogram.Snapshot before = histogram.snapshotAndReset();
+
+		long startTime = System.currentTimeMillis();
+		runQueries(sampleSize, queries.size(), null);
+		long runtime = System.currentTimeMillis() - startTime;
+
+		runQueries(0, sampleSize, histogram);
+		R5LatencyHistogram.Snapshot after = histogram.snapshotAndReset();
+
+		return new R5WarmupReport(queries.size(), before, after, runtime);
+	}
+}
@@ -0,0 +1,29 @@
+package ch.ethz.matsim.r5.warmup;
+
+import org.matsim.core.controler.events.StartupEvent;
+import org.matsim.core.controler.listener.StartupListener;
+
+import ch.ethz.matsim.r5.matsim.R5Module;
+
+/**
+ * Runs the R5Warmup when the controler starts up, i.e. before iteration 0
+ */
+public class R5WarmupListener implements StartupListener {
+	final private R5Warmup warmup;
+
+	public R5WarmupListener(R5Warmup warmup) {
+		this.warmup = warmup;
+	}
+
+	@Override
+	public void notifyStartup(StartupEvent event) {
+		try {
+			R5Module.logger.info("Warming up R5 router ...");
+			R5WarmupReport report = warmup.run();
+			R5Module.logger.info("Warming up R5 router: " + report);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted during R5 warmup", e);
+		}
+	}
+}
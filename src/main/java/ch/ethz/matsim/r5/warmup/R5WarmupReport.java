@@ -0,0 +1,63 @@
+package ch.ethz.matsim.r5.warmup;
+
+import ch.ethz.matsim.r5.metrics.R5LatencyHistogram;
+
+/**
+ * Summary of the R5Warmup
+ */
+public class R5WarmupReport {
+	final private int numberOfQueries;
+	final private R5LatencyHistogram.Snapshot before;
+	final private R5LatencyHistogram.Snapshot after;
+	final private long runtime;
+
+	public R5WarmupReport(int numberOfQueries, R5LatencyHistogram.Snapshot before, R5LatencyHistogram.Snapshot after,
+			long runtime) {
+		this.numberOfQueries = numberOfQueries;
+		this.before = before;
+		this.after = after;
+		this.runtime = runtime;
+	}
+
+	public int getNumberOfQueries() {
+		return numberOfQueries;
+	}
+
+	/**
+	 * Latencies of the timed sample before the warmup, null if no query has been
+	 * run
+	 */
+	public R5LatencyHistogram.Snapshot getBefore() {
+		return before;
+	}
+
+	/**
+	 * Latencies of the same sample after the warmup, null if no query has been
+	 * run
+	 */
+	public R5LatencyHistogram.Snapshot getAfter() {
+		return after;
+	}
+
+	/**
+	 * Runtime of the warmup queries in milliseconds
+	 */
+	public long getRuntime() {
+		return runtime;
+	}
+
+	static private String format(R5LatencyHistogram.Snapshot snapshot) {
+		return String.format("mean %.3f ms, p50 %.3f ms, p99 %.3f ms", snapshot.getMean() * 1e-6,
+				snapshot.getPercentile(0.5) * 1e-6, snapshot.getPercentile(0.99) * 1e-6);
+	}
+
+	@Override
+	public String toString() {
+		if (before == null) {
+			return "No stops to sample queries from";
+		}
+
+		return String.format("%d queries in %d ms, sample of %d before: %s, after: %s", numberOfQueries, runtime,
+				before.getCount(), format(before), format(after));
+	}
+}
@@ -0,0 +1,123 @@
+package ch.ethz.matsim.r5.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import ch.ethz.matsim.r5.route.R5Itinerary;
+import ch.ethz.matsim.r5.utils.spatial.LatLon;
+
+public class R5RequestCoalescerTest {
+	final static private LatLon FROM = new LatLon(47.37, 8.54);
+	final static private LatLon TO = new LatLon(47.39, 8.51);
+
+	/**
+	 * Runs a computation that blocks until a second request for the same key
+	 * waits for it and then finishes with the given outcome
+	 */
+	private CompletableFuture<R5Itinerary> runWithWaiter(R5RequestCoalescer coalescer, Runnable outcome,
+			CompletableFuture<Throwable> leaderError) throws InterruptedException {
+		R5RouteKey key = coalescer.createKey(FROM, TO, 8.0 * 3600.0);
+		CountDownLatch started = new CountDownLatch(1);
+
+		Thread leader = new Thread(() -> {
+			try {
+				coalescer.route(key, 8.0 * 3600.0, () -> {
+					started.countDown();
+
+					while (coalescer.getNumberOfCoalescedRequests() == 0) {
+						Thread.yield();
+					}
+
+					outcome.run();
+					return null;
+				});
+
+				leaderError.complete(null);
+			} catch (Throwable e) {
+				leaderError.complete(e);
+			}
+		});
+
+		leader.setDaemon(true);
+		leader.start();
+		started.await();
+
+		return CompletableFuture.supplyAsync(() -> coalescer.route(key, 8.0 * 3600.0 + 60.0, () -> {
+			throw new IllegalStateException("Waiter must not compute");
+		}));
+	}
+
+	@Test
+	public void testErrorReachesWaiter() throws Exception {
+		R5RequestCoalescer coalescer = new R5RequestCoalescer(100.0, 300.0);
+		CompletableFuture<Throwable> leaderError = new CompletableFuture<>();
+
+		StackOverflowError error = new StackOverflowError();
+		CompletableFuture<R5Itinerary> waiter = runWithWaiter(coalescer, () -> {
+			throw error;
+		}, leaderError);
+
+		try {
+			waiter.get(10, TimeUnit.SECONDS);
+			fail("Waiter should fail");
+		} catch (ExecutionException e) {
+			assertSame(error, e.getCause());
+		}
+
+		assertSame(error, leaderError.get(10, TimeUnit.SECONDS));
+		assertEquals(1, coalescer.getNumberOfCoalescedRequests());
+	}
+
+	@Test
+	public void testRuntimeExceptionReachesWaiter() throws Exception {
+		R5RequestCoalescer coalescer = new R5RequestCoalescer(100.0, 300.0);
+		CompletableFuture<Throwable> leaderError = new CompletableFuture<>();
+
+		IllegalStateException exception = new IllegalStateException();
+		CompletableFuture<R5Itinerary> waiter = runWithWaiter(coalescer, () -> {
+			throw exception;
+		}, leaderError);
+
+		try {
+			waiter.get(10, TimeUnit.SECONDS);
+			fail("Waiter should fail");
+		} catch (ExecutionException e) {
+			assertSame(exception, e.getCause());
+		}
+
+		assertSame(exception, leaderError.get(10, TimeUnit.SECONDS));
+	}
+
+	@Test
+	public void testKeyIsReleasedAfterError() throws Exception {
+		R5RequestCoalescer coalescer = new R5RequestCoalescer(100.0, 300.0);
+		CompletableFuture<Throwable> leaderError = new CompletableFuture<>();
+
+		CompletableFuture<R5Itinerary> waiter = runWithWaiter(coalescer, () -> {
+			throw new OutOfMemoryError();
+		}, leaderError);
+
+		try {
+			waiter.get(10, TimeUnit.SECONDS);
+			fail("Waiter should fail");
+		} catch (ExecutionException e) {
+			// Expected
+		}
+
+		leaderError.get(10, TimeUnit.SECONDS);
+
+		R5RouteKey key = coalescer.createKey(FROM, TO, 8.0 * 3600.0);
+		R5Itinerary itinerary = new R5Itinerary.Builder(null, FROM.getLatitude(), FROM.getLongitude(),
+				TO.getLatitude(), TO.getLongitude()).addAccessLeg(8.0 * 3600.0, 600.0, 700.0, 0).build();
+
+		assertSame(itinerary, coalescer.route(key, 8.0 * 3600.0, () -> itinerary));
+	}
+}
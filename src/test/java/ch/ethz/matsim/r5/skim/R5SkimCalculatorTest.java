@@ -0,0 +1,147 @@
+package ch.ethz.matsim.r5.skim;
+
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assume;
+import org.junit.Test;
+import org.matsim.core.utils.geometry.transformations.TransformationFactory;
+
+import com.conveyal.r5.transit.TransportNetwork;
+import com.vividsolutions.jts.geom.Coordinate;
+
+import ch.ethz.matsim.r5.R5LegRouter;
+import ch.ethz.matsim.r5.distance.CrowflyDistanceEstimator;
+import ch.ethz.matsim.r5.distance.DistanceEstimator;
+import ch.ethz.matsim.r5.distance.PatternShapeDistanceEstimator;
+import ch.ethz.matsim.r5.route.R5Itinerary;
+import ch.ethz.matsim.r5.scoring.SoonestArrivalTimeScorer;
+import ch.ethz.matsim.r5.utils.R5Cleaner;
+import ch.ethz.matsim.r5.utils.ServiceDay;
+import ch.ethz.matsim.r5.utils.spatial.DefaultLatLonToCoord;
+import ch.ethz.matsim.r5.utils.spatial.LatLon;
+import ch.ethz.matsim.r5.utils.spatial.LatLonToCoordTransformation;
+
+/**
+ * Compares the skims with the routes of the R5LegRouter, which runs the
+ * PointToPointQuery of R5, on the Sioux Falls network
+ *
+ * The network is prepared as in SiouxFallsExample. The data directory can be
+ * set with -Dr5.test.data=... and defaults to "sf-data". The test is skipped if
+ * the network has not been prepared.
+ */
+public class R5SkimCalculatorTest {
+	final static private String CRS = "EPSG:26914";
+	final static private String DAY = "2015-09-22";
+	final static private String TIMEZONE = "-05:00";
+
+	final static private int NUMBER_OF_ZONES = 30;
+	final static private double DEPARTURE_TIME = 8.0 * 3600.0;
+
+	/**
+	 * Both searches use the same board slack and walk speed. Travel times may
+	 * still differ slightly, since R5 rounds walk times differently and links
+	 * the locations to the street network on its own.
+	 */
+	final static private double TRAVEL_TIME_TOLERANCE = 120.0;
+
+	@Test
+	public void testSkimsMatchPointToPointQuery() throws Exception {
+		File networkPath = new File(System.getProperty("r5.test.data", "sf-data"), "network.dat");
+		Assume.assumeTrue("Sioux Falls network is not prepared", networkPath.exists());
+
+		TransportNetwork transportNetwork = TransportNetwork.read(networkPath);
+		new R5Cleaner(transportNetwork).run();
+
+		LatLonToCoordTransformation latLonToCoord = new DefaultLatLonToCoord(
+				TransformationFactory.getCoordinateTransformation(TransformationFactory.WGS84, CRS));
+		DistanceEstimator distanceEstimator = new PatternShapeDistanceEstimator(transportNetwork.transitLayer,
+				latLonToCoord, new CrowflyDistanceEstimator(latLonToCoord, 1.0));
+
+		R5LegRouter router = new R5LegRouter(transportNetwork, new SoonestArrivalTimeScorer(), distanceEstimator, DAY,
+				TIMEZONE);
+
+		ServiceDay serviceDay = new ServiceDay(DAY, TIMEZONE, transportNetwork.getTimeZone());
+		R5SkimCalculator calculator = new R5SkimCalculator(transportNetwork, serviceDay, distanceEstimator, 2);
+
+		List<SkimZone> zones = createStopZones(transportNetwork);
+		R5SkimMatrix matrix = calculator.calculate(zones, Collections.singletonList(DEPARTURE_TIME));
+
+		int numberOfComparisons = 0;
+		int numberOfMissingSkims = 0;
+		int numberOfMatches = 0;
+
+		for (int originIndex = 0; originIndex < zones.size(); originIndex++) {
+			for (int destinationIndex = 0; destinationIndex < zones.size(); destinationIndex++) {
+				if (originIndex == destinationIndex) {
+					continue;
+				}
+
+				R5Itinerary itinerary = router.routeItinerary(zones.get(originIndex).getPoints().get(0),
+						zones.get(destinationIndex).getPoints().get(0), DEPARTURE_TIME, null);
+
+				if (itinerary == null || !hasTransitLeg(itinerary)) {
+					continue; // Skims only contain connections with transit rides
+				}
+
+				numberOfComparisons++;
+
+				double routerTravelTime = itinerary.getArrivalTime(itinerary.size() - 1) - DEPARTURE_TIME;
+				double skimTravelTime = matrix.get(SkimMeasure.TRAVEL_TIME, originIndex, destinationIndex);
+
+				if (Double.isNaN(skimTravelTime)) {
+					numberOfMissingSkims++;
+				} else if (Math.abs(skimTravelTime - routerTravelTime) <= TRAVEL_TIME_TOLERANCE) {
+					numberOfMatches++;
+
+					assertTrue(matrix.get(SkimMeasure.IN_VEHICLE_DISTANCE, originIndex, destinationIndex) > 0.0);
+				}
+			}
+		}
+
+		assertTrue("No transit connections found by the router", numberOfComparisons > 0);
+		assertTrue(String.format("%d of %d connections are missing in the skims", numberOfMissingSkims,
+				numberOfComparisons), numberOfMissingSkims <= 0.02 * numberOfComparisons);
+		assertTrue(String.format("Only %d of %d travel times match", numberOfMatches, numberOfComparisons),
+				numberOfMatches >= 0.98 * numberOfComparisons);
+	}
+
+	static private boolean hasTransitLeg(R5Itinerary itinerary) {
+		for (int i = 0; i < itinerary.size(); i++) {
+			if (!itinerary.isWalk(i)) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * Creates zones at randomly selected stops with known locations
+	 */
+	static private List<SkimZone> createStopZones(TransportNetwork transportNetwork) {
+		List<Integer> stopIndices = new ArrayList<>();
+
+		for (int i = 0; i < transportNetwork.transitLayer.getStopCount(); i++) {
+			if (transportNetwork.transitLayer.getCoordinateForStopFixed(i) != null
+					&& !transportNetwork.transitLayer.patternsForStop.get(i).isEmpty()) {
+				stopIndices.add(i);
+			}
+		}
+
+		Collections.shuffle(stopIndices, new Random(0L));
+		List<SkimZone> zones = new ArrayList<>(NUMBER_OF_ZONES);
+
+		for (int stopIndex : stopIndices.subList(0, Math.min(NUMBER_OF_ZONES, stopIndices.size()))) {
+			Coordinate coordinate = transportNetwork.transitLayer.getCoordinateForStopFixed(stopIndex);
+			zones.add(new SkimZone("stop" + stopIndex, new LatLon(coordinate.y, coordinate.x)));
+		}
+
+		return zones;
+	}
+}